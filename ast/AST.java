@@ -1,5 +1,6 @@
 package ast;
 
+import compiler.CompilationContext;
 import java.util.*;
 import visitor.*;
 
@@ -9,21 +10,26 @@ import visitor.*;
  *  used for printing/debugging, <li>its decoration used for constraining
  *  and code generation, and <li>a label for code generation</ol>
  *  The AST is built by the Parser
+ *
+ *  How the kids are held depends on the kind of node: leaves (ids,
+ *  literals and types) extend AST directly and have no kids at all, nodes
+ *  that always have one or two kids extend BinaryTree, which holds them in
+ *  two fields, and only the nodes with a varying number of kids extend
+ *  ListTree and keep a list. getKid/kidCount work the same for all of them.
  */
 public abstract class AST {
 
-  protected ArrayList<AST> kids;
   protected int nodeNum;
   protected AST decoration;
   // label for generated code of tree
   protected String label = "";
 
+  // node count of the default CompilationContext; other compilations
+  // number their nodes in their own context
   public static int NodeCount = 0;
 
   public AST() {
-    kids = new ArrayList<AST>();
-    NodeCount++;
-    nodeNum = NodeCount;
+    nodeNum = CompilationContext.current().nextNodeNum();
   }
 
   public void setDecoration(AST t) {
@@ -38,27 +44,47 @@ public abstract class AST {
     return nodeNum;
   }
 
+  /**
+   *  give this node another number; for trees built apart from the rest of
+   *  their compilation (see parser.ParallelParser)
+   */
+  public void setNodeNum(int nodeNum) {
+    this.nodeNum = nodeNum;
+  }
+
   /**
    *  get the AST corresponding to the kid
    *  @param i is the number of the needed kid; it starts with kid number one
    *  @return the AST for the indicated kid
    */
   public AST getKid(int i) {
-    if ((i <= 0) || (i > kidCount())) {
-      return null;
-    }
-    return kids.get(i - 1);
+    return null;
   }
 
   /**
    *  @return the number of kids at this node
    */
   public int kidCount() {
-    return kids.size();
+    return 0;
   }
 
-  public ArrayList<AST> getKids() {
-    return kids;
+  /**
+   *  @return the kids of this node in order; a node without a list of its
+   *  own returns a read only view of its kids
+   */
+  public List<AST> getKids() {
+    return new AbstractList<AST>() {
+      public AST get(int i) {
+        if (i < 0 || i >= kidCount()) {
+          throw new IndexOutOfBoundsException(i);
+        }
+        return getKid(i + 1);
+      }
+
+      public int size() {
+        return kidCount();
+      }
+    };
   }
 
   /**
@@ -70,9 +96,12 @@ public abstract class AST {
    */
   public abstract Object accept(ASTVisitor v);
 
+  /**
+   *  add kid after the kids this node already has
+   *  @return this node
+   */
   public AST addKid(AST kid) {
-    kids.add(kid);
-    return this;
+    throw new IllegalStateException(getClass().getSimpleName() + " has no kids");
   }
 
   public void setLabel(String label) {
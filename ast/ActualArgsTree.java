@@ -2,7 +2,7 @@ package ast;
 
 import visitor.*;
 
-public class ActualArgsTree extends AST {
+public class ActualArgsTree extends ListTree {
 
   public ActualArgsTree() {}
 
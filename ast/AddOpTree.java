@@ -4,12 +4,16 @@ import lexer.Symbol;
 import lexer.Token;
 import visitor.*;
 
-public class AddOpTree extends AST {
+public class AddOpTree extends BinaryTree {
 
   private Symbol symbol;
 
   public AddOpTree(Token token) {
-    this.symbol = token.getSymbol();
+    this(token.getSymbol());
+  }
+
+  public AddOpTree(Symbol symbol) {
+    this.symbol = symbol;
   }
 
   public Object accept(ASTVisitor visitor) {
@@ -2,7 +2,7 @@ package ast;
 
 import visitor.*;
 
-public class AssignTree extends AST {
+public class AssignTree extends BinaryTree {
 
   public AssignTree() {}
 
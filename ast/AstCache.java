@@ -0,0 +1,293 @@
+package ast;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+import compiler.CompilationContext;
+import lexer.Interner;
+import lexer.Lexer;
+import lexer.Symbol;
+import lexer.Tokens;
+import lexer.readers.MappedSourceReader;
+import parser.Parser;
+
+/**
+ * An AstCache keeps parsed (and possibly decorated) trees in a directory,
+ * one file per source, named by the SHA-256 hash of the source's content
+ * and whether the decorations are kept; a source that has not changed
+ * since its tree was stored is loaded from its file and never lexed or
+ * parsed again. A decorated and a bare tree of the same source are kept
+ * apart, so a caller only ever gets the kind of tree it asked for.
+ *
+ * A file holds a FlatAST: a header, a string table with the lexeme and
+ * token kind of every Symbol the tree uses, then the node arrays - kinds,
+ * first kids, next siblings, symbols (as string table indices),
+ * decorations (optional, as node indices) and node numbers. The loader
+ * maps the file into memory and copies the arrays out in bulk; the
+ * symbols are interned again in the interner of the compilation that
+ * loads the tree.
+ */
+public class AstCache {
+
+  private static final int MAGIC = 0x58415354; // "XAST"
+  // part of the key, so files written in an older format are never read
+  private static final int VERSION = 1;
+  private static final int HAS_DECORATIONS = 1;
+
+  private final Path directory;
+
+  public AstCache(Path directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * @return the key of the given source content: the hex SHA-256 hash of
+   *         its bytes, the format version and whether decorations are kept
+   */
+  public static String key(byte[] source, boolean decorations) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      StringBuilder key = new StringBuilder();
+
+      for (byte b : digest.digest(source)) {
+        key.append(String.format("%02x", b));
+      }
+      key.append("-v").append(VERSION);
+      return (decorations ? key.append("-decorated") : key).toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @return the file the tree of the given source content is kept in
+   */
+  public Path file(byte[] source, boolean decorations) {
+    return directory.resolve(key(source, decorations) + ".ast");
+  }
+
+  /**
+   * @return the stored tree of the given source content, with decorations
+   *         or without as asked, its symbols interned in symbols; null if
+   *         there is none
+   */
+  public FlatAST load(byte[] source, Interner symbols, boolean decorations) throws IOException {
+    Path file = file(source, decorations);
+
+    return Files.isRegularFile(file) ? read(file, symbols) : null;
+  }
+
+  /**
+   * Parse the source file in the current context, or load its (bare) tree
+   * if the file is unchanged since it was last parsed. The file is read
+   * once; the parser lexes the same bytes the key is made from
+   *
+   * @exception Exception - pass on any exception raised by the parser
+   */
+  public FlatAST parse(Path sourceFile) throws Exception {
+    byte[] source = Files.readAllBytes(sourceFile);
+    FlatAST tree = load(source, CompilationContext.current().symbols(), false);
+
+    if (tree == null) {
+      MappedSourceReader reader = new MappedSourceReader(StandardCharsets.UTF_8.decode(ByteBuffer.wrap(source)));
+      tree = new Parser(new Lexer(reader)).executeFlat();
+      store(source, tree, false);
+    }
+    return tree;
+  }
+
+  /**
+   * Store tree as the tree of the given source content; the file is
+   * written aside and moved into place, so a reader never sees half of it
+   */
+  public void store(byte[] source, FlatAST tree, boolean decorations) throws IOException {
+    Files.createDirectories(directory);
+    Path file = file(source, decorations);
+    Path temporary = Files.createTempFile(directory, "tree", ".tmp");
+
+    try {
+      write(tree, temporary, decorations);
+      Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  /**
+   * Write tree to file; decorations are only kept if asked for
+   */
+  public static void write(FlatAST tree, Path file, boolean decorations) throws IOException {
+    int size = tree.size();
+    // the string table: each symbol id the tree uses gets an index
+    Map<Integer, Integer> strings = new HashMap<>();
+    int[] symbols = new int[size];
+    int stringBytes = 0;
+    Symbol[] table = new Symbol[size];
+
+    for (int n = 0; n < size; n++) {
+      int id = tree.symbolId(n);
+
+      if (id == -1) {
+        symbols[n] = -1;
+        continue;
+      }
+      Integer index = strings.get(id);
+      if (index == null) {
+        index = strings.size();
+        strings.put(id, index);
+        table[index] = tree.symbol(n);
+        stringBytes += 1 + 4 + 2 * lexeme(table[index]).length();
+      }
+      symbols[n] = index;
+    }
+
+    int arrays = decorations ? 5 : 4;
+    ByteBuffer buffer = ByteBuffer.allocate(6 * 4 + stringBytes + size + arrays * 4 * size);
+
+    buffer.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(tree.root())
+        .putInt(strings.size()).putInt(decorations ? HAS_DECORATIONS : 0);
+
+    for (int i = 0; i < strings.size(); i++) {
+      String lexeme = lexeme(table[i]);
+
+      buffer.put((byte) table[i].getKind().ordinal()).putInt(lexeme.length());
+      for (int k = 0; k < lexeme.length(); k++) {
+        buffer.putChar(lexeme.charAt(k));
+      }
+    }
+
+    for (int n = 0; n < size; n++) {
+      buffer.put((byte) tree.kind(n).ordinal());
+    }
+    for (int n = 0; n < size; n++) {
+      buffer.putInt(tree.firstKid(n));
+    }
+    for (int n = 0; n < size; n++) {
+      buffer.putInt(tree.nextSibling(n));
+    }
+    for (int n = 0; n < size; n++) {
+      buffer.putInt(symbols[n]);
+    }
+    if (decorations) {
+      for (int n = 0; n < size; n++) {
+        buffer.putInt(tree.decoration(n));
+      }
+    }
+    for (int n = 0; n < size; n++) {
+      buffer.putInt(tree.nodeNum(n));
+    }
+
+    buffer.flip();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+  }
+
+  /**
+   * Read a tree written by write, interning its symbols in symbols
+   */
+  public static FlatAST read(Path file, Interner symbols) throws IOException {
+    MappedByteBuffer buffer;
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    try {
+      if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+        throw new IOException(file + " is not a tree file of this version");
+      }
+      int size = buffer.getInt(), root = buffer.getInt(), stringCount = buffer.getInt();
+      boolean decorations = (buffer.getInt() & HAS_DECORATIONS) != 0;
+
+      Tokens[] tokenKinds = Tokens.values();
+      Symbol[] table = new Symbol[stringCount];
+      for (int i = 0; i < stringCount; i++) {
+        Tokens kind = tokenKinds[buffer.get() & 0xff];
+        char[] lexeme = new char[buffer.getInt()];
+
+        buffer.asCharBuffer().get(lexeme);
+        buffer.position(buffer.position() + 2 * lexeme.length);
+        table[i] = symbols.symbol(new String(lexeme), kind);
+      }
+
+      byte[] kinds = new byte[size];
+      buffer.get(kinds);
+      int[] firstKids = ints(buffer, size), nextSiblings = ints(buffer, size);
+      int[] symbolIndices = ints(buffer, size);
+      int[] decorationNodes = decorations ? ints(buffer, size) : null;
+      int[] nodeNums = ints(buffer, size);
+
+      FlatAST.Kind[] nodeKinds = FlatAST.Kind.values();
+      FlatAST.Builder builder = new FlatAST.Builder(symbols, size);
+      for (int n = 0; n < size; n++) {
+        builder.node(nodeKinds[kinds[n] & 0xff], symbolIndices[n] == -1 ? null : table[symbolIndices[n]], nodeNums[n]);
+      }
+      for (int n = 0; n < size; n++) {
+        for (int kid = firstKids[n]; kid != -1; kid = nextSiblings[kid]) {
+          builder.addKid(n, kid);
+        }
+        if (decorationNodes != null && decorationNodes[n] != -1) {
+          builder.setDecoration(n, decorationNodes[n]);
+        }
+      }
+      return builder.build(root);
+    } catch (RuntimeException e) {
+      // a truncated or damaged file
+      throw new IOException(file + " is damaged", e);
+    }
+  }
+
+  private static int[] ints(ByteBuffer buffer, int size) {
+    int[] values = new int[size];
+    IntBuffer view = buffer.asIntBuffer();
+
+    view.get(values);
+    buffer.position(buffer.position() + 4 * size);
+    return values;
+  }
+
+  /**
+   * @return the lexeme of s as the lexer saw it; toString drops the @s of a
+   *         string literal
+   */
+  private static String lexeme(Symbol s) {
+    return s.getKind() == Tokens.StringLit ? "@" + s + "@" : s.toString();
+  }
+
+  /**
+   * Delete every stored tree
+   */
+  public void clear() {
+    if (!Files.isDirectory(directory)) {
+      return;
+    }
+    try (var files = Files.list(directory)) {
+      files.filter(f -> f.toString().endsWith(".ast")).forEach(f -> {
+        try {
+          Files.delete(f);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
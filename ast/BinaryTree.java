@@ -0,0 +1,41 @@
+package ast;
+
+/**
+ *  A BinaryTree is a node with at most two kids, e.g. an operator or an
+ *  assignment; the kids are held in the left and right fields instead of a
+ *  list
+ */
+public abstract class BinaryTree extends AST {
+
+  protected AST left, right;
+
+  public AST getLeft() {
+    return left;
+  }
+
+  public AST getRight() {
+    return right;
+  }
+
+  @Override
+  public AST getKid(int i) {
+    return i == 1 ? left : i == 2 ? right : null;
+  }
+
+  @Override
+  public int kidCount() {
+    return left == null ? 0 : right == null ? 1 : 2;
+  }
+
+  @Override
+  public AST addKid(AST kid) {
+    if (left == null) {
+      left = kid;
+    } else if (right == null) {
+      right = kid;
+    } else {
+      throw new IllegalStateException(getClass().getSimpleName() + " has at most 2 kids");
+    }
+    return this;
+  }
+}
@@ -2,7 +2,7 @@ package ast;
 
 import visitor.*;
 
-public class BlockTree extends AST {
+public class BlockTree extends ListTree {
 
   public BlockTree() {}
 
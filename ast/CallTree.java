@@ -2,7 +2,7 @@ package ast;
 
 import visitor.*;
 
-public class CallTree extends AST {
+public class CallTree extends ListTree {
 
   public CallTree() {}
 
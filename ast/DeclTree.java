@@ -2,7 +2,7 @@ package ast;
 
 import visitor.*;
 
-public class DeclTree extends AST {
+public class DeclTree extends BinaryTree {
 
   public DeclTree() {}
 
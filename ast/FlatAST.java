@@ -0,0 +1,492 @@
+package ast;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import compiler.CompilationContext;
+import lexer.Interner;
+import lexer.Symbol;
+
+/**
+ * A FlatAST holds a whole tree in parallel primitive arrays instead of one
+ * object (with its own kid list) per node; node n is described by its
+ * kind, its first kid and next sibling, the id of its Symbol (-1 if it has
+ * none), the node its decoration points to (-1 if none) and its node
+ * number. Nodes are numbered 0, 1, 2, ... in the order they were added;
+ * getNodeNum of the matching AST object is kept in nodeNum(n).
+ *
+ * A FlatAST is read only; it is made by a Builder, which the Parser can
+ * fill directly (see Parser.executeFlat), or converted from an object tree
+ * with fromTree. toTree turns it back into AST objects for the visitors
+ * that only know those. The labels and frame offsets Codegen puts on
+ * nodes are not kept.
+ *
+ * A node has one parent here, so a node an object tree shares between
+ * several parents (see LeafPool) is copied once for every place it
+ * appears; each copy keeps its node number and decoration.
+ */
+public class FlatAST {
+
+  /**
+   * The kinds of node, one per AST class
+   */
+  public enum Kind {
+    PROGRAM(ProgramTree.class), BLOCK(BlockTree.class), DECL(DeclTree.class),
+    FUNCTION_DECL(FunctionDeclTree.class), FORMALS(FormalsTree.class),
+    INT_TYPE(IntTypeTree.class), BOOL_TYPE(BoolTypeTree.class),
+    STRING_TYPE(StringTypeTree.class), HEX_TYPE(HexTypeTree.class),
+    IF(IfTree.class), WHILE(WhileTree.class), UNLESS(UnlessTree.class),
+    SELECT(SelectTree.class), SELECT_BLOCK(SelectBlockTree.class),
+    SELECTOR(SelectorTree.class), RETURN(ReturnTree.class), ASSIGN(AssignTree.class),
+    CALL(CallTree.class), ACTUAL_ARGS(ActualArgsTree.class),
+    REL_OP(RelOpTree.class), ADD_OP(AddOpTree.class), MULT_OP(MultOpTree.class),
+    ID(IdTree.class), INT(IntTree.class), STRING(StringTree.class), HEX(HexTree.class);
+
+    private final Class<? extends AST> type;
+
+    Kind(Class<? extends AST> type) {
+      this.type = type;
+    }
+
+    public Class<? extends AST> type() {
+      return type;
+    }
+
+    private static final Map<Class<? extends AST>, Kind> byType = new HashMap<>();
+
+    static {
+      for (Kind kind : values()) {
+        byType.put(kind.type, kind);
+      }
+    }
+
+    /**
+     * @return the kind of t, taken from the nearest class it extends that
+     *         has one (e.g. a parser.LazyBlockTree is a BLOCK)
+     */
+    public static Kind of(AST t) {
+      for (Class<?> type = t.getClass(); type != AST.class; type = type.getSuperclass()) {
+        Kind kind = byType.get(type);
+
+        if (kind != null) {
+          return kind;
+        }
+      }
+      return null;
+    }
+  }
+
+  private static final Kind[] kindValues = Kind.values();
+
+  private final byte[] kinds;
+  private final int[] firstKids, nextSiblings, symbols, decorations, nodeNums;
+  private final int size, root;
+  // the interner the symbol ids refer to
+  private final Interner symbolTable;
+
+  private FlatAST(Builder builder, int root) {
+    size = builder.size;
+    kinds = Arrays.copyOf(builder.kinds, size);
+    firstKids = Arrays.copyOf(builder.firstKids, size);
+    nextSiblings = Arrays.copyOf(builder.nextSiblings, size);
+    symbols = Arrays.copyOf(builder.symbols, size);
+    decorations = Arrays.copyOf(builder.decorations, size);
+    nodeNums = Arrays.copyOf(builder.nodeNums, size);
+    symbolTable = builder.symbolTable;
+    this.root = root;
+  }
+
+  /**
+   * @return the number of nodes
+   */
+  public int size() {
+    return size;
+  }
+
+  public int root() {
+    return root;
+  }
+
+  public Interner symbolTable() {
+    return symbolTable;
+  }
+
+  public Kind kind(int n) {
+    return kindValues[kinds[n]];
+  }
+
+  /**
+   * @return the first kid of node n; -1 if it has none
+   */
+  public int firstKid(int n) {
+    return firstKids[n];
+  }
+
+  /**
+   * @return the kid of n's parent after n; -1 if n is the last
+   */
+  public int nextSibling(int n) {
+    return nextSiblings[n];
+  }
+
+  /**
+   * @return kid i of node n, counting from one like AST.getKid; -1 if there
+   *         is no such kid
+   */
+  public int kid(int n, int i) {
+    int kid = i > 0 ? firstKids[n] : -1;
+
+    while (--i > 0 && kid != -1) {
+      kid = nextSiblings[kid];
+    }
+    return kid;
+  }
+
+  public int kidCount(int n) {
+    int count = 0;
+
+    for (int kid = firstKids[n]; kid != -1; kid = nextSiblings[kid]) {
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * @return the id of the Symbol of node n; -1 if it has none
+   */
+  public int symbolId(int n) {
+    return symbols[n];
+  }
+
+  public Symbol symbol(int n) {
+    return symbols[n] == -1 ? null : symbolTable.byId(symbols[n]);
+  }
+
+  /**
+   * @return the node the decoration of n points to; -1 if n has none
+   */
+  public int decoration(int n) {
+    return decorations[n];
+  }
+
+  public int nodeNum(int n) {
+    return nodeNums[n];
+  }
+
+  /**
+   * Copy an object tree, together with the trees its decorations point
+   * into (e.g. the intrinsic declarations), into a FlatAST whose root is
+   * t's node
+   */
+  public static FlatAST fromTree(AST t, Interner symbolTable) {
+    Builder builder = new Builder(symbolTable);
+    IdentityHashMap<AST, Integer> nodes = new IdentityHashMap<>();
+    List<AST> decorated = new ArrayList<>();
+    List<Integer> copies = new ArrayList<>();
+    int root = builder.add(t, nodes, decorated, copies);
+
+    // decorations may point to trees not yet copied, which are added as
+    // trees of their own; those may be decorated in turn
+    for (int i = 0; i < decorated.size(); i++) {
+      AST decoration = decorated.get(i).getDecoration();
+      Integer target = nodes.get(decoration);
+
+      if (target == null) {
+        target = builder.add(decoration, nodes, decorated, copies);
+      }
+      builder.setDecoration(copies.get(i), target);
+    }
+    return builder.build(root);
+  }
+
+  /**
+   * @return the object tree for node n and all below it, decorations
+   *         included, with the node numbers it was built with
+   */
+  @SuppressWarnings("try")
+  public AST toTree(int n) {
+    // the nodes are made in a context of their own and then given their
+    // stored numbers, so the current compilation's count doesn't move on
+    try (CompilationContext.Current c = new CompilationContext(CompilationContext.current().symbols()).makeCurrent()) {
+      return toTree(n, new AST[size]);
+    }
+  }
+
+  public AST toTree() {
+    return toTree(root);
+  }
+
+  /**
+   * make the objects for n's subtree and the trees its decorations point
+   * to, without recursion; a decoration may bring in a tree of its own, so
+   * the nodes still to make are kept on one stack
+   */
+  private AST toTree(int n, AST[] trees) {
+    int[] stack = new int[16], made = new int[16];
+    int top = 0, count = 0;
+    stack[top++] = n;
+
+    while (top > 0) {
+      int node = stack[--top];
+      if (trees[node] != null) {
+        continue;
+      }
+
+      AST t = newTree(node);
+      t.nodeNum = nodeNums[node];
+      trees[node] = t;
+
+      if (count == made.length) {
+        made = Arrays.copyOf(made, count * 2);
+      }
+      made[count++] = node;
+
+      if (decorations[node] != -1) {
+        if (top == stack.length) {
+          stack = Arrays.copyOf(stack, top * 2);
+        }
+        stack[top++] = decorations[node];
+      }
+      for (int kid = firstKids[node]; kid != -1; kid = nextSiblings[kid]) {
+        if (top == stack.length) {
+          stack = Arrays.copyOf(stack, top * 2);
+        }
+        stack[top++] = kid;
+      }
+    }
+
+    for (int i = 0; i < count; i++) {
+      int node = made[i];
+
+      for (int kid = firstKids[node]; kid != -1; kid = nextSiblings[kid]) {
+        trees[node].addKid(trees[kid]);
+      }
+      if (decorations[node] != -1) {
+        trees[node].setDecoration(trees[decorations[node]]);
+      }
+    }
+    return trees[n];
+  }
+
+  private AST newTree(int n) {
+    Symbol symbol = symbol(n);
+
+    switch (kind(n)) {
+    case PROGRAM:
+      return new ProgramTree();
+    case BLOCK:
+      return new BlockTree();
+    case DECL:
+      return new DeclTree();
+    case FUNCTION_DECL:
+      return new FunctionDeclTree();
+    case FORMALS:
+      return new FormalsTree();
+    case INT_TYPE:
+      return new IntTypeTree();
+    case BOOL_TYPE:
+      return new BoolTypeTree();
+    case STRING_TYPE:
+      return new StringTypeTree();
+    case HEX_TYPE:
+      return new HexTypeTree();
+    case IF:
+      return new IfTree();
+    case WHILE:
+      return new WhileTree();
+    case UNLESS:
+      return new UnlessTree();
+    case SELECT:
+      return new SelectTree();
+    case SELECT_BLOCK:
+      return new SelectBlockTree();
+    case SELECTOR:
+      return new SelectorTree();
+    case RETURN:
+      return new ReturnTree();
+    case ASSIGN:
+      return new AssignTree();
+    case CALL:
+      return new CallTree();
+    case ACTUAL_ARGS:
+      return new ActualArgsTree();
+    case REL_OP:
+      return new RelOpTree(symbol);
+    case ADD_OP:
+      return new AddOpTree(symbol);
+    case MULT_OP:
+      return new MultOpTree(symbol);
+    case ID:
+      return new IdTree(symbol);
+    case INT:
+      return new IntTree(symbol);
+    case STRING:
+      return new StringTree(symbol);
+    default:
+      return new HexTree(symbol);
+    }
+  }
+
+  /**
+   * @return the Symbol an AST object carries; null if its kind has none
+   */
+  private static Symbol symbolOf(AST t) {
+    if (t instanceof IdTree) {
+      return ((IdTree) t).getSymbol();
+    } else if (t instanceof IntTree) {
+      return ((IntTree) t).getSymbol();
+    } else if (t instanceof StringTree) {
+      return ((StringTree) t).getSymbol();
+    } else if (t instanceof HexTree) {
+      return ((HexTree) t).getSymbol();
+    } else if (t instanceof RelOpTree) {
+      return ((RelOpTree) t).getSymbol();
+    } else if (t instanceof AddOpTree) {
+      return ((AddOpTree) t).getSymbol();
+    } else if (t instanceof MultOpTree) {
+      return ((MultOpTree) t).getSymbol();
+    }
+    return null;
+  }
+
+  /**
+   * A Builder collects the nodes of a FlatAST; a node's kids are added one
+   * after the other, in any order relative to other nodes, e.g. while the
+   * Parser is still working on them
+   */
+  public static class Builder {
+
+    private byte[] kinds;
+    private int[] firstKids, nextSiblings, lastKids, symbols, decorations, nodeNums;
+    private int size;
+    private final Interner symbolTable;
+
+    public Builder(Interner symbolTable) {
+      this(symbolTable, 1024);
+    }
+
+    public Builder(Interner symbolTable, int capacity) {
+      this.symbolTable = symbolTable;
+      capacity = Math.max(capacity, 16);
+      kinds = new byte[capacity];
+      firstKids = new int[capacity];
+      nextSiblings = new int[capacity];
+      lastKids = new int[capacity];
+      symbols = new int[capacity];
+      decorations = new int[capacity];
+      nodeNums = new int[capacity];
+    }
+
+    /**
+     * @param symbol  null for kinds of node without one
+     * @param nodeNum the number the node gets as an AST object
+     * @return the new node, without kids
+     */
+    public int node(Kind kind, Symbol symbol, int nodeNum) {
+      if (size == kinds.length) {
+        grow();
+      }
+      kinds[size] = (byte) kind.ordinal();
+      firstKids[size] = -1;
+      nextSiblings[size] = -1;
+      lastKids[size] = -1;
+      symbols[size] = symbol == null ? -1 : symbol.getId();
+      decorations[size] = -1;
+      nodeNums[size] = nodeNum;
+      return size++;
+    }
+
+    /**
+     * make kid the last kid of parent
+     *
+     * @return parent
+     */
+    public int addKid(int parent, int kid) {
+      if (lastKids[parent] == -1) {
+        firstKids[parent] = kid;
+      } else {
+        nextSiblings[lastKids[parent]] = kid;
+      }
+      lastKids[parent] = kid;
+      return parent;
+    }
+
+    public void setDecoration(int n, int decoration) {
+      decorations[n] = decoration;
+    }
+
+    /**
+     * Copy the object tree t (without its decorations)
+     *
+     * @return the node for t
+     */
+    public int add(AST t) {
+      return add(t, null, null, null);
+    }
+
+    /**
+     * Copy t without recursion, recording the node made for each object in
+     * nodes, and each decorated object in decorated with its copy in copies,
+     * when those are given. An object seen more than once is copied each
+     * time; nodes keeps its last copy
+     */
+    private int add(AST t, Map<AST, Integer> nodes, List<AST> decorated, List<Integer> copies) {
+      List<AST> trees = new ArrayList<>();
+      List<Integer> parents = new ArrayList<>();
+      int root = -1;
+
+      trees.add(t);
+      parents.add(-1);
+
+      // preorder with the kids taken last first, so each parent gets its
+      // kids back in order
+      while (!trees.isEmpty()) {
+        AST tree = trees.remove(trees.size() - 1);
+        int parent = parents.remove(parents.size() - 1);
+        int n = node(Kind.of(tree), symbolOf(tree), tree.getNodeNum());
+
+        if (parent == -1) {
+          root = n;
+        } else {
+          addKid(parent, n);
+        }
+        if (nodes != null) {
+          nodes.put(tree, n);
+        }
+        if (decorated != null && tree.getDecoration() != null) {
+          decorated.add(tree);
+          copies.add(n);
+        }
+        for (int i = tree.kidCount(); i > 0; i--) {
+          trees.add(tree.getKid(i));
+          parents.add(n);
+        }
+      }
+      return root;
+    }
+
+    /**
+     * @return the finished tree with the given root; the builder should not
+     *         be used afterwards
+     */
+    public FlatAST build(int root) {
+      return new FlatAST(this, root);
+    }
+
+    private void grow() {
+      int capacity = kinds.length * 2;
+
+      kinds = Arrays.copyOf(kinds, capacity);
+      firstKids = Arrays.copyOf(firstKids, capacity);
+      nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+      lastKids = Arrays.copyOf(lastKids, capacity);
+      symbols = Arrays.copyOf(symbols, capacity);
+      decorations = Arrays.copyOf(decorations, capacity);
+      nodeNums = Arrays.copyOf(nodeNums, capacity);
+    }
+  }
+}
@@ -2,7 +2,7 @@ package ast;
 
 import visitor.*;
 
-public class FormalsTree extends AST {
+public class FormalsTree extends ListTree {
 
   public FormalsTree() {}
 
@@ -2,7 +2,7 @@ package ast;
 
 import visitor.*;
 
-public class FunctionDeclTree extends AST {
+public class FunctionDeclTree extends ListTree {
 
   public FunctionDeclTree() {}
 
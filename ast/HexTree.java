@@ -10,7 +10,11 @@ public class HexTree extends AST{
     private Symbol symbol;
 
     public HexTree(Token token){
-        this.symbol = token.getSymbol();
+        this(token.getSymbol());
+    }
+
+    public HexTree(Symbol symbol){
+        this.symbol = symbol;
     }
 
     @Override
@@ -14,7 +14,11 @@ public class IdTree extends AST {
    *  @param token - record the symbol from the token Symbol
    */
   public IdTree(Token token) {
-    this.symbol = token.getSymbol();
+    this(token.getSymbol());
+  }
+
+  public IdTree(Symbol symbol) {
+    this.symbol = symbol;
   }
 
   public Object accept(ASTVisitor visitor) {
@@ -2,7 +2,7 @@ package ast;
 
 import visitor.*;
 
-public class IfTree extends AST {
+public class IfTree extends ListTree {
 
   public IfTree() {}
 
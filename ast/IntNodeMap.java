@@ -0,0 +1,76 @@
+package ast;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * An IntNodeMap attaches an int to AST nodes without boxing or hashing: the
+ * values sit in an array indexed by getNodeNum(), which grows to the
+ * largest node number used. Node numbers are only unique within one
+ * compilation (see compiler.CompilationContext), so a map is meant for the
+ * nodes of one compilation.
+ */
+public class IntNodeMap {
+
+  private int[] values;
+  private final BitSet present = new BitSet();
+
+  public IntNodeMap() {
+    this(64);
+  }
+
+  /**
+   * @param nodeCount the number of nodes expected, e.g. the node count of
+   *                  the compilation; the map grows past it as needed
+   */
+  public IntNodeMap(int nodeCount) {
+    values = new int[Math.max(nodeCount + 1, 16)];
+  }
+
+  /**
+   * @return the value for t; 0 if it has none
+   */
+  public int get(AST t) {
+    return get(t.getNodeNum());
+  }
+
+  public int get(int nodeNum) {
+    return nodeNum < values.length ? values[nodeNum] : 0;
+  }
+
+  public int getOrDefault(AST t, int value) {
+    return contains(t) ? get(t) : value;
+  }
+
+  public boolean contains(AST t) {
+    return present.get(t.getNodeNum());
+  }
+
+  public void put(AST t, int value) {
+    put(t.getNodeNum(), value);
+  }
+
+  public void put(int nodeNum, int value) {
+    if (nodeNum >= values.length) {
+      values = Arrays.copyOf(values, Math.max(values.length * 2, nodeNum + 1));
+    }
+    values[nodeNum] = value;
+    present.set(nodeNum);
+  }
+
+  public void remove(AST t) {
+    int nodeNum = t.getNodeNum();
+
+    if (nodeNum < values.length) {
+      values[nodeNum] = 0;
+    }
+    present.clear(nodeNum);
+  }
+
+  /**
+   * @return the number of nodes with a value
+   */
+  public int size() {
+    return present.cardinality();
+  }
+}
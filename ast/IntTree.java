@@ -15,7 +15,11 @@ public class IntTree extends AST {
    *  representations
    */
   public IntTree(Token token) {
-    this.symbol = token.getSymbol();
+    this(token.getSymbol());
+  }
+
+  public IntTree(Symbol symbol) {
+    this.symbol = symbol;
   }
 
   public Object accept(ASTVisitor visitor) {
@@ -0,0 +1,87 @@
+package ast;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import lexer.Symbol;
+
+/**
+ * A LeafPool holds the shared (hash-consed) type and literal nodes of one
+ * compilation: a single IntTypeTree, BoolTypeTree, StringTypeTree and
+ * HexTypeTree, and one IntTree or HexTree per literal Symbol. A Parser set
+ * to share leaves (see Parser.setSharedLeaves) takes these nodes from the
+ * pool of its CompilationContext rather than making a node for every
+ * declaration, formal and literal, so the same node can appear at many
+ * places in a tree, and two type nodes are of the same type exactly when
+ * they are the same node.
+ *
+ * A shared node only carries what is the same at every place it appears.
+ * The Constrainer decorates a type or literal node with the intrinsic tree
+ * of its type, which only depends on the node, and Codegen labels none of
+ * them. Anything that does differ from one place to another has to be
+ * kept in a side table keyed by the parent (see NodeMap). FlatAST copies
+ * a shared node for every place it appears, and the visitors that lay a
+ * tree out (OffsetVisitor, DrawOffsetVisitor) key their offsets by the
+ * place in a preorder walk rather than by node number. With shared leaves the Constrainer's intrinsic type
+ * trees hold the pool's type nodes, so it finds a type by reference.
+ *
+ * Lazily or separately parsed parts of a program may be parsed by other
+ * threads, so the pool is synchronized.
+ */
+public class LeafPool {
+
+  private AST intType, boolType, stringType, hexType;
+  private final Map<Symbol, AST> ints = new HashMap<>(), hexes = new HashMap<>();
+
+  public synchronized AST intType() {
+    if (intType == null) {
+      intType = new IntTypeTree();
+    }
+    return intType;
+  }
+
+  public synchronized AST boolType() {
+    if (boolType == null) {
+      boolType = new BoolTypeTree();
+    }
+    return boolType;
+  }
+
+  public synchronized AST stringType() {
+    if (stringType == null) {
+      stringType = new StringTypeTree();
+    }
+    return stringType;
+  }
+
+  public synchronized AST hexType() {
+    if (hexType == null) {
+      hexType = new HexTypeTree();
+    }
+    return hexType;
+  }
+
+  /**
+   * @return the IntTree for the literal symbol
+   */
+  public synchronized AST intLiteral(Symbol symbol) {
+    return ints.computeIfAbsent(symbol, IntTree::new);
+  }
+
+  /**
+   * @return the HexTree for the literal symbol
+   */
+  public synchronized AST hexLiteral(Symbol symbol) {
+    return hexes.computeIfAbsent(symbol, HexTree::new);
+  }
+
+  /**
+   * @return the number of nodes in the pool
+   */
+  public synchronized int size() {
+    int types = (intType == null ? 0 : 1) + (boolType == null ? 0 : 1)
+        + (stringType == null ? 0 : 1) + (hexType == null ? 0 : 1);
+
+    return types + ints.size() + hexes.size();
+  }
+}
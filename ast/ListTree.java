@@ -0,0 +1,36 @@
+package ast;
+
+import java.util.*;
+
+/**
+ *  A ListTree is a node whose number of kids varies, e.g. a block or a
+ *  call; its kids are kept in a list
+ */
+public abstract class ListTree extends AST {
+
+  protected ArrayList<AST> kids = new ArrayList<AST>();
+
+  @Override
+  public AST getKid(int i) {
+    if ((i <= 0) || (i > kidCount())) {
+      return null;
+    }
+    return kids.get(i - 1);
+  }
+
+  @Override
+  public int kidCount() {
+    return kids.size();
+  }
+
+  @Override
+  public List<AST> getKids() {
+    return kids;
+  }
+
+  @Override
+  public AST addKid(AST kid) {
+    kids.add(kid);
+    return this;
+  }
+}
@@ -4,7 +4,7 @@ import lexer.Symbol;
 import lexer.Token;
 import visitor.*;
 
-public class MultOpTree extends AST {
+public class MultOpTree extends BinaryTree {
 
   private Symbol symbol;
 
@@ -12,7 +12,11 @@ public class MultOpTree extends AST {
    *  @param tok contains the Symbol that indicates the specific multiplying operator
    */
   public MultOpTree(Token token) {
-    this.symbol = token.getSymbol();
+    this(token.getSymbol());
+  }
+
+  public MultOpTree(Symbol symbol) {
+    this.symbol = symbol;
   }
 
   public Object accept(ASTVisitor visitor) {
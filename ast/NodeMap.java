@@ -0,0 +1,70 @@
+package ast;
+
+import java.util.Arrays;
+
+/**
+ * A NodeMap attaches an object to AST nodes without hashing: the values sit
+ * in an array indexed by getNodeNum(), which grows to the largest node
+ * number used. Like IntNodeMap it is meant for the nodes of one
+ * compilation, whose node numbers are unique.
+ */
+public class NodeMap<T> {
+
+  private Object[] values;
+  private int size;
+
+  public NodeMap() {
+    this(64);
+  }
+
+  /**
+   * @param nodeCount the number of nodes expected; the map grows past it as
+   *                  needed
+   */
+  public NodeMap(int nodeCount) {
+    values = new Object[Math.max(nodeCount + 1, 16)];
+  }
+
+  /**
+   * @return the value for t; null if it has none
+   */
+  public T get(AST t) {
+    return get(t.getNodeNum());
+  }
+
+  @SuppressWarnings("unchecked")
+  public T get(int nodeNum) {
+    return nodeNum < values.length ? (T) values[nodeNum] : null;
+  }
+
+  public boolean contains(AST t) {
+    return get(t) != null;
+  }
+
+  /**
+   * @param value null removes the value of t
+   * @return the value t had before; null if none
+   */
+  public T put(AST t, T value) {
+    int nodeNum = t.getNodeNum();
+
+    if (nodeNum >= values.length) {
+      values = Arrays.copyOf(values, Math.max(values.length * 2, nodeNum + 1));
+    }
+    T previous = get(nodeNum);
+    values[nodeNum] = value;
+    size += (value != null ? 1 : 0) - (previous != null ? 1 : 0);
+    return previous;
+  }
+
+  public T remove(AST t) {
+    return put(t, null);
+  }
+
+  /**
+   * @return the number of nodes with a value
+   */
+  public int size() {
+    return size;
+  }
+}
@@ -2,7 +2,7 @@ package ast;
 
 import visitor.*;
 
-public class ProgramTree extends AST {
+public class ProgramTree extends BinaryTree {
 
   public ProgramTree() {}
 
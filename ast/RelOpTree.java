@@ -4,7 +4,7 @@ import lexer.Symbol;
 import lexer.Token;
 import visitor.*;
 
-public class RelOpTree extends AST {
+public class RelOpTree extends BinaryTree {
 
   private Symbol symbol;
 
@@ -12,7 +12,11 @@ public class RelOpTree extends AST {
    *  @param token contains the Symbol which indicates the specific relational operator
    */
   public RelOpTree(Token token) {
-    this.symbol = token.getSymbol();
+    this(token.getSymbol());
+  }
+
+  public RelOpTree(Symbol symbol) {
+    this.symbol = symbol;
   }
 
   public Object accept(ASTVisitor visitor) {
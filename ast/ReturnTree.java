@@ -2,7 +2,7 @@ package ast;
 
 import visitor.*;
 
-public class ReturnTree extends AST {
+public class ReturnTree extends BinaryTree {
 
   public ReturnTree() {}
 
@@ -2,7 +2,7 @@ package ast;
 
 import visitor.*;
 
-public class SelectBlockTree extends AST{
+public class SelectBlockTree extends ListTree {
 
     public SelectBlockTree() {}
 
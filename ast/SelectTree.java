@@ -2,7 +2,7 @@ package ast;
 
 import visitor.*;
 
-public class SelectTree extends AST{
+public class SelectTree extends BinaryTree {
 
     public SelectTree() {}
 
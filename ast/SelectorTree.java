@@ -2,7 +2,7 @@ package ast;
 
 import visitor.*;
 
-public class SelectorTree extends AST{
+public class SelectorTree extends BinaryTree {
 
     public SelectorTree() {}
 
@@ -9,7 +9,11 @@ public class StringTree extends AST{
     private Symbol symbol;
 
     public StringTree(Token token){
-        this.symbol = token.getSymbol();
+        this(token.getSymbol());
+    }
+
+    public StringTree(Symbol symbol){
+        this.symbol = symbol;
     }
 
     @Override
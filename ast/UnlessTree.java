@@ -2,7 +2,7 @@ package ast;
 
 import visitor.ASTVisitor;
 
-public class UnlessTree extends AST{
+public class UnlessTree extends BinaryTree {
 
     public UnlessTree() {}
 
@@ -2,7 +2,7 @@ package ast;
 
 import visitor.*;
 
-public class WhileTree extends AST {
+public class WhileTree extends BinaryTree {
 
   public WhileTree() {}
 
@@ -1,6 +1,7 @@
 package codegen;
 
 import ast.*;
+import compiler.CompilationContext;
 import constrain.*;
 import java.util.*;
 import visitor.*;
@@ -24,6 +25,8 @@ public class Codegen extends ASTVisitor {
   Program program;
   // used for creating new, unique labels
   int labelNum;
+  // the compilation whose (constrained) tree we generate code for
+  CompilationContext context;
   
   /**
   * Create a new code generator based on the given AST
@@ -35,13 +38,17 @@ public class Codegen extends ASTVisitor {
     program = new Program();
     frameSizes = new Stack<Frame>();
     labelNum = 0;
+    context = CompilationContext.current();
   }
   
   /**
   * visit all the nodes in the AST/gen bytecodes
   */
+  @SuppressWarnings("try")
   public Program execute() {
-    t.accept(this);
+    try (CompilationContext.Current c = context.makeCurrent()) {
+      t.accept(this);
+    }
     
     return program;
   }
@@ -152,7 +159,8 @@ public class Codegen extends ASTVisitor {
         */
         void genIntrinsicCodes() {
           String readLabel = "Read", writeLabel = "Write";
-          AST readTree = Constrainer.readTree, writeTree = Constrainer.writeTree;
+          Intrinsics intrinsics = context.intrinsics();
+          AST readTree = intrinsics.readTree, writeTree = intrinsics.writeTree;
           
           readTree.setLabel(readLabel);
           storeop(new LabelOpcode(Codes.ByteCodes.LABEL, readLabel));
@@ -1,5 +1,9 @@
 package codegen;
 
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
 /**
  * Class Codes maintains bytecode related information:
  * 1. bytecode constants used for code generation
@@ -60,7 +64,8 @@ public class Codes {
     LABEL        label <label>
   */
 
-  public static java.util.HashMap<ByteCodes, Integer> frameChange = new java.util.HashMap<ByteCodes, Integer>();
+  // read-only once built, so every compilation can share it
+  public static final Map<ByteCodes, Integer> frameChange;
   public static final int UnknownChange = 99;
 
   /**
@@ -70,43 +75,47 @@ public class Codes {
    *  The following is a static block - it gets executed when this class is loaded
    */
   static {
-    frameChange.put(ByteCodes.GOTO, 0);
-    frameChange.put(ByteCodes.HALT, 0);
+    Map<ByteCodes, Integer> table = new EnumMap<>(ByteCodes.class);
+
+    table.put(ByteCodes.GOTO, 0);
+    table.put(ByteCodes.HALT, 0);
 
     // depends on how many popped:
-    frameChange.put(ByteCodes.POP, UnknownChange);
+    table.put(ByteCodes.POP, UnknownChange);
 
     // pop conditional expr:
-    frameChange.put(ByteCodes.FALSEBRANCH, -1);
+    table.put(ByteCodes.FALSEBRANCH, -1);
 
     // pop value
-    frameChange.put(ByteCodes.STORE, -1);
+    table.put(ByteCodes.STORE, -1);
 
     // load new value
-    frameChange.put(ByteCodes.LOAD, 1);
+    table.put(ByteCodes.LOAD, 1);
 
     // load literal value
-    frameChange.put(ByteCodes.LIT, 1);
+    table.put(ByteCodes.LIT, 1);
 
     // actual args
-    frameChange.put(ByteCodes.ARGS, UnknownChange);
+    table.put(ByteCodes.ARGS, UnknownChange);
 
     // result of fct call is pushed
-    frameChange.put(ByteCodes.CALL, 1);
+    table.put(ByteCodes.CALL, 1);
 
     // pop return value
-    frameChange.put(ByteCodes.RETURN, -1);
+    table.put(ByteCodes.RETURN, -1);
 
     // replace values with second level op top level
-    frameChange.put(ByteCodes.BOP, -1);
+    table.put(ByteCodes.BOP, -1);
 
     // read in new value
-    frameChange.put(ByteCodes.READ, 1);
+    table.put(ByteCodes.READ, 1);
 
     // write value; leave on top
-    frameChange.put(ByteCodes.WRITE, 0);
+    table.put(ByteCodes.WRITE, 0);
 
     // branch label
-    frameChange.put(ByteCodes.LABEL, 0);
+    table.put(ByteCodes.LABEL, 0);
+
+    frameChange = Collections.unmodifiableMap(table);
   }
 }
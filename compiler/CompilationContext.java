@@ -0,0 +1,214 @@
+package compiler;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ast.AST;
+import ast.LeafPool;
+import constrain.Intrinsics;
+import lexer.Interner;
+import lexer.LexemeArena;
+
+/**
+ * A CompilationContext holds the state that belongs to one compilation:
+ * the Interner with the program's Symbols, the counter that numbers its
+ * AST nodes and the intrinsic type trees the Constrainer builds. Separate
+ * compilations in separate contexts can run at the same time in one JVM.
+ *
+ * The context of the running compilation is found through current(), a
+ * per thread setting changed with makeCurrent(); the Lexers, Parser,
+ * Constrainer and Codegen remember the context that was current when they
+ * were made and make it current again while they work. Code that never
+ * sets a context gets the default context, which numbers nodes with the
+ * static AST.NodeCount as before.
+ *
+ * A context is meant for one compilation at a time. Its node counter is
+ * atomic, so the parts of a program that are parsed later on other
+ * threads (see parser.LazyBlockTree) never get the same number. Its symbols are reclaimed with the context, so a
+ * process that compiles many programs should give each one a context of
+ * its own. The default context never goes away; newGeneration() lets a
+ * process that keeps using it drop the symbols it has gathered.
+ *
+ * A context made with offHeapLexemes keeps the text of its symbols in a
+ * LexemeArena, which is closed when the context is; with the
+ * jdk.incubator.foreign module that frees the arena's native memory.
+ */
+public class CompilationContext implements AutoCloseable {
+
+  private static final CompilationContext defaultContext = new CompilationContext(true, false);
+  private static final ThreadLocal<CompilationContext> current =
+      ThreadLocal.withInitial(() -> defaultContext);
+
+  private final boolean isDefault;
+  private volatile Interner symbols;
+  // holds the lexemes of symbols; null when they are kept on the heap
+  private volatile LexemeArena arena;
+  private final AtomicInteger nodeCount = new AtomicInteger();
+  private Intrinsics intrinsics;
+  private LeafPool leaves;
+
+  public CompilationContext() {
+    this(false, false);
+  }
+
+  /**
+   * @param offHeapLexemes keep the lexemes of this compilation's symbols in
+   *                       a LexemeArena rather than on the heap
+   */
+  public CompilationContext(boolean offHeapLexemes) {
+    this(false, offHeapLexemes);
+  }
+
+  /**
+   * A context that shares the symbols of another compilation but numbers
+   * its nodes from 1, e.g. to build part of a program on another thread
+   * (see parser.ParallelParser)
+   */
+  public CompilationContext(Interner symbols) {
+    this.isDefault = false;
+    this.symbols = symbols;
+  }
+
+  private CompilationContext(boolean isDefault, boolean offHeapLexemes) {
+    this.isDefault = isDefault;
+    this.arena = offHeapLexemes ? new LexemeArena() : null;
+    this.symbols = new Interner(arena);
+  }
+
+  /**
+   * @return the context of the compilation running on this thread
+   */
+  public static CompilationContext current() {
+    return current.get();
+  }
+
+  /**
+   * @return the context used when none has been made current
+   */
+  public static CompilationContext defaultContext() {
+    return defaultContext;
+  }
+
+  public boolean isDefault() {
+    return isDefault;
+  }
+
+  /**
+   * Make this the current context of this thread until the returned
+   * Current is closed, e.g. try (Current c = context.makeCurrent()) {...}
+   */
+  public Current makeCurrent() {
+    Current previous = new Current(current.get());
+    current.set(this);
+    return previous;
+  }
+
+  public Interner symbols() {
+    return symbols;
+  }
+
+  /**
+   * Start a new generation of symbols: the symbols entered so far (all but
+   * the pinned ones) are dropped and become garbage once nothing else
+   * refers to them. Lexers and token buffers made before keep the old
+   * generation, and an id from the old generation means nothing in the new
+   * one, so only call this between compilations. An off-heap context
+   * starts a new arena; the old one stays open for the symbols of the old
+   * generation and is freed once they have all been collected.
+   *
+   * @return the interner of the generation that ended
+   */
+  public Interner newGeneration() {
+    Interner previous = symbols;
+    if (arena != null) {
+      arena = new LexemeArena();
+    }
+    symbols = new Interner(arena);
+    return previous;
+  }
+
+  /**
+   * Close the LexemeArena of an off-heap context, after which the text of
+   * its symbols can no longer be read; does nothing for other contexts
+   */
+  @Override
+  public void close() {
+    if (arena != null) {
+      arena.close();
+    }
+  }
+
+  /**
+   * @return the number for the next AST node of this compilation
+   */
+  public int nextNodeNum() {
+    if (isDefault) {
+      synchronized (defaultContext) {
+        return ++AST.NodeCount;
+      }
+    }
+    return nodeCount.incrementAndGet();
+  }
+
+  /**
+   * Set aside count node numbers, for nodes made elsewhere
+   *
+   * @return the number before the first one set aside
+   */
+  public int reserveNodeNums(int count) {
+    if (isDefault) {
+      synchronized (defaultContext) {
+        int base = AST.NodeCount;
+        AST.NodeCount += count;
+        return base;
+      }
+    }
+    return nodeCount.getAndAdd(count);
+  }
+
+  /**
+   * @return the number of AST nodes made so far
+   */
+  public int nodeCount() {
+    return isDefault ? AST.NodeCount : nodeCount.get();
+  }
+
+  /**
+   * @return the intrinsic trees built by the Constrainer; null before the
+   *         program is constrained
+   */
+  public Intrinsics intrinsics() {
+    return intrinsics;
+  }
+
+  public void setIntrinsics(Intrinsics intrinsics) {
+    this.intrinsics = intrinsics;
+  }
+
+  /**
+   * @return the shared type and literal nodes of this compilation, for a
+   *         Parser that shares leaves
+   */
+  public synchronized LeafPool leaves() {
+    if (leaves == null) {
+      leaves = new LeafPool();
+    }
+    return leaves;
+  }
+
+  /**
+   * Restores the context that was current before makeCurrent()
+   */
+  public static final class Current implements AutoCloseable {
+
+    private final CompilationContext previous;
+
+    private Current(CompilationContext previous) {
+      this.previous = previous;
+    }
+
+    @Override
+    public void close() {
+      current.set(previous);
+    }
+  }
+}
@@ -1,7 +1,11 @@
 package compiler;
 
+import java.util.Arrays;
+
 import ast.*;
 import constrain.Constrainer;
+import lexer.Interner;
+import lexer.PipelinedLexer;
 import parser.Parser;
 import visitor.*;
 
@@ -12,14 +16,37 @@ import visitor.*;
 public class Compiler {
 
   String sourceFile;
+  // lex on a thread of its own while the parser builds the tree
+  boolean pipelined;
+  // report what the symbol tables hold after compiling
+  boolean stats;
+  // each compile gets its own symbols, node numbers and intrinsic trees so
+  // several can run in one JVM
+  CompilationContext context;
 
   public Compiler(String sourceFile) {
+    this(sourceFile, false);
+  }
+
+  public Compiler(String sourceFile, boolean pipelined) {
+    this(sourceFile, pipelined, false);
+  }
+
+  /**
+   * @param offHeap keep the lexemes of the program's symbols off the heap
+   */
+  public Compiler(String sourceFile, boolean pipelined, boolean offHeap) {
     this.sourceFile = sourceFile;
+    this.pipelined = pipelined;
+    this.context = new CompilationContext(offHeap);
   }
 
+  @SuppressWarnings("try")
   public void compileProgram() {
-    try {
-      Parser parser = new Parser(sourceFile);
+    try (CompilationContext.Current c = context.makeCurrent()) {
+      Parser parser = pipelined
+          ? new Parser(new PipelinedLexer(sourceFile))
+          : new Parser(sourceFile);
       AST t = parser.execute();
 
       System.out.println("---------------AST-------------");
@@ -30,10 +57,16 @@ public class Compiler {
       System.out.println("---------------DECORATED AST-------------");
       t.accept(pv);
       System.out.println("---------------INT/BOOL/HEX/STRING TREES-------------");
-      Constrainer.intTree.accept(pv);
-      Constrainer.boolTree.accept(pv);
-      // Constrainer.hexTree.accept(pv);
-      // Constrainer.stringTree.accept(pv);
+      context.intrinsics().intTree.accept(pv);
+      context.intrinsics().boolTree.accept(pv);
+      // context.intrinsics().hexTree.accept(pv);
+      // context.intrinsics().stringTree.accept(pv);
+      if (stats) {
+        System.out.println("---------------SYMBOLS-------------");
+        System.out.println(context.symbols().ownCount() + " symbols, ~"
+            + context.symbols().memoryUsage() / 1024 + " KB heap, "
+            + context.symbols().offHeapUsage() / 1024 + " KB off-heap; " + Interner.stats());
+      }
     } catch (Exception e) {
       System.out.println("********exception*******" + e.toString());
       e.printStackTrace();
@@ -43,10 +76,14 @@ public class Compiler {
   public static void main(String args[]) {
     if (args.length == 0) {
       System.out.println(
-          "***Incorrect usage, try: java compiler.Compiler <file> [-image]");
+          "***Incorrect usage, try: java compiler.Compiler <file> [-image] [-pipelined] [-offheap] [-stats]");
       System.exit(1);
     }
-    Compiler compiler = new Compiler(args[0]);
+    boolean pipelined = Arrays.asList(args).contains("-pipelined");
+    boolean offHeap = Arrays.asList(args).contains("-offheap");
+    Compiler compiler = new Compiler(args[0], pipelined, offHeap);
+    compiler.stats = Arrays.asList(args).contains("-stats");
     compiler.compileProgram();
+    compiler.context.close();
   }
 }
@@ -1,5 +1,6 @@
 package constrain;
 
+import compiler.CompilationContext;
 import lexer.*;
 import parser.Parser;
 import visitor.*;
@@ -21,11 +22,19 @@ public class Constrainer extends ASTVisitor {
     public enum ConstrainerErrors {
         BadAssignmentType, CallingNonFunction, ActualFormalTypeMismatch, NumberActualsFormalsDiffer, TypeMismatchInExpr,
         BooleanExprExpected, BadConditional, ReturnNotInFunction, BadReturnExpr, SelectorTypeMismatch,
+        UndeclaredIdentifier,
     }
 
     private AST t; // the AST to constrain
     private Table symtab = new Table();
+    // when scopes are recorded: the names in scope now, the maps to go back
+    // to at the end of each open scope, and the scope of each block
+    private ScopeMap scope = ScopeMap.empty();
+    private Stack<ScopeMap> outerScopes = new Stack<ScopeMap>();
+    private NodeMap<ScopeMap> blockScopes;
     private Parser parser; // parser used with this constrainer
+    private CompilationContext context; // the compilation being constrained
+    private Intrinsics types; // the intrinsic trees of this compilation
 
     /**
      * The following comment refers to the functions stack
@@ -44,9 +53,9 @@ public class Constrainer extends ASTVisitor {
     /**
      * readTree, writeTree, intTree, boolTree,falseTree, trueTree
      * are AST's that will be constructed (intrinsic trees) for
-     * every program. They are constructed in the same fashion as
-     * source program trees to ensure consisten processing of
-     * functions, etc.
+     * every program (see Intrinsics; each compilation keeps its own
+     * in its CompilationContext). The static fields hold the trees
+     * of the last program constrained in the default context.
      */
     public static AST readTree, writeTree, intTree, boolTree, idTree,
             falseTree, trueTree, readId, writeId, stringTree, hexTree;
@@ -54,18 +63,52 @@ public class Constrainer extends ASTVisitor {
     public Constrainer(AST t, Parser parser) {
         this.t = t;
         this.parser = parser;
+        this.context = parser.getContext();
     }
 
+    @SuppressWarnings("try")
     public void execute() {
-        symtab.beginScope();
-        t.accept(this);
+        try (CompilationContext.Current c = context.makeCurrent()) {
+            beginScope();
+            t.accept(this);
+        }
+    }
+
+    /**
+     * Record, for every block, the names in scope at its end (its own
+     * declarations and those of the blocks and function around it) as a
+     * ScopeMap; call before execute(). The maps are immutable, so they can
+     * be read at any time, from any thread, without constraining again.
+     */
+    public void recordScopes() {
+        blockScopes = new NodeMap<ScopeMap>();
+    }
+
+    /**
+     * @return the scope recorded for each BlockTree; null unless
+     *         recordScopes() was called
+     */
+    public NodeMap<ScopeMap> getBlockScopes() {
+        return blockScopes;
+    }
+
+    /**
+     * @return the intrinsic trees built for this program
+     */
+    public Intrinsics getIntrinsics() {
+        return types;
     }
 
     /**
      * t is an IdTree; retrieve the pointer to its declaration
      */
     private AST lookup(AST t) {
-        return (AST) (symtab.get(((IdTree) t).getSymbol()));
+        AST decl = (AST) (symtab.get(((IdTree) t).getSymbol()));
+
+        if (decl == null) {
+            constraintError(ConstrainerErrors.UndeclaredIdentifier);
+        }
+        return decl;
     }
 
     /**
@@ -73,23 +116,57 @@ public class Constrainer extends ASTVisitor {
      */
     private void enter(AST t, AST decoration) {
         symtab.put(((IdTree) t).getSymbol(), decoration);
+
+        if (blockScopes != null) {
+            scope = scope.put(((IdTree) t).getSymbol(), decoration);
+        }
+    }
+
+    private void beginScope() {
+        symtab.beginScope();
+
+        if (blockScopes != null) {
+            outerScopes.push(scope);
+        }
+    }
+
+    private void endScope() {
+        symtab.endScope();
+
+        if (blockScopes != null) {
+            scope = outerScopes.pop();
+        }
     }
 
     /**
-     * get the type of the current type tree
+     * get the type of the current type tree; when the parser shares leaves
+     * the intrinsic trees hold the very type nodes it used (see LeafPool),
+     * so the type is found by comparing references
      * 
      * @param t is the type tree
      * @return the intrinsic tree corresponding to the type of t
      */
     private AST getType(AST t) {
+        if (parser.getLeaves() != null) {
+            if (t == types.intTree.getKid(1)) {
+                return types.intTree;
+            } else if (t == types.boolTree.getKid(1)) {
+                return types.boolTree;
+            } else if (t == types.stringTree.getKid(1)) {
+                return types.stringTree;
+            } else if (t == types.hexTree.getKid(1)) {
+                return types.hexTree;
+            }
+        }
+        // a type node of its own, e.g. in an intrinsic tree
         if (t.getClass() == IntTypeTree.class) {
-            return intTree;
+            return types.intTree;
         } else if (t.getClass() == StringTypeTree.class) {
-            return stringTree;
+            return types.stringTree;
         } else if (t.getClass() == HexTypeTree.class) {
-            return hexTree;
+            return types.hexTree;
         } else {
-            return boolTree;
+            return types.boolTree;
         }
     }
 
@@ -110,42 +187,59 @@ public class Constrainer extends ASTVisitor {
      */
     private void buildIntrinsicTrees() {
         ILexer lex = parser.getLex();
+        types = new Intrinsics();
+
+        types.trueTree = new IdTree(lex.anonymousIdentifierToken("true"));
+        types.falseTree = new IdTree(lex.anonymousIdentifierToken("false"));
 
-        trueTree = new IdTree(lex.anonymousIdentifierToken("true"));
-        falseTree = new IdTree(lex.anonymousIdentifierToken("false"));
+        types.readId = new IdTree(lex.anonymousIdentifierToken("read"));
+        types.writeId = new IdTree(lex.anonymousIdentifierToken("write"));
 
-        readId = new IdTree(lex.anonymousIdentifierToken("read"));
-        writeId = new IdTree(lex.anonymousIdentifierToken("write"));
+        LeafPool leaves = parser.getLeaves();
 
-        boolTree = (new DeclTree()).addKid(new BoolTypeTree())
+        types.boolTree = (new DeclTree()).addKid(leaves == null ? new BoolTypeTree() : leaves.boolType())
                 .addKid(new IdTree(lex.anonymousIdentifierToken("<<bool>>")));
-        decorate(boolTree.getKid(2), boolTree);
+        decorate(types.boolTree.getKid(2), types.boolTree);
 
-        intTree = (new DeclTree()).addKid(new IntTypeTree())
+        types.intTree = (new DeclTree()).addKid(leaves == null ? new IntTypeTree() : leaves.intType())
                 .addKid(new IdTree(lex.anonymousIdentifierToken("<<int>>")));
-        decorate(intTree.getKid(2), intTree);
+        decorate(types.intTree.getKid(2), types.intTree);
 
-        stringTree = (new DeclTree()).addKid(new StringTypeTree())
+        types.stringTree = (new DeclTree()).addKid(leaves == null ? new StringTypeTree() : leaves.stringType())
                 .addKid(new IdTree(lex.anonymousIdentifierToken("<<string>>")));
-        decorate(stringTree.getKid(2), stringTree);
+        decorate(types.stringTree.getKid(2), types.stringTree);
 
-        hexTree = (new DeclTree()).addKid(new HexTypeTree())
+        types.hexTree = (new DeclTree()).addKid(leaves == null ? new HexTypeTree() : leaves.hexType())
                 .addKid(new IdTree(lex.anonymousIdentifierToken("<<hex>>")));
-        decorate(hexTree.getKid(2), hexTree);
+        decorate(types.hexTree.getKid(2), types.hexTree);
 
         // read tree takes no params and returns an int
-        readTree = (new FunctionDeclTree()).addKid(new IntTypeTree()).addKid(readId).addKid(new FormalsTree())
-                .addKid(new BlockTree());
-        readTree.accept(this);
+        types.readTree = (new FunctionDeclTree()).addKid(new IntTypeTree()).addKid(types.readId)
+                .addKid(new FormalsTree()).addKid(new BlockTree());
+        types.readTree.accept(this);
 
         // write tree takes one int param and returns that value
-        writeTree = (new FunctionDeclTree()).addKid(new IntTypeTree()).addKid(writeId);
+        types.writeTree = (new FunctionDeclTree()).addKid(new IntTypeTree()).addKid(types.writeId);
         AST decl = (new DeclTree()).addKid(new IntTypeTree())
                 .addKid(new IdTree(lex.anonymousIdentifierToken("dummyFormal")));
         AST formals = (new FormalsTree()).addKid(decl);
-        writeTree.addKid(formals).addKid(new BlockTree());
-        writeTree.accept(this);
-
+        types.writeTree.addKid(formals).addKid(new BlockTree());
+        types.writeTree.accept(this);
+
+        context.setIntrinsics(types);
+        if (context.isDefault()) {
+            readTree = types.readTree;
+            writeTree = types.writeTree;
+            intTree = types.intTree;
+            boolTree = types.boolTree;
+            idTree = types.idTree;
+            falseTree = types.falseTree;
+            trueTree = types.trueTree;
+            readId = types.readId;
+            writeId = types.writeId;
+            stringTree = types.stringTree;
+            hexTree = types.hexTree;
+        }
     }
 
     /**
@@ -171,9 +265,12 @@ public class Constrainer extends ASTVisitor {
 
     @Override
     public Object visitBlockTree(AST t) {
-        symtab.beginScope();
+        beginScope();
         visitKids(t);
-        symtab.endScope();
+        if (blockScopes != null) {
+            blockScopes.put(t, scope);
+        }
+        endScope();
 
         return null;
     }
@@ -238,12 +335,12 @@ public class Constrainer extends ASTVisitor {
 
         decorate(returnType, getType(returnType));
         // new scope for formals and body
-        symtab.beginScope();
+        beginScope();
         // all formal names go in new scope
         visitKids(formalsTree);
 
         bodyTree.accept(this);
-        symtab.endScope();
+        endScope();
         functions.pop();
 
         return null;
@@ -326,7 +423,7 @@ public class Constrainer extends ASTVisitor {
      */
     @Override
     public Object visitIfTree(AST t) {
-        if (t.getKid(1).accept(this) != boolTree) {
+        if (t.getKid(1).accept(this) != types.boolTree) {
             constraintError(ConstrainerErrors.BadConditional);
         }
 
@@ -341,7 +438,7 @@ public class Constrainer extends ASTVisitor {
 
     @Override
     public Object visitWhileTree(AST t) {
-        if (t.getKid(1).accept(this) != boolTree) {
+        if (t.getKid(1).accept(this) != types.boolTree) {
             constraintError(ConstrainerErrors.BadConditional);
         }
 
@@ -352,7 +449,7 @@ public class Constrainer extends ASTVisitor {
 
     @Override
     public Object visitUnlessTree(AST t) {
-        if (t.getKid(1).accept(this) != boolTree) {
+        if (t.getKid(1).accept(this) != types.boolTree) {
             constraintError(ConstrainerErrors.BadConditional);
         }
 
@@ -399,7 +496,7 @@ public class Constrainer extends ASTVisitor {
         // now check that the types of the expr and id are the same
         // visit the expr tree and get back its type
         Object exprType = t.getKid(2).accept(this);
-        if (!exprType.equals(typeTree) && !(exprType instanceof String && typeTree.equals(stringTree))) {
+        if (!exprType.equals(typeTree) && !(exprType instanceof String && typeTree.equals(types.stringTree))) {
             constraintError(ConstrainerErrors.BadAssignmentType);
         }
         return null;
@@ -407,20 +504,20 @@ public class Constrainer extends ASTVisitor {
 
     @Override
     public Object visitIntTree(AST t) {
-        decorate(t, intTree);
-        return intTree;
+        decorate(t, types.intTree);
+        return types.intTree;
     }
 
     @Override
     public Object visitStringTree(AST t) {
-        decorate(t, stringTree);
-        return stringTree;
+        decorate(t, types.stringTree);
+        return types.stringTree;
     }
 
     @Override
     public Object visitHexTree(AST t) {
-        decorate(t, hexTree);
-        return hexTree;
+        decorate(t, types.hexTree);
+        return types.hexTree;
     }
 
     @Override
@@ -438,15 +535,15 @@ public class Constrainer extends ASTVisitor {
             constraintError(ConstrainerErrors.TypeMismatchInExpr);
         }
 
-        decorate(t, boolTree);
-        return boolTree;
+        decorate(t, types.boolTree);
+        return types.boolTree;
     }
 
     /**
      * Constrain the expression tree with an adding op at the root:<br>
      * e.g. t1 + t2<br>
      * check that the types of t1 and t2 match, if it's a plus tree
-     * then the types must be a reference to the intTree
+     * then both types must be the intrinsic int tree of this compilation
      * 
      * @return the type of the tree
      */
@@ -0,0 +1,17 @@
+package constrain;
+
+import ast.AST;
+
+/**
+ * The intrinsic trees of one compilation: the declarations of the built-in
+ * types and of the read/write functions, plus the ids they use. The
+ * Constrainer builds them for every program, in the same fashion as source
+ * program trees, and decorations refer to them - e.g. every int expression
+ * is decorated with intTree - so types are compared by identity within a
+ * compilation.
+ */
+public class Intrinsics {
+
+  public AST readTree, writeTree, intTree, boolTree, idTree,
+      falseTree, trueTree, readId, writeId, stringTree, hexTree;
+}
@@ -0,0 +1,157 @@
+package constrain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lexer.Symbol;
+
+/**
+ * A ScopeMap is an immutable map from Symbols to values, for the names in
+ * scope at some point of a program. put() returns a new map and leaves the
+ * old one as it was, so a snapshot of the scope is just a reference to the
+ * map, and a scope is left by going back to the map from before it was
+ * entered. A ScopeMap can be read by any number of threads.
+ *
+ * The map is a hash array mapped trie keyed by Symbol.getId(): each node
+ * covers 5 bits of the id, has a bitmap of the 32 children it holds and
+ * keeps only those, in order, in its array. put() copies just the nodes on
+ * the path to the key, so maps made from one another share all the rest.
+ * Ids are unique within an Interner, so two keys never collide; the keys of
+ * one map must all come from the same Interner.
+ */
+public final class ScopeMap {
+
+  private static final int BITS = 5, MASK = (1 << BITS) - 1;
+  private static final ScopeMap EMPTY = new ScopeMap(new Node(0, new Object[0]), 0);
+
+  private final Node root;
+  private final int size;
+
+  private ScopeMap(Node root, int size) {
+    this.root = root;
+    this.size = size;
+  }
+
+  public static ScopeMap empty() {
+    return EMPTY;
+  }
+
+  /**
+   * @return the value key is bound to; null if it is not in the map
+   */
+  public Object get(Symbol key) {
+    int id = key.getId();
+    Node node = root;
+
+    for (int shift = 0;; shift += BITS) {
+      int bit = 1 << ((id >>> shift) & MASK);
+
+      if ((node.bitmap & bit) == 0) {
+        return null;
+      }
+      Object slot = node.slots[Integer.bitCount(node.bitmap & (bit - 1))];
+
+      if (slot instanceof Node) {
+        node = (Node) slot;
+      } else {
+        Entry e = (Entry) slot;
+        return e.key.getId() == id ? e.value : null;
+      }
+    }
+  }
+
+  public boolean contains(Symbol key) {
+    return get(key) != null;
+  }
+
+  /**
+   * @return a map with key bound to value (hiding what key was bound to in
+   *         this map) and everything else as in this map
+   */
+  public ScopeMap put(Symbol key, Object value) {
+    if (value == null) {
+      throw new IllegalArgumentException("no value for " + key);
+    }
+    boolean added = get(key) == null;
+
+    return new ScopeMap(put(root, 0, new Entry(key, value)), added ? size + 1 : size);
+  }
+
+  /**
+   * @return the number of symbols in the map
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return the symbols in the map, in no particular order
+   */
+  public List<Symbol> keys() {
+    List<Symbol> keys = new ArrayList<>(size);
+    List<Node> stack = new ArrayList<>();
+    stack.add(root);
+
+    while (!stack.isEmpty()) {
+      for (Object slot : stack.remove(stack.size() - 1).slots) {
+        if (slot instanceof Node) {
+          stack.add((Node) slot);
+        } else {
+          keys.add(((Entry) slot).key);
+        }
+      }
+    }
+    return keys;
+  }
+
+  private static Node put(Node node, int shift, Entry e) {
+    int id = e.key.getId();
+    int bit = 1 << ((id >>> shift) & MASK);
+    int index = Integer.bitCount(node.bitmap & (bit - 1));
+
+    if ((node.bitmap & bit) == 0) {
+      Object[] slots = new Object[node.slots.length + 1];
+      System.arraycopy(node.slots, 0, slots, 0, index);
+      slots[index] = e;
+      System.arraycopy(node.slots, index, slots, index + 1, node.slots.length - index);
+      return new Node(node.bitmap | bit, slots);
+    }
+
+    Object slot = node.slots[index];
+    Object replacement;
+    if (slot instanceof Node) {
+      replacement = put((Node) slot, shift + BITS, e);
+    } else if (((Entry) slot).key.getId() == id) {
+      replacement = e;
+    } else {
+      // two ids that agree this far: push both a level down
+      Node pair = put(new Node(0, new Object[0]), shift + BITS, (Entry) slot);
+      replacement = put(pair, shift + BITS, e);
+    }
+
+    Object[] slots = node.slots.clone();
+    slots[index] = replacement;
+    return new Node(node.bitmap, slots);
+  }
+
+  private static final class Node {
+    final int bitmap;
+    // Entries and Nodes, in the order of their bits in bitmap
+    final Object[] slots;
+
+    Node(int bitmap, Object[] slots) {
+      this.bitmap = bitmap;
+      this.slots = slots;
+    }
+  }
+
+  private static final class Entry {
+    final Symbol key;
+    final Object value;
+
+    Entry(Symbol key, Object value) {
+      this.key = key;
+      this.value = value;
+    }
+  }
+}
@@ -1,5 +1,9 @@
 package constrain;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
 import lexer.Symbol;
 
 /**
@@ -11,87 +15,98 @@ import lexer.Symbol;
  * t.beginScope()
  * t.put(Symbol("b"),7)
  * t.put(Symbol("a"),9)
- * 
- * symbols will have the key/value pairs for Symbols "a" and "b" as:
- * 
- * Symbol("a") -> Binder(9, Symbol("b") , Binder(5, null, null) )
- * (the second field has a reference to the prior Symbol added in this
- * scope; the third field refers to the Binder for the Symbol("a")
- * included in the prior scope)
- * Binder has 2 linked lists - the second field contains list of symbols
- * added to the current scope; the third field contains the list of
- * Binders for the Symbols with the same string id - in this case, "a"
- * 
- * Symbol("b") -> Binder(7, null, null)
- * (the second field is null since there are no other symbols to link
- * in this scope; the third field is null since there is no Symbol("b")
- * in prior scopes)
- * 
- * top has a reference to Symbol("a") which was the last symbol added
- * to current scope
- * 
- * Note: What happens if a symbol is defined twice in the same scope??
+ *
+ * Now t.get(Symbol("a")) is 9 and t.get(Symbol("b")) is 7; after
+ * t.endScope() they are 5 and null again.
+ *
+ * Symbols have small dense ids (see Symbol.getId), so the value each symbol
+ * is bound to now is kept in an array indexed by its id, and get() is a
+ * single array load. Every put() also appends the id and the value it
+ * hides to an undo log; beginScope() remembers where the log ends and
+ * endScope() puts the hidden values back, newest first, until the log is
+ * back to that length. Nothing is allocated once the arrays are big
+ * enough. A symbol defined twice in the same scope simply hides its first
+ * definition until the scope ends.
+ *
+ * The ids must all come from the same Interner; values are never null.
  */
 public class Table {
 
-  private java.util.HashMap<Symbol, Binder> symbols = new java.util.HashMap<Symbol, Binder>();
-
-  // reference to last symbol added to
-  // current scope; this essentially is the
-  // start of a linked list of symbols in scope
-  private Symbol top;
-
-  // scope mark; essentially we have a stack of
-  // marks - push for new scope; pop when closing
-  // scope
-  private Binder marks;
-
-  /*
-   * public static void main(String args[]) {
-   * Symbol s = Symbol.symbol("a", 1),
-   * s1 = Symbol.symbol("b", 2),
-   * s2 = Symbol.symbol("c", 3);
-   * 
-   * Table t = new Table();
-   * t.beginScope();
-   * t.put(s,"top-level a");
-   * t.put(s1,"top-level b");
-   * t.beginScope();
-   * t.put(s2,"second-level c");
-   * t.put(s,"second-level a");
-   * t.endScope();
-   * t.put(s2,"top-level c");
-   * t.endScope();
-   * }
-   * 
-   */
+  // the value each symbol id is bound to now; null if it is not declared
+  private Object[] values;
+  // the symbol of each id that has ever been bound, for keys()
+  private Symbol[] keys;
+
+  // the undo log: the id bound by each put() and the value it hid
+  private int[] loggedIds = new int[64];
+  private Object[] hidden = new Object[64];
+  private int logSize;
+
+  // the log size at each beginScope() still open
+  private int[] marks = new int[16];
+  private int depth;
+
   public Table() {
+    this(256);
+  }
+
+  /**
+   * @param capacity the number of symbol ids to make room for up front
+   */
+  public Table(int capacity) {
+    values = new Object[Math.max(capacity, 16)];
+    keys = new Symbol[values.length];
   }
 
   /**
    * Gets the object associated with the specified symbol in the Table.
+   *
+   * @return the value; null if the symbol is not declared in any open
+   *         scope
    */
   public Object get(Symbol key) {
-    Binder e = symbols.get(key);
-    return e.getValue();
+    int id = key.getId();
+    return id < values.length ? values[id] : null;
   }
 
   /**
-   * Puts the specified value into the Table, bound to the specified Symbol.<br>
-   * Maintain the list of symbols in the current scope (top);<br>
-   * Add to list of symbols in prior scope with the same string identifier
+   * @return true if the symbol is declared in an open scope
+   */
+  public boolean isDeclared(Symbol key) {
+    return get(key) != null;
+  }
+
+  /**
+   * Puts the specified value into the Table, bound to the specified Symbol;
+   * the value it was bound to before comes back at the end of the scope
    */
   public void put(Symbol key, Object value) {
-    symbols.put(key, new Binder(value, top, symbols.get(key)));
-    top = key;
+    int id = key.getId();
+
+    if (id >= values.length) {
+      int capacity = Math.max(values.length * 2, id + 1);
+      values = Arrays.copyOf(values, capacity);
+      keys = Arrays.copyOf(keys, capacity);
+    }
+    if (logSize == loggedIds.length) {
+      loggedIds = Arrays.copyOf(loggedIds, logSize * 2);
+      hidden = Arrays.copyOf(hidden, logSize * 2);
+    }
+
+    loggedIds[logSize] = id;
+    hidden[logSize++] = values[id];
+    values[id] = value;
+    keys[id] = key;
   }
 
   /**
    * Remembers the current state of the Table; push new mark on mark stack
    */
   public void beginScope() {
-    marks = new Binder(null, top, marks);
-    top = null;
+    if (depth == marks.length) {
+      marks = Arrays.copyOf(marks, depth * 2);
+    }
+    marks[depth++] = logSize;
   }
 
   /**
@@ -99,26 +114,26 @@ public class Table {
    * that has not already been ended.
    */
   public void endScope() {
-    while (top != null) {
-      Binder e = symbols.get(top);
+    int mark = marks[--depth];
 
-      if (e.getTail() != null) {
-        symbols.put(top, e.getTail());
-      } else {
-        symbols.remove(top);
-      }
-
-      top = e.getPrevtop();
+    while (logSize > mark) {
+      logSize--;
+      values[loggedIds[logSize]] = hidden[logSize];
+      hidden[logSize] = null;
     }
-
-    top = marks.getPrevtop();
-    marks = marks.getTail();
   }
 
   /**
    * @return a set of the Table's symbols.
    */
-  public java.util.Set<Symbol> keys() {
-    return symbols.keySet();
+  public Set<Symbol> keys() {
+    Set<Symbol> declared = new HashSet<>();
+
+    for (int id = 0; id < values.length; id++) {
+      if (values[id] != null) {
+        declared.add(keys[id]);
+      }
+    }
+    return declared;
   }
 }
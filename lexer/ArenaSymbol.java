@@ -0,0 +1,66 @@
+package lexer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A Symbol whose lexeme is kept in a LexemeArena; it holds the slab and the
+ * offset and length of its bytes instead of a String
+ */
+final class ArenaSymbol extends Symbol {
+
+  private final LexemeArena arena;
+  private final ByteBuffer slab;
+  private final int offset, length;
+
+  ArenaSymbol(LexemeArena arena, ByteBuffer slab, int offset, int length, Tokens kind, int hash, int id) {
+    super(null, kind, hash, id);
+    this.arena = arena;
+    this.slab = slab;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  @Override
+  String lexeme() {
+    arena.check();
+
+    char[] chars = new char[length];
+    for (int k = 0; k < length; k++) {
+      chars[k] = (char) (slab.get(offset + k) & 0xFF);
+    }
+    return new String(chars);
+  }
+
+  @Override
+  int length() {
+    return length;
+  }
+
+  @Override
+  boolean matches(char[] buffer, int start, int end) {
+    if (length != end - start) {
+      return false;
+    }
+    arena.check();
+    for (int k = start; k < end; k++) {
+      if ((slab.get(offset + k - start) & 0xFF) != buffer[k]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  boolean matches(String lexeme) {
+    if (length != lexeme.length()) {
+      return false;
+    }
+    arena.check();
+    for (int k = 0; k < length; k++) {
+      if ((slab.get(offset + k) & 0xFF) != lexeme.charAt(k)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
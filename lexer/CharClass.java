@@ -0,0 +1,64 @@
+package lexer;
+
+/**
+ * Precomputed character classes for the lexers; an ASCII character is
+ * classified with a single table load, anything else falls back to the
+ * java.lang.Character predicates the original Lexer uses so both agree
+ */
+public final class CharClass {
+
+  private static final int WHITESPACE = 1;
+  private static final int IDENTIFIER_START = 2;
+  private static final int IDENTIFIER_PART = 4;
+  private static final int DIGIT = 8;
+  private static final int HEX_DIGIT = 16;
+
+  private static final byte[] ascii = new byte[128];
+
+  static {
+    for (char c = 0; c < 128; c++) {
+      int flags = 0;
+
+      if (Character.isWhitespace(c)) {
+        flags |= WHITESPACE;
+      }
+      if (Character.isJavaIdentifierStart(c)) {
+        flags |= IDENTIFIER_START;
+      }
+      // '\0' marks end of file and never belongs to an identifier
+      if (c != '\0' && Character.isJavaIdentifierPart(c)) {
+        flags |= IDENTIFIER_PART;
+      }
+      if (Character.isDigit(c)) {
+        flags |= DIGIT;
+      }
+      if ((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F')) {
+        flags |= HEX_DIGIT;
+      }
+      ascii[c] = (byte) flags;
+    }
+  }
+
+  private CharClass() {
+  }
+
+  public static boolean isWhitespace(char c) {
+    return c < 128 ? (ascii[c] & WHITESPACE) != 0 : Character.isWhitespace(c);
+  }
+
+  public static boolean isIdentifierStart(char c) {
+    return c < 128 ? (ascii[c] & IDENTIFIER_START) != 0 : Character.isJavaIdentifierStart(c);
+  }
+
+  public static boolean isIdentifierPart(char c) {
+    return c < 128 ? (ascii[c] & IDENTIFIER_PART) != 0 : Character.isJavaIdentifierPart(c);
+  }
+
+  public static boolean isDigit(char c) {
+    return c < 128 ? (ascii[c] & DIGIT) != 0 : Character.isDigit(c);
+  }
+
+  public static boolean isHexDigit(char c) {
+    return c < 128 && (ascii[c] & HEX_DIGIT) != 0;
+  }
+}
@@ -0,0 +1,114 @@
+package lexer;
+
+import java.lang.reflect.Constructor;
+
+/**
+ * A CharScanner finds the ends of the runs of characters the lexers skip:
+ * whitespace between tokens and the text of a // comment. This class does
+ * it one char at a time; when the jdk.incubator.vector module is present
+ * create() returns a VectorCharScanner, which does the same a vector of
+ * chars at a time.
+ *
+ * skipWhitespace() also reports how many '\n's it went past and where the
+ * last one was, so the caller can keep its line bookkeeping without looking
+ * at the run again. A scanner is not shared between lexers.
+ */
+public class CharScanner {
+
+  // how to make a VectorCharScanner; null if this JVM can't run one (the
+  // module isn't in the boot layer, e.g. no --add-modules, or the class
+  // wasn't compiled)
+  private static final Constructor<?> vectorScanner = findVectorScanner();
+
+  // '\n's passed by the last skipWhitespace() and the index of the last one
+  protected int newlines, lastNewline;
+
+  /**
+   * @return a vector scanner if this JVM has the vector module, otherwise a
+   *         scalar one
+   */
+  public static CharScanner create() {
+    CharScanner scanner = vector();
+    return scanner != null ? scanner : new CharScanner();
+  }
+
+  /**
+   * @return a VectorCharScanner, or null if this JVM can't run one
+   */
+  public static CharScanner vector() {
+    try {
+      return vectorScanner == null ? null : (CharScanner) vectorScanner.newInstance();
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+  private static Constructor<?> findVectorScanner() {
+    if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+      return null;
+    }
+    try {
+      Constructor<?> constructor = Class.forName("lexer.VectorCharScanner").getDeclaredConstructor();
+      // make sure the Vector API really links before we rely on it
+      ((CharScanner) constructor.newInstance()).skipWhitespace(new char[64], 0, 64);
+      return constructor;
+    } catch (ReflectiveOperationException | LinkageError e) {
+      return null;
+    }
+  }
+
+  /**
+   * @return the index of the first char in buffer[from..to) that isn't
+   *         whitespace, or to
+   */
+  public int skipWhitespace(char[] buffer, int from, int to) {
+    newlines = 0;
+    lastNewline = -1;
+    return skipWhitespaceFrom(buffer, from, to);
+  }
+
+  /**
+   * Scalar loop of skipWhitespace() that adds to newlines/lastNewline; the
+   * vector scanner finishes a run with it
+   */
+  protected int skipWhitespaceFrom(char[] buffer, int i, int to) {
+    char ch;
+
+    while (i < to && CharClass.isWhitespace(ch = buffer[i])) {
+      if (ch == '\n') {
+        newlines++;
+        lastNewline = i;
+      }
+      i++;
+    }
+    return i;
+  }
+
+  /**
+   * @return the index of the first '\n' or '\0' (end of file) in
+   *         buffer[from..to), or to
+   */
+  public int lineEnd(char[] buffer, int from, int to) {
+    char ch;
+
+    while (from < to && (ch = buffer[from]) != '\n' && ch != '\0') {
+      from++;
+    }
+    return from;
+  }
+
+  /**
+   * @return the number of '\n's the last skipWhitespace() went past
+   */
+  public int newlines() {
+    return newlines;
+  }
+
+  /**
+   * @return the index of the last '\n' the last skipWhitespace() went past,
+   *         or -1
+   */
+  public int lastNewline() {
+    return lastNewline;
+  }
+}
@@ -0,0 +1,101 @@
+package lexer;
+
+import lexer.readers.MappedSourceReader;
+
+/**
+ * The DfaLexer recognizes operators, separators, reserved words and
+ * identifiers by running the DFA in TokenTable (generated by TokenSetup
+ * from tokens.txt) instead of probing the symbol table with one and two
+ * character Strings. Numbers, string literals, comments and whitespace are
+ * handled exactly as in SliceLexer so the tokens match Lexer's.
+ */
+public class DfaLexer extends SliceLexer {
+
+  // the Symbol for each token kind with a fixed spelling, by ordinal
+  private final Symbol[] fixedSymbols = new Symbol[Tokens.values().length];
+
+  // end of the longest match found by the last call to match()
+  private int matchEnd;
+
+  public DfaLexer(String sourceFile) throws Exception {
+    this(new MappedSourceReader(sourceFile));
+  }
+
+  public DfaLexer(MappedSourceReader reader) {
+    this(reader.buffer(), reader.length());
+  }
+
+  public DfaLexer(char[] buffer, int length) {
+    super(buffer, length);
+
+    for (Tokens kind : Tokens.values()) {
+      fixedSymbols[kind.ordinal()] = TokenType.tokens.get(kind);
+    }
+  }
+
+  /**
+   * Run the DFA from buffer[start] for as long as it has a transition,
+   * remembering the last accepting state (longest match)
+   *
+   * @return the kind of the longest match; null if nothing matched
+   */
+  private Tokens match(int start) {
+    final byte[] charClass = TokenTable.charClass;
+    final short[] transitions = TokenTable.transitions;
+    final Tokens[] accept = TokenTable.accept;
+    Tokens kind = null;
+    int state = 0;
+
+    matchEnd = start;
+    for (int i = start; i < length; i++) {
+      char c = buffer[i];
+
+      if (c >= 128 || (state = transitions[state * TokenTable.CLASSES + charClass[c]]) < 0) {
+        break;
+      }
+      if (accept[state] != null) {
+        kind = accept[state];
+        matchEnd = i + 1;
+      }
+    }
+
+    return kind;
+  }
+
+  @Override
+  protected void reservedWordOrIdentifier(int start, int column) {
+    Tokens kind = match(start);
+
+    // the table only covers ASCII; let SliceLexer finish anything else
+    if (kind == null || CharClass.isIdentifierPart(charAt(matchEnd))) {
+      super.reservedWordOrIdentifier(start, column);
+      return;
+    }
+    int right = column + matchEnd - start - 1;
+
+    if (kind == Tokens.Identifier) {
+      found(symbols.symbol(buffer, start, matchEnd, Tokens.Identifier), matchEnd, column, right);
+    } else {
+      found(fixedSymbols[kind.ordinal()], matchEnd, column, right);
+    }
+  }
+
+  @Override
+  protected boolean operatorOrSeparator(int start, int column) {
+    Tokens kind = match(start);
+
+    if (kind == null) {
+      // end of file or an illegal character
+      return super.operatorOrSeparator(start, column);
+    }
+
+    if (kind == Tokens.Comment) {
+      position = matchEnd;
+      ignoreComment();
+      return false;
+    }
+
+    found(fixedSymbols[kind.ordinal()], matchEnd, column, column + matchEnd - start - 1);
+    return true;
+  }
+}
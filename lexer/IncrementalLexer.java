@@ -0,0 +1,217 @@
+package lexer;
+
+import lexer.readers.LineIndex;
+import lexer.readers.MappedSourceReader;
+
+/**
+ * The IncrementalLexer keeps the source text together with its TokenBuffer
+ * and, after an edit, re-scans only the part of the source the edit can
+ * affect.
+ *
+ * Scanning restarts at the start of the line holding the edit - a token
+ * never spans a newline except a @...@ string literal (// comments end at
+ * their newline), so if that line start is inside a string literal we back
+ * up to the line the literal starts on. Once a new token starts where an
+ * old token after the edit started (moved by the size of the edit) and is
+ * the same token at the same column, the rest of the old stream is reused
+ * with its offsets moved.
+ *
+ * Only the scanning (matching chars and interning lexemes) is
+ * proportional to the size of the edit. Every edit still makes a new
+ * source buffer, LineIndex and TokenBuffer: the chars, the line starts and
+ * the tokens after the edit are copied over in bulk, and the copied token
+ * offsets are moved. That is linear in the size of the file, though with a
+ * small constant. The offsets are absolute throughout the lexers, the
+ * parser and the tree, so keeping them relative (a gap buffer or piece
+ * table) would have to change all of those. IncrementalParser needs the
+ * old stream next to the new one, and the copying gives it that: the
+ * buffers are never changed in place, so a TokenBuffer handed out earlier
+ * still describes the source it was made from.
+ */
+public class IncrementalLexer {
+
+  private char[] buffer;
+  private int length;
+  private TokenBuffer tokens;
+  // the number of tokens scanned by the last edit
+  private int relexed;
+  // the first token the last edit changed, and where the old and the
+  // new stream have the same tokens again from
+  private int changedFrom, oldResume, newResume;
+
+  /**
+   * @param sourceFile is the name of the File to read the program source from
+   */
+  public IncrementalLexer(String sourceFile) throws Exception {
+    this(new MappedSourceReader(sourceFile));
+  }
+
+  public IncrementalLexer(MappedSourceReader reader) {
+    this(reader.buffer(), reader.length());
+  }
+
+  public IncrementalLexer(char[] buffer, int length) {
+    this.buffer = buffer;
+    this.length = length;
+    this.tokens = TokenBuffer.lex(new SliceLexer(buffer, length));
+    this.relexed = tokens.size();
+    this.newResume = this.oldResume = tokens.size();
+  }
+
+  public TokenBuffer tokens() {
+    return tokens;
+  }
+
+  /**
+   * @return the current source; only the first <i>length()</i> chars are
+   *         source
+   */
+  public char[] buffer() {
+    return buffer;
+  }
+
+  public int length() {
+    return length;
+  }
+
+  /**
+   * @return the number of tokens the last edit had to scan
+   */
+  public int relexedCount() {
+    return relexed;
+  }
+
+  /**
+   * @return the index of the first token the last edit changed; the tokens
+   *         before it are the same in the old and the new stream
+   */
+  public int changedFrom() {
+    return changedFrom;
+  }
+
+  /**
+   * @return the index in the stream before the last edit of the first token
+   *         that was reused after it; the size of that stream if none was
+   */
+  public int oldResume() {
+    return oldResume;
+  }
+
+  /**
+   * @return the index in the current stream of the first token reused by
+   *         the last edit; from here on the token at i is the token at
+   *         i + oldResume() - newResume() before the edit, moved
+   */
+  public int newResume() {
+    return newResume;
+  }
+
+  /**
+   * Replace removed chars at offset with inserted and bring the token
+   * stream up to date
+   *
+   * @return the token stream of the edited source
+   */
+  public TokenBuffer edit(int offset, int removed, CharSequence inserted) {
+    if (offset < 0 || removed < 0 || offset + removed > length) {
+      throw new IndexOutOfBoundsException(
+          String.format("edit [%d, %d) outside source of length %d", offset, offset + removed, length));
+    }
+    int delta = inserted.length() - removed;
+    int newLength = length + delta;
+    char[] newBuffer = new char[newLength];
+
+    System.arraycopy(buffer, 0, newBuffer, 0, offset);
+    for (int i = 0; i < inserted.length(); i++) {
+      newBuffer[offset + i] = inserted.charAt(i);
+    }
+    System.arraycopy(buffer, offset + removed, newBuffer, offset + inserted.length(),
+        length - offset - removed);
+
+    LineIndex oldLines = tokens.lines();
+    LineIndex lines = oldLines.edit(newBuffer, newLength, offset, removed, inserted.length());
+    int restart = restartPoint(offset);
+    int first = tokens.indexAt(restart);
+
+    TokenBuffer edited = new TokenBuffer(tokens.symbolTable(), lines, tokens.size() + inserted.length() / 4);
+    edited.addAll(tokens, 0, first, 0);
+
+    SliceLexer lexer = new SliceLexer(newBuffer, newLength, CharScanner.create(), tokens.symbolTable());
+    lexer.restart(restart, oldLines.lineOf(restart));
+    relexed = 0;
+
+    // old tokens starting at or after editEnd lie wholly in the unchanged
+    // tail of the source, which is where a resync can happen
+    int editEnd = offset + removed;
+    int old = tokens.indexAt(editEnd);
+    oldResume = tokens.size();
+
+    while (true) {
+      lexer.scan();
+      relexed++;
+
+      int start = lexer.tokenStart - delta;
+
+      while (old < tokens.size() && tokens.start(old) < start) {
+        old++;
+      }
+      if (old < tokens.size() && tokens.start(old) == start && sameToken(old, lexer, delta)) {
+        oldResume = old;
+        newResume = edited.size();
+        edited.addAll(tokens, old, tokens.size(), delta);
+        break;
+      }
+      edited.add(lexer);
+
+      if (lexer.tokenSymbol.getKind() == Tokens.EOF) {
+        break;
+      }
+    }
+
+    if (oldResume == tokens.size()) {
+      newResume = edited.size();
+    }
+    // scanning restarts at a line start, so the first tokens scanned are
+    // often the ones that were there
+    changedFrom = first;
+    while (changedFrom < oldResume && changedFrom < newResume && sameToken(edited, changedFrom)) {
+      changedFrom++;
+    }
+    buffer = newBuffer;
+    length = newLength;
+    tokens = edited;
+    return edited;
+  }
+
+  /**
+   * @return the start of the line holding offset, moved back to the start
+   *         of an earlier line while that line start is inside a token
+   */
+  private int restartPoint(int offset) {
+    LineIndex lines = tokens.lines();
+    // nothing is scanned past the last token, e.g. an error token
+    int restart = lines.lineStart(lines.lineOf(Math.min(offset, tokens.start(tokens.size() - 1))));
+
+    while (true) {
+      int before = tokens.indexAt(restart) - 1;
+
+      if (before < 0 || tokens.end(before) <= restart) {
+        return restart;
+      }
+      restart = lines.lineStart(lines.lineOf(tokens.start(before)));
+    }
+  }
+
+  private boolean sameToken(TokenBuffer edited, int i) {
+    return tokens.symbolId(i) == edited.symbolId(i)
+        && tokens.start(i) == edited.start(i)
+        && tokens.end(i) == edited.end(i);
+  }
+
+  private boolean sameToken(int old, SliceLexer lexer, int delta) {
+    return tokens.symbolId(old) == lexer.tokenSymbol.getId()
+        && tokens.end(old) == lexer.tokenEnd - delta
+        && tokens.left(old) == lexer.tokenLeft
+        && tokens.right(old) == lexer.tokenRight;
+  }
+}
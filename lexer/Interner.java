@@ -0,0 +1,447 @@
+package lexer;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An Interner maps every lexeme to its unique Symbol. The table is split
+ * into stripes by hash code; each stripe is an open addressing table
+ * (linear probing) keyed by the String hash code, so a lexeme can be looked
+ * up straight from a slice of the source buffer without making a String.
+ *
+ * Lookups of symbols already present take no lock at all. Entering a new
+ * symbol locks only its stripe, so lexers running at the same time mostly
+ * enter symbols without waiting on each other; a stripe that has to grow
+ * publishes its new table as a whole. Slots of the tables and of the byId
+ * pages are written with release stores and read with acquire loads, and a
+ * symbol goes into byId before it goes into its stripe, so a Symbol found
+ * without a lock is complete and byId() already has it on every thread.
+ *
+ * Every symbol gets a dense id (0, 1, 2, ...) for indexing arrays; byId()
+ * maps it back. Each compilation has an interner of its own (see
+ * compiler.CompilationContext). Every interner starts out with the pinned
+ * symbols - the Symbol of each token kind in TokenType, plus the Symbol for
+ * a null lexeme - which are shared by all interners and have the same ids
+ * in each of them; the ids of an interner's own symbols follow on.
+ *
+ * Nothing is ever removed from an interner; its symbols are reclaimed
+ * together with it once its compilation is finished and dropped, while the
+ * pinned symbols live for as long as the process. A process that keeps
+ * lexing in the default context can start a new generation of symbols
+ * with CompilationContext.newGeneration(). stats() reports what the
+ * interners that are still reachable hold, to watch this in production.
+ *
+ * An interner made with a LexemeArena keeps the text of its own symbols
+ * off the heap in the arena (one byte per char) rather than in Strings; a
+ * lexeme found in a slice of the source is then copied straight from the
+ * slice into the arena.
+ */
+public class Interner {
+
+  // release stores and acquire loads of the slots of tables and pages;
+  // set before PINNED, which already enters symbols
+  private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(Symbol[].class);
+
+  // the symbols every interner starts with; filled while TokenType loads
+  static final Interner PINNED = new Interner(64);
+
+  private static final int STRIPE_BITS = 4;
+  private static final int STRIPES = 1 << STRIPE_BITS;
+  // byId is kept in pages so it can grow without copying or locking readers
+  private static final int PAGE_BITS = 10;
+  private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+  // every public interner that is still reachable, for stats()
+  private static final Map<Interner, Boolean> live =
+      Collections.synchronizedMap(new WeakHashMap<>());
+
+  // rough sizes, with compressed references, of a Symbol, an ArenaSymbol
+  // and a String with its (Latin-1) array, not counting the chars
+  private static final int SYMBOL_BYTES = 32, ARENA_SYMBOL_BYTES = 48, STRING_BYTES = 24 + 16;
+
+  private final Stripe[] stripes = new Stripe[STRIPES];
+  private final AtomicInteger nextId = new AtomicInteger();
+  private volatile Symbol[][] pages = new Symbol[4][];
+  // the Symbol for a null lexeme (error tokens are built from null)
+  private final Symbol nullSymbol;
+  // where the lexemes of new symbols go; null to keep them in Strings
+  private final LexemeArena arena;
+
+  /**
+   * One stripe of the table; its lock guards count and writes to table
+   */
+  private static final class Stripe {
+    volatile Symbol[] table;
+    int count;
+
+    Stripe(Symbol[] table, int count) {
+      this.table = table;
+      this.count = count;
+    }
+  }
+
+  private Interner(int capacity) {
+    for (int s = 0; s < STRIPES; s++) {
+      stripes[s] = new Stripe(new Symbol[capacity], 0);
+    }
+    arena = null;
+    nullSymbol = newSymbol(null, Tokens.EOF, 0);
+  }
+
+  public Interner() {
+    this(null);
+  }
+
+  /**
+   * @param arena holds the lexemes of the symbols entered from now on; null
+   *              to keep them on the heap
+   */
+  public Interner(LexemeArena arena) {
+    // makes sure the pinned symbols are all there before we copy them
+    TokenType.init();
+
+    for (int s = 0; s < STRIPES; s++) {
+      Stripe pinned = PINNED.stripes[s];
+
+      synchronized (pinned) {
+        stripes[s] = new Stripe(rehash(pinned.table, 256), pinned.count);
+      }
+    }
+
+    int pinnedCount = PINNED.nextId.get();
+    for (int id = 0; id < pinnedCount; id++) {
+      register(PINNED.byId(id));
+    }
+    nextId.set(pinnedCount);
+    nullSymbol = PINNED.nullSymbol;
+    this.arena = arena;
+    live.put(this, Boolean.TRUE);
+  }
+
+  /**
+   * Return the unique symbol associated with a string.
+   * Repeated calls to symbol("abc") will return the same Symbol.
+   */
+  public Symbol symbol(String lexeme, Tokens kind) {
+    if (lexeme == null) {
+      return nullSymbol;
+    }
+
+    int hash = lexeme.hashCode();
+    Stripe stripe = stripes[stripe(hash)];
+    Symbol s = find(stripe.table, lexeme, hash);
+
+    if (s != null || kind == Tokens.BogusToken) {
+      // a bogus string is never entered into symbols
+      return s;
+    }
+
+    synchronized (stripe) {
+      Symbol[] table = stripe.table;
+      int i = slot(table, lexeme, hash);
+
+      return table[i] != null ? table[i] : enter(stripe, i, newSymbol(lexeme, kind, hash));
+    }
+  }
+
+  /**
+   * Same as symbol(String, Tokens) but the lexeme is given as the chars
+   * buffer[start..end); a String is only created the first time the lexeme
+   * is seen
+   */
+  public Symbol symbol(char[] buffer, int start, int end, Tokens kind) {
+    int hash = 0;
+
+    for (int k = start; k < end; k++) {
+      hash = 31 * hash + buffer[k];
+    }
+
+    Stripe stripe = stripes[stripe(hash)];
+    Symbol s = find(stripe.table, buffer, start, end, hash);
+
+    if (s != null || kind == Tokens.BogusToken) {
+      return s;
+    }
+    if (arena == null || !LexemeArena.fits(buffer, start, end)) {
+      return symbol(new String(buffer, start, end - start), kind);
+    }
+
+    synchronized (stripe) {
+      Symbol[] table = stripe.table;
+      int i = slot(table, buffer, start, end, hash);
+
+      if (table[i] != null) {
+        return table[i];
+      }
+      s = arena.store(buffer, start, end, kind, hash, nextId.getAndIncrement());
+      register(s);
+      return enter(stripe, i, s);
+    }
+  }
+
+  /**
+   * @return the Symbol with the given id
+   */
+  public Symbol byId(int id) {
+    return (Symbol) SLOTS.getAcquire(pages[id >>> PAGE_BITS], id & (PAGE_SIZE - 1));
+  }
+
+  /**
+   * @return the number of symbols, pinned ones included; ids are below it
+   */
+  public int size() {
+    return nextId.get();
+  }
+
+  /**
+   * @return the number of pinned symbols, which every interner shares
+   */
+  public static int pinnedCount() {
+    return PINNED.size();
+  }
+
+  /**
+   * @return the number of symbols this interner entered itself, i.e. the
+   *         ones that go away with it
+   */
+  public int ownCount() {
+    return size() - pinnedCount();
+  }
+
+  /**
+   * @return an estimate of the heap this interner holds on to beyond the
+   *         pinned symbols: its own Symbols with their lexemes plus its
+   *         tables; lexemes kept in a LexemeArena are not included
+   */
+  public long memoryUsage() {
+    long bytes = 0;
+
+    int pinned = pinnedCount();
+    Symbol[][] directory = pages;
+
+    // read the pages directly: an id is handed out just before its Symbol
+    // is registered, so a symbol being entered may not be there yet
+    for (int p = 0; p < directory.length; p++) {
+      Symbol[] page = directory[p];
+
+      if (page == null) {
+        bytes += 4;
+        continue;
+      }
+      bytes += 16 + 4L * PAGE_SIZE;
+      for (int k = Math.max(0, pinned - p * PAGE_SIZE); k < PAGE_SIZE; k++) {
+        Symbol s = (Symbol) SLOTS.getAcquire(page, k);
+
+        if (s instanceof ArenaSymbol) {
+          bytes += ARENA_SYMBOL_BYTES;
+        } else if (s != null) {
+          bytes += SYMBOL_BYTES + STRING_BYTES + s.length();
+        }
+      }
+    }
+    for (Stripe stripe : stripes) {
+      bytes += 16 + 4L * stripe.table.length;
+    }
+    return bytes;
+  }
+
+  /**
+   * @return the bytes of the LexemeArena the lexemes are kept in; 0 if
+   *         they are kept on the heap
+   */
+  public long offHeapUsage() {
+    return arena == null ? 0 : arena.bytes();
+  }
+
+  public LexemeArena arena() {
+    return arena;
+  }
+
+  /**
+   * @return the symbol counts and memory of all the interners that are
+   *         still reachable
+   */
+  public static Stats stats() {
+    List<Interner> interners;
+
+    synchronized (live) {
+      interners = new ArrayList<>(live.keySet());
+    }
+
+    long symbols = 0, bytes = 0, offHeap = 0;
+    for (Interner interner : interners) {
+      symbols += interner.ownCount();
+      bytes += interner.memoryUsage();
+      offHeap += interner.offHeapUsage();
+    }
+    return new Stats(interners.size(), pinnedCount(), symbols, bytes, offHeap);
+  }
+
+  /**
+   * A snapshot of what the live interners hold; see stats()
+   */
+  public static final class Stats {
+
+    // interners still reachable, symbols shared by all of them, symbols
+    // entered by the live interners and the heap and off-heap memory those
+    // hold
+    public final int interners, pinned;
+    public final long symbols, bytes, offHeapBytes;
+
+    Stats(int interners, int pinned, long symbols, long bytes, long offHeapBytes) {
+      this.interners = interners;
+      this.pinned = pinned;
+      this.symbols = symbols;
+      this.bytes = bytes;
+      this.offHeapBytes = offHeapBytes;
+    }
+
+    public String toString() {
+      return String.format("%d interners, %d pinned symbols, %d live symbols, ~%d KB heap, %d KB off-heap",
+          interners, pinned, symbols, bytes / 1024, offHeapBytes / 1024);
+    }
+  }
+
+  /**
+   * the slot within a stripe comes from the low bits of the hash, so the
+   * stripe is picked with the high bits of the hash times the golden ratio
+   * (which short lexemes, with small hash codes, still spread over)
+   */
+  private static int stripe(int hash) {
+    return (hash * 0x9E3779B9) >>> (32 - STRIPE_BITS);
+  }
+
+  /**
+   * @return the Symbol for lexeme in table; null if it is not there. Used
+   *         without a lock, so each slot is read once: an empty slot may be
+   *         filled by another thread right after it is looked at
+   */
+  private static Symbol find(Symbol[] table, String lexeme, int hash) {
+    int mask = table.length - 1;
+    Symbol s;
+
+    for (int i = hash & mask; (s = (Symbol) SLOTS.getAcquire(table, i)) != null; i = (i + 1) & mask) {
+      if (s.hash() == hash && s.matches(lexeme)) {
+        return s;
+      }
+    }
+    return null;
+  }
+
+  private static Symbol find(Symbol[] table, char[] buffer, int start, int end, int hash) {
+    int mask = table.length - 1;
+    Symbol s;
+
+    for (int i = hash & mask; (s = (Symbol) SLOTS.getAcquire(table, i)) != null; i = (i + 1) & mask) {
+      if (s.hash() == hash && s.matches(buffer, start, end)) {
+        return s;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return the slot holding lexeme in table, or the empty slot that ends
+   *         its probe run; the caller holds the stripe's lock
+   */
+  private static int slot(Symbol[] table, String lexeme, int hash) {
+    int mask = table.length - 1;
+    int i = hash & mask;
+    Symbol s;
+
+    while ((s = table[i]) != null) {
+      if (s.hash() == hash && s.matches(lexeme)) {
+        break;
+      }
+      i = (i + 1) & mask;
+    }
+    return i;
+  }
+
+  private static int slot(Symbol[] table, char[] buffer, int start, int end, int hash) {
+    int mask = table.length - 1;
+    int i = hash & mask;
+    Symbol s;
+
+    while ((s = table[i]) != null) {
+      if (s.hash() == hash && s.matches(buffer, start, end)) {
+        break;
+      }
+      i = (i + 1) & mask;
+    }
+    return i;
+  }
+
+  /**
+   * make a Symbol with the next id; the caller holds a stripe lock (or is
+   * the constructor)
+   */
+  private Symbol newSymbol(String lexeme, Tokens kind, int hash) {
+    Symbol s = arena != null && lexeme != null && LexemeArena.fits(lexeme)
+        ? arena.store(lexeme, kind, hash, nextId.getAndIncrement())
+        : new Symbol(lexeme, kind, hash, nextId.getAndIncrement());
+    register(s);
+    return s;
+  }
+
+  /**
+   * record s in byId; only a missing page needs the interner's lock. A
+   * published directory is never changed: a new page goes into a copy,
+   * which then replaces it
+   */
+  private void register(Symbol s) {
+    int page = s.getId() >>> PAGE_BITS;
+    Symbol[][] directory = pages;
+
+    if (page >= directory.length || directory[page] == null) {
+      synchronized (this) {
+        directory = pages;
+        if (page >= directory.length || directory[page] == null) {
+          int length = page < directory.length ? directory.length : Math.max(directory.length * 2, page + 1);
+          directory = Arrays.copyOf(directory, length);
+          directory[page] = new Symbol[PAGE_SIZE];
+          pages = directory;
+        }
+      }
+    }
+    SLOTS.setRelease(directory[page], s.getId() & (PAGE_SIZE - 1), s);
+  }
+
+  /**
+   * Put s in the given (empty) slot of the stripe; the caller holds the
+   * stripe's lock
+   */
+  private static Symbol enter(Stripe stripe, int slot, Symbol s) {
+    SLOTS.setRelease(stripe.table, slot, s);
+
+    // keep the table at most half full so probe runs stay short
+    if (++stripe.count * 2 > stripe.table.length) {
+      stripe.table = rehash(stripe.table, stripe.table.length * 2);
+    }
+
+    return s;
+  }
+
+  private static Symbol[] rehash(Symbol[] old, int capacity) {
+    Symbol[] grown = new Symbol[capacity];
+    int mask = capacity - 1;
+
+    for (Symbol e : old) {
+      if (e != null) {
+        int i = e.hash() & mask;
+        while (grown[i] != null) {
+          i = (i + 1) & mask;
+        }
+        grown[i] = e;
+      }
+    }
+    return grown;
+  }
+}
@@ -0,0 +1,106 @@
+package lexer;
+
+/**
+ * This file is automatically generated
+ * - it contains a collision-free (perfect) hash of the reserved words
+ * so a lexer can recognize one straight from a slice of its buffer
+ */
+public final class Keywords {
+
+  private static final int SEED = 83, MASK = 31;
+
+  private static final String[] words = {
+    null,
+    null,
+    "program",
+    null,
+    null,
+    "int",
+    null,
+    "hex",
+    "else",
+    null,
+    null,
+    "select",
+    null,
+    null,
+    "unless",
+    null,
+    null,
+    "boolean",
+    null,
+    "return",
+    "string",
+    "function",
+    "if",
+    "while",
+    null,
+    null,
+    null,
+    null,
+    null,
+    "then",
+    null,
+    null
+  };
+
+  private static final Tokens[] kinds = {
+    null,
+    null,
+    Tokens.Program,
+    null,
+    null,
+    Tokens.Int,
+    null,
+    Tokens.HexType,
+    Tokens.Else,
+    null,
+    null,
+    Tokens.Select,
+    null,
+    null,
+    Tokens.Unless,
+    null,
+    null,
+    Tokens.BOOLean,
+    null,
+    Tokens.Return,
+    Tokens.StringType,
+    Tokens.Function,
+    Tokens.If,
+    Tokens.While,
+    null,
+    null,
+    null,
+    null,
+    null,
+    Tokens.Then,
+    null,
+    null
+  };
+
+  private Keywords() {
+  }
+
+  /**
+   * @return the kind of the reserved word in buffer[start..end); null when
+   *         the slice is not a reserved word
+   */
+  public static Tokens lookup(char[] buffer, int start, int end) {
+    int length = end - start;
+    int h = ((buffer[start] * 31 + buffer[length > 1 ? start + 1 : start]) * 31
+        + buffer[end - 1]) * SEED + length;
+    int slot = (h ^ (h >>> 7)) & MASK;
+    String word = words[slot];
+
+    if (word == null || word.length() != length) {
+      return null;
+    }
+    for (int i = 0; i < length; i++) {
+      if (word.charAt(i) != buffer[start + i]) {
+        return null;
+      }
+    }
+    return kinds[slot];
+  }
+}
@@ -0,0 +1,159 @@
+package lexer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A LexemeArena keeps the text of interned lexemes outside the Java heap:
+ * lexemes are copied one after the other, one byte per char, into large
+ * native slabs, and the Symbol for a lexeme only records where its bytes
+ * are (see ArenaSymbol). A String is made from the bytes each time one is
+ * asked for, e.g. for printing.
+ *
+ * Only Latin-1 lexemes (every char below 256) can be stored; an Interner
+ * keeps the rare other lexeme on the heap. An arena is closed together
+ * with its CompilationContext, after which the text of its symbols can no
+ * longer be read.
+ *
+ * Where the JVM has the jdk.incubator.foreign module the slabs are memory
+ * segments of one ResourceScope, and close() frees them right away (see
+ * SlabAllocator). Otherwise they are direct ByteBuffers: the arena only
+ * holds on to the slab it is filling, and a slab's memory goes back to the
+ * system once the last Symbol in it has been collected. freesOnClose()
+ * tells which.
+ */
+public class LexemeArena implements AutoCloseable {
+
+  public static final int SLAB_SIZE = 1 << 20;
+
+  private final int slabSize;
+  private final SlabAllocator allocator = SlabAllocator.create();
+  // the slab being filled; null before the first lexeme
+  private ByteBuffer slab;
+  private int slabCount;
+  private long bytes, used;
+  private volatile boolean closed;
+
+  public LexemeArena() {
+    this(SLAB_SIZE);
+  }
+
+  public LexemeArena(int slabSize) {
+    this.slabSize = slabSize;
+  }
+
+  /**
+   * @return true if the lexeme buffer[start..end) can be kept in an arena
+   */
+  static boolean fits(char[] buffer, int start, int end) {
+    for (int k = start; k < end; k++) {
+      if (buffer[k] > 0xFF) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  static boolean fits(String lexeme) {
+    for (int k = 0; k < lexeme.length(); k++) {
+      if (lexeme.charAt(k) > 0xFF) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Copy buffer[start..end), which must fit, into the arena
+   */
+  synchronized Symbol store(char[] buffer, int start, int end, Tokens kind, int hash, int id) {
+    int offset = reserve(end - start);
+
+    for (int k = start; k < end; k++) {
+      slab.put(offset + k - start, (byte) buffer[k]);
+    }
+    return new ArenaSymbol(this, slab, offset, end - start, kind, hash, id);
+  }
+
+  synchronized Symbol store(String lexeme, Tokens kind, int hash, int id) {
+    int offset = reserve(lexeme.length());
+
+    for (int k = 0; k < lexeme.length(); k++) {
+      slab.put(offset + k, (byte) lexeme.charAt(k));
+    }
+    return new ArenaSymbol(this, slab, offset, lexeme.length(), kind, hash, id);
+  }
+
+  /**
+   * @return the offset in slab of length free bytes; a lexeme that does not
+   *         fit in the rest of the slab starts a new one
+   */
+  private int reserve(int length) {
+    check();
+    if (slab == null || slab.capacity() - slab.position() < length) {
+      slab = allocator.allocate(Math.max(slabSize, length));
+      slabCount++;
+      bytes += slab.capacity();
+    }
+
+    int offset = slab.position();
+    slab.position(offset + length);
+    used += length;
+    return offset;
+  }
+
+  /**
+   * @throws IllegalStateException once the arena is closed
+   */
+  void check() {
+    if (closed) {
+      throw new IllegalStateException("the lexeme arena is closed");
+    }
+  }
+
+  /**
+   * @return the number of slabs allocated so far
+   */
+  public synchronized int slabCount() {
+    return slabCount;
+  }
+
+  /**
+   * @return the off-heap bytes of the slabs allocated so far
+   */
+  public synchronized long bytes() {
+    return bytes;
+  }
+
+  /**
+   * @return the bytes of lexeme text stored so far
+   */
+  public synchronized long used() {
+    return used;
+  }
+
+  public boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * @return true if close() gives the memory of the slabs back to the
+   *         system; false if that waits for their symbols to be collected
+   */
+  public boolean freesOnClose() {
+    return allocator.freesOnClose();
+  }
+
+  /**
+   * Free the slabs (see freesOnClose()); the symbols of this arena can no
+   * longer be read
+   */
+  @Override
+  public synchronized void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    slab = null;
+    allocator.close();
+  }
+}
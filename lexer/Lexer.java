@@ -1,10 +1,8 @@
 package lexer;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-
+import compiler.CompilationContext;
 import lexer.readers.IReader;
-import lexer.readers.SourceReader;
+import lexer.readers.MappedSourceReader;
 
 /**
  * The Lexer class is responsible for scanning the source file
@@ -23,6 +21,8 @@ public class Lexer implements ILexer {
 
   // positions in line of current token
   private int startPosition, endPosition, lineNo;
+  // the symbols of the compilation that was current when we were made
+  private final Interner symbols = CompilationContext.current().symbols();
 
   /**
    * Lexer constructor
@@ -30,7 +30,7 @@ public class Lexer implements ILexer {
    * @param sourceFile is the name of the File to read the program source from
    */
   public Lexer(String sourceFile) throws Exception {
-    this(new SourceReader(sourceFile));
+    this(new MappedSourceReader(sourceFile));
   }
 
   public Lexer(IReader reader) throws Exception {
@@ -40,7 +40,7 @@ public class Lexer implements ILexer {
   }
 
   public Token newToken(String tokenString, int start, int end, Tokens type, int lineNo) {
-    return new Token(start, end, Symbol.symbol(tokenString, type), lineNo);
+    return new Token(start, end, symbols.symbol(tokenString, type), lineNo);
   }
 
   private void nextChar() {
@@ -86,12 +86,12 @@ public class Lexer implements ILexer {
           nextChar();
         }
         // Check if the hexadecimal has any digits
-        if (Character.toString(ch).matches("[0-9A-Fa-f]")) {
+        if (CharClass.isHexDigit(ch)) {
           // will use this variable to keep track of the length of the hexadecimal
           int hexCheck = 0;
           do {
             // check if the current character is a valid hexadecimal digit
-            if (!Character.toString(ch).matches("[0-9A-Fa-f]")) {
+            if (!CharClass.isHexDigit(ch)) {
               return error(Character.toString(ch));
             }
             number += ch;
@@ -139,7 +139,7 @@ public class Lexer implements ILexer {
   }
 
   private Token singleCharacterOperatorOrSeparator(String character) {
-    Symbol symbol = Symbol.symbol(character, Tokens.BogusToken);
+    Symbol symbol = symbols.symbol(character, Tokens.BogusToken);
 
     // If symbol is still null, we did not find an operator in the symbol table,
     // and did not encounter the end of file, so this is an error
@@ -168,7 +168,7 @@ public class Lexer implements ILexer {
     nextChar();
 
     String doubleCharacter = singleCharacter + ch;
-    Symbol symbol = Symbol.symbol(doubleCharacter, Tokens.BogusToken);
+    Symbol symbol = symbols.symbol(doubleCharacter, Tokens.BogusToken);
 
     if (symbol == null) {
       // A two character operator was not found in the symbol table,
@@ -198,6 +198,7 @@ public class Lexer implements ILexer {
 
     startPosition = source.getColumn();
     endPosition = startPosition;
+    lineNo = source.getLineNumber();
 
     if (Character.isJavaIdentifierStart(ch)) {
       return reservedWordOrIdentifier();
@@ -229,14 +230,9 @@ public class Lexer implements ILexer {
           lineNo);
     }
 
-    if (Symbol.symbol(Character.toString(ch), Tokens.BogusToken) != null) {
-      return operatorOrSeparator();
-    }
-
-    if (ch != '@' && !eofReached()) {
-      return error(Character.toString(ch));
-    }
-
+    // anything else must be an operator or separator; operatorOrSeparator
+    // reports the illegal ones (probing the single character first would
+    // reject "!=" since "!" on its own is not a token)
     return operatorOrSeparator();
   }
 
@@ -262,7 +258,8 @@ public String toString() {
     String fileName = args[0] ;
     
     try {
-      Lexer lex = new Lexer(fileName);
+      MappedSourceReader reader = new MappedSourceReader(fileName);
+      Lexer lex = new Lexer(reader);
       Token token = lex.nextToken();
 
       while (token.getKind() != Tokens.EOF) {
@@ -281,15 +278,8 @@ public String toString() {
         System.out.println(" ");
       }
 
-      BufferedReader reader = new BufferedReader(new FileReader(fileName));
-      int lineNo = 1;
-      String line;
-
-      while ((line = reader.readLine()) != null) {
-        System.out.println(String.format("%5d: %s", lineNo, line));
-        lineNo++;
-      }
-      reader.close();
+      // the listing comes from the buffer already in memory
+      System.out.print(reader.lines().listing("%5d: %s"));
     } catch (Exception e) {
       e.printStackTrace();
     }
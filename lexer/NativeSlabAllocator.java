@@ -0,0 +1,41 @@
+package lexer;
+
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+
+import jdk.incubator.foreign.MemorySegment;
+import jdk.incubator.foreign.ResourceScope;
+
+/**
+ * A SlabAllocator whose slabs are native segments of one shared
+ * ResourceScope (the incubating foreign memory API): close() frees them
+ * all at once, and a slab read after that throws IllegalStateException
+ * rather than reading freed memory. An allocator that is never closed is
+ * freed by a Cleaner once its scope, i.e. every slab, is unreachable.
+ *
+ * Only use it through SlabAllocator.create(): loading this class needs
+ * the jdk.incubator.foreign module (--add-modules jdk.incubator.foreign
+ * both to compile and to run).
+ */
+class NativeSlabAllocator extends SlabAllocator {
+
+  private static final Cleaner cleaner = Cleaner.create();
+
+  // shared, since the symbols of an arena are read by any thread
+  private final ResourceScope scope = ResourceScope.newSharedScope(cleaner);
+
+  @Override
+  ByteBuffer allocate(int size) {
+    return MemorySegment.allocateNative(size, scope).asByteBuffer();
+  }
+
+  @Override
+  boolean freesOnClose() {
+    return true;
+  }
+
+  @Override
+  void close() {
+    scope.close();
+  }
+}
@@ -0,0 +1,201 @@
+package lexer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import compiler.CompilationContext;
+import lexer.readers.LineIndex;
+import lexer.readers.MappedSourceReader;
+
+/**
+ * The ParallelLexer splits a source held in memory into chunks at line
+ * boundaries, lexes the chunks at the same time on a ForkJoinPool and
+ * stitches the runs of tokens back into one TokenBuffer; the result is
+ * token for token what the sequential lexers produce.
+ *
+ * A token never spans a newline except a @...@ string literal (a //
+ * comment ends at its newline), so a chunk may start at any line start
+ * that is not inside a string literal. Before lexing, a quick pass over
+ * the characters (tracking only "in a string" and "in a comment") moves
+ * every chunk boundary that falls inside a string literal to the first
+ * line start after the literal closes.
+ *
+ * A chunk keeps the tokens that start inside it; the last chunk also
+ * produces EOF. An illegal character ends lexing, so the chunks after the
+ * first one that ends in an error token are dropped.
+ */
+public class ParallelLexer {
+
+  // chunks smaller than this are not worth a task of their own
+  private static final int MIN_CHUNK = 16 * 1024;
+
+  private final char[] buffer;
+  private final int length;
+  private final ForkJoinPool pool;
+  // the tasks intern into the symbols of the compilation that made us
+  private final Interner symbols = CompilationContext.current().symbols();
+
+  public ParallelLexer(MappedSourceReader reader) {
+    this(reader.buffer(), reader.length(), ForkJoinPool.commonPool());
+  }
+
+  public ParallelLexer(char[] buffer, int length, ForkJoinPool pool) {
+    // makes sure the reserved words are loaded before the tasks start
+    TokenType.init();
+    this.buffer = buffer;
+    this.length = length;
+    this.pool = pool;
+  }
+
+  /**
+   * Lex the whole source, splitting it into one chunk per worker thread
+   */
+  public TokenBuffer lex() {
+    return lex(Math.max(1, Math.min(pool.getParallelism(), length / MIN_CHUNK)));
+  }
+
+  /**
+   * Lex the whole source, splitting it into (at most) the given number of
+   * chunks
+   */
+  public TokenBuffer lex(int chunks) {
+    int[] boundaries = boundaries(chunks);
+    LineIndex lines = new LineIndex(buffer, length);
+    List<ChunkTask> tasks = new ArrayList<>();
+
+    for (int k = 0; k + 1 < boundaries.length; k++) {
+      tasks.add(new ChunkTask(lines, boundaries[k], boundaries[k + 1], k + 2 == boundaries.length));
+    }
+    for (ChunkTask task : tasks) {
+      pool.execute(task);
+    }
+
+    TokenBuffer tokens = new TokenBuffer(symbols, lines, length / 4);
+
+    for (ChunkTask task : tasks) {
+      TokenBuffer chunk = task.join();
+
+      tokens.addAll(chunk, 0, chunk.size(), 0);
+
+      if (chunk.size() > 0 && chunk.kind(chunk.size() - 1) == Tokens.EOF) {
+        // an error token (or the real EOF) ends the stream
+        break;
+      }
+    }
+    return tokens;
+  }
+
+  /**
+   * @return the chunk boundaries: 0, the line starts chosen to split at and
+   *         the end of the source
+   */
+  int[] boundaries(int chunks) {
+    int end = sourceEnd();
+    List<Integer> boundaries = new ArrayList<>();
+    boundaries.add(0);
+
+    boolean inString = false, inComment = false;
+    int i = 0;
+
+    for (int k = 1; k < chunks; k++) {
+      int target = lineStartAfter((int) ((long) end * k / chunks));
+
+      // run the string/comment tracking up to the target; if the target
+      // is inside a string literal, go on to the first line start after it
+      while (i < end && (i < target || inString)) {
+        char ch = buffer[i++];
+
+        if (inString) {
+          inString = ch != '@';
+        } else if (inComment) {
+          inComment = ch != '\n';
+        } else if (ch == '@') {
+          inString = true;
+        } else if (ch == '/' && i < end && buffer[i] == '/') {
+          inComment = true;
+          i++;
+        }
+        if (!inString && i > target) {
+          target = lineStartAfter(i);
+        }
+      }
+
+      if (i >= end || target >= end) {
+        break;
+      }
+      if (target > boundaries.get(boundaries.size() - 1)) {
+        boundaries.add(target);
+      }
+    }
+    boundaries.add(end);
+
+    return boundaries.stream().mapToInt(Integer::intValue).toArray();
+  }
+
+  /**
+   * @return the length of the source up to the first '\0', which the lexers
+   *         take as end of file
+   */
+  private int sourceEnd() {
+    for (int i = 0; i < length; i++) {
+      if (buffer[i] == '\0') {
+        return i;
+      }
+    }
+    return length;
+  }
+
+  /**
+   * @return the first line start at or after i
+   */
+  private int lineStartAfter(int i) {
+    if (i == 0 || buffer[i - 1] == '\n') {
+      return i;
+    }
+    while (i < length && buffer[i] != '\n') {
+      i++;
+    }
+    return Math.min(i + 1, length);
+  }
+
+  /**
+   * Lexes the tokens that start in buffer[from..to)
+   */
+  private class ChunkTask extends RecursiveTask<TokenBuffer> {
+
+    private static final long serialVersionUID = 1L;
+    private final LineIndex lines;
+    private final int from, to;
+    private final boolean last;
+
+    ChunkTask(LineIndex lines, int from, int to, boolean last) {
+      this.lines = lines;
+      this.from = from;
+      this.to = to;
+      this.last = last;
+    }
+
+    @Override
+    protected TokenBuffer compute() {
+      SliceLexer lexer = new SliceLexer(buffer, length, CharScanner.create(), symbols);
+      TokenBuffer tokens = new TokenBuffer(symbols, lines, (to - from) / 4);
+
+      lexer.restart(from, lines.lineOf(from));
+
+      while (true) {
+        lexer.scan();
+
+        if (!last && lexer.tokenStart >= to) {
+          return tokens;
+        }
+        tokens.add(lexer);
+
+        if (lexer.tokenSymbol.getKind() == Tokens.EOF) {
+          return tokens;
+        }
+      }
+    }
+  }
+}
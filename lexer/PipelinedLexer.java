@@ -0,0 +1,192 @@
+package lexer;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import compiler.CompilationContext;
+
+/**
+ * The PipelinedLexer runs a lexer on a thread of its own and hands its
+ * tokens to the consumer (normally the Parser) through a bounded
+ * single-producer/single-consumer ring, so reading and lexing the source
+ * overlap with building the tree.
+ *
+ * The ring needs no locks: only the producer moves tail and only the
+ * consumer moves head; a slot is written before tail is published past it
+ * and read before head is published past it. A side that finds the ring
+ * full (or empty) spins briefly and then parks for short periods.
+ *
+ * The stream ends with the lexer's EOF token; an illegal character still
+ * ends it with the lexer's error token (see hadError()). If the lexer
+ * throws, the exception is handed over with the end of the stream and
+ * nextToken() rethrows it in the consumer's thread. The lexer thread works
+ * in the CompilationContext that was current when the pipeline was made.
+ *
+ * A consumer that stops before EOF (e.g. on a syntax error) must close()
+ * the pipeline; the lexer thread then stops at its next token. A Parser
+ * closes its lexer at the end of execute().
+ */
+public class PipelinedLexer implements ILexer, AutoCloseable {
+
+  private static final int SPINS = 100;
+  private static final long PARK_NANOS = 20_000;
+
+  private final Token[] ring;
+  private final int mask;
+  // next slot the consumer reads / the producer writes; both only grow
+  private final AtomicLong head = new AtomicLong(), tail = new AtomicLong();
+
+  private final Thread producer;
+  private final CompilationContext context = CompilationContext.current();
+  // set by the producer before it publishes the end of the stream
+  private volatile Throwable failure;
+  private volatile boolean closed;
+
+  // the last token handed out once the stream has ended
+  private Token last;
+
+  /**
+   * @param sourceFile is the name of the File to read the program source from
+   */
+  public PipelinedLexer(String sourceFile) {
+    this(() -> new DfaLexer(sourceFile), 1024);
+  }
+
+  public PipelinedLexer(ILexer source) {
+    this(() -> source, 1024);
+  }
+
+  /**
+   * @param source   makes the lexer; it is called on the producer thread so
+   *                 reading the source is overlapped as well
+   * @param capacity the number of tokens the ring holds, rounded up to a
+   *                 power of 2
+   */
+  public PipelinedLexer(Callable<? extends ILexer> source, int capacity) {
+    TokenType.init();
+    int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+
+    ring = new Token[size];
+    mask = size - 1;
+    producer = new Thread(() -> produce(source), "lexer");
+    producer.setDaemon(true);
+    producer.start();
+  }
+
+  @SuppressWarnings("try")
+  private void produce(Callable<? extends ILexer> source) {
+    try (CompilationContext.Current c = context.makeCurrent()) {
+      ILexer lexer = source.call();
+      Token token;
+
+      do {
+        token = lexer.nextToken();
+
+        if (!put(token)) {
+          return;
+        }
+      } while (token.getKind() != Tokens.EOF);
+    } catch (Throwable e) {
+      failure = e;
+      // the consumer waits for a token; give it an end of stream
+      put(new Token(-1, -1, context.symbols().symbol(null, Tokens.EOF)));
+    }
+  }
+
+  /**
+   * @return false if the consumer closed the pipeline
+   */
+  private boolean put(Token token) {
+    long t = tail.get();
+    int spins = 0;
+
+    if (closed) {
+      return false;
+    }
+    while (t - head.get() == ring.length) {
+      if (closed) {
+        return false;
+      }
+      spins = pause(spins);
+    }
+    ring[(int) t & mask] = token;
+    tail.lazySet(t + 1);
+    return true;
+  }
+
+  private static int pause(int spins) {
+    if (spins < SPINS) {
+      Thread.onSpinWait();
+      return spins + 1;
+    }
+    LockSupport.parkNanos(PARK_NANOS);
+    return spins;
+  }
+
+  /**
+   * @return the next Token from the lexer thread; after EOF the EOF token is
+   *         returned again, or, if the lexer failed, the failure is thrown
+   *         again
+   */
+  public Token nextToken() {
+    if (last != null) {
+      return ended();
+    }
+
+    long h = head.get();
+    int spins = 0;
+
+    while (h == tail.get()) {
+      spins = pause(spins);
+    }
+
+    int slot = (int) h & mask;
+    Token token = ring[slot];
+    ring[slot] = null;
+    head.lazySet(h + 1);
+
+    if (token.getKind() == Tokens.EOF) {
+      last = token;
+      return ended();
+    }
+    return token;
+  }
+
+  /**
+   * @return the token that ended the stream, unless the lexer failed
+   */
+  private Token ended() {
+    if (failure != null) {
+      throw new RuntimeException("lexer failed: " + failure, failure);
+    }
+    return last;
+  }
+
+  /**
+   * @return true if the stream was ended by an illegal character rather
+   *         than the end of the source
+   */
+  public boolean hadError() {
+    return last != null && last.getLexeme() == null && failure == null;
+  }
+
+  public Token anonymousIdentifierToken(String identifier) {
+    return new Token(-1, -1, context.symbols().symbol(identifier, Tokens.Identifier));
+  }
+
+  /**
+   * @return true while the lexer thread has not finished
+   */
+  public boolean isRunning() {
+    return producer.isAlive();
+  }
+
+  /**
+   * Stop the lexer thread, e.g. when parsing gave up before EOF
+   */
+  public void close() {
+    closed = true;
+    LockSupport.unpark(producer);
+  }
+}
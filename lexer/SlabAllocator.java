@@ -0,0 +1,69 @@
+package lexer;
+
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+
+/**
+ * A SlabAllocator hands out the slabs of a LexemeArena. This one makes
+ * direct ByteBuffers, whose memory the JDK only gives back once a buffer
+ * has been collected; close() cannot free them.
+ *
+ * create() returns a NativeSlabAllocator instead when this JVM has the
+ * jdk.incubator.foreign module: its slabs are native memory segments of
+ * one shared ResourceScope, and close() frees them all at once.
+ */
+class SlabAllocator {
+
+  // how to make a NativeSlabAllocator; null if this JVM can't run one (the
+  // module isn't in the boot layer, e.g. no --add-modules, or the class
+  // wasn't compiled)
+  private static final Constructor<?> nativeAllocator = findNativeAllocator();
+
+  /**
+   * @return a native allocator if this JVM has the foreign memory module,
+   *         otherwise one that makes direct buffers
+   */
+  static SlabAllocator create() {
+    try {
+      return nativeAllocator == null ? new SlabAllocator() : (SlabAllocator) nativeAllocator.newInstance();
+    } catch (ReflectiveOperationException e) {
+      return new SlabAllocator();
+    }
+  }
+
+  private static Constructor<?> findNativeAllocator() {
+    if (ModuleLayer.boot().findModule("jdk.incubator.foreign").isEmpty()) {
+      return null;
+    }
+    try {
+      Constructor<?> constructor = Class.forName("lexer.NativeSlabAllocator").getDeclaredConstructor();
+      // make sure the foreign memory API really links before we rely on it
+      SlabAllocator allocator = (SlabAllocator) constructor.newInstance();
+      allocator.allocate(16);
+      allocator.close();
+      return constructor;
+    } catch (ReflectiveOperationException | LinkageError e) {
+      return null;
+    }
+  }
+
+  /**
+   * @return a new slab of size bytes, its position at 0
+   */
+  ByteBuffer allocate(int size) {
+    return ByteBuffer.allocateDirect(size);
+  }
+
+  /**
+   * @return true if close() gives the memory of the slabs back
+   */
+  boolean freesOnClose() {
+    return false;
+  }
+
+  /**
+   * Free the slabs, if this allocator can; they must not be read after
+   */
+  void close() {
+  }
+}
@@ -0,0 +1,344 @@
+package lexer;
+
+import compiler.CompilationContext;
+import lexer.readers.LineIndex;
+import lexer.readers.MappedSourceReader;
+
+/**
+ * The SliceLexer produces exactly the same tokens as Lexer, but works on the
+ * whole source held in memory (see MappedSourceReader) rather than pulling
+ * one character at a time through an IReader.
+ *
+ * A token is scanned by moving an index over the buffer; only its start and
+ * end offsets are recorded and the lexeme is interned straight from that
+ * slice, so a lexeme that is already in the symbol table costs no String at
+ * all. Character classes come from the ASCII tables in CharClass, and
+ * whitespace and comment text are skipped by a CharScanner (vectorized when
+ * the JVM allows).
+ *
+ * scan() leaves the token it found in the token* fields without creating a
+ * Token object; nextToken() wraps those fields in a Token for the ILexer
+ * interface, while TokenBuffer copies them straight into its arrays.
+ */
+public class SliceLexer implements ILexer {
+
+  protected final char[] buffer;
+  protected final int length;
+
+  // index of the next character to examine
+  protected int position;
+  // index of the first character on the current line and its line number
+  protected int lineStart, lineNo = 1;
+
+  // the token found by the last call to scan(): its Symbol, the offsets
+  // of its source text, the left/right positions reported in a Token and
+  // its line number
+  protected Symbol tokenSymbol;
+  protected int tokenStart, tokenEnd, tokenLeft, tokenRight, tokenLine;
+
+  private LineIndex lines;
+  private final CharScanner scanner;
+  // the symbols of the compilation this lexer works for
+  protected final Interner symbols;
+
+  /**
+   * @param sourceFile is the name of the File to read the program source from
+   */
+  public SliceLexer(String sourceFile) throws Exception {
+    this(new MappedSourceReader(sourceFile));
+  }
+
+  public SliceLexer(MappedSourceReader reader) {
+    this(reader.buffer(), reader.length());
+  }
+
+  public SliceLexer(char[] buffer, int length) {
+    this(buffer, length, CharScanner.create());
+  }
+
+  public SliceLexer(char[] buffer, int length, CharScanner scanner) {
+    this(buffer, length, scanner, CompilationContext.current().symbols());
+  }
+
+  public SliceLexer(char[] buffer, int length, CharScanner scanner, Interner symbols) {
+    // makes sure the reserved words are loaded; nothing is repopulated
+    TokenType.init();
+    this.buffer = buffer;
+    this.length = length;
+    this.scanner = scanner;
+    this.symbols = symbols;
+  }
+
+  /**
+   * @return the line index of the source, built on first use
+   */
+  public LineIndex lines() {
+    if (lines == null) {
+      lines = new LineIndex(buffer, length);
+    }
+    return lines;
+  }
+
+  /**
+   * Continue scanning from position, which must be the start of line lineNo
+   * and not inside a string literal
+   */
+  protected void restart(int position, int lineNo) {
+    this.position = position;
+    this.lineStart = position;
+    this.lineNo = lineNo;
+  }
+
+  /**
+   * @return the character at index i; '\0' past the end of the source
+   */
+  protected char charAt(int i) {
+    return i < length ? buffer[i] : '\0';
+  }
+
+  /**
+   * Record the token just scanned and move past it
+   */
+  protected void found(Symbol symbol, int end, int left, int right) {
+    tokenSymbol = symbol;
+    tokenEnd = end;
+    tokenLeft = left;
+    tokenRight = right;
+    position = end;
+  }
+
+  /**
+   * skip whitespace, keeping the line bookkeeping up to date
+   */
+  private void scanPastWhitespace() {
+    position = scanner.skipWhitespace(buffer, position, length);
+
+    if (scanner.newlines() > 0) {
+      lineNo += scanner.newlines();
+      lineStart = scanner.lastNewline() + 1;
+    }
+  }
+
+  /**
+   * skip the rest of a // comment including its newline
+   */
+  protected void ignoreComment() {
+    position = scanner.lineEnd(buffer, position, length);
+
+    if (position < length && buffer[position] == '\n') {
+      position++;
+      lineNo++;
+      lineStart = position;
+    }
+  }
+
+  /**
+   * Prints out an error string and records the EOF token to halt lexing
+   */
+  protected void error(String errorString, int end, int left, int right) {
+    System.err.println(
+        String.format("******** illegal character: %s", errorString));
+
+    found(symbols.symbol(null, Tokens.EOF), end, left, right);
+  }
+
+  protected void reservedWordOrIdentifier(int start, int column) {
+    int end = start + 1;
+
+    while (CharClass.isIdentifierPart(charAt(end))) {
+      end++;
+    }
+    int right = column + end - start - 1;
+
+    // reserved words are recognized on the slice itself, before interning
+    Tokens keyword = Keywords.lookup(buffer, start, end);
+    if (keyword != null) {
+      found(TokenType.tokens.get(keyword), end, column, right);
+      return;
+    }
+
+    found(symbols.symbol(buffer, start, end, Tokens.Identifier), end, column, right);
+  }
+
+  private void integer(int start, int column) {
+    int first = start, end = start;
+
+    if (buffer[start] == '0') {
+      char ch = charAt(++end);
+
+      if (ch == 'x' || ch == 'X') {
+        ch = charAt(++end);
+
+        if (!CharClass.isHexDigit(ch)) {
+          error(Character.toString(ch), end, column, column + end - start);
+          return;
+        }
+        // at most 6 hex digits; a short literal is only legal at end of file
+        for (int digits = 0; digits < 6 && ch != '\0'; digits++) {
+          if (!CharClass.isHexDigit(ch)) {
+            error(Character.toString(ch), end, column, column + end - start);
+            return;
+          }
+          ch = charAt(++end);
+        }
+
+        found(symbols.symbol(buffer, start, end, Tokens.HexLit), end, column, column + end - start - 1);
+        return;
+      } else if (!CharClass.isDigit(ch)) {
+        // a lone '0' is reported one column to the left, just like Lexer
+        found(symbols.symbol(buffer, start, end, Tokens.INTeger), end, column - 1, column);
+        return;
+      }
+      // Lexer drops the leading 0 of a decimal literal from its lexeme
+      first++;
+    }
+
+    do {
+      end++;
+    } while (CharClass.isDigit(charAt(end)));
+
+    found(symbols.symbol(buffer, first, end, Tokens.INTeger), end, column, column + end - start - 1);
+  }
+
+  /**
+   * String literals run from '@' to the next '@'; the right position is
+   * computed the way Lexer computes it so the two stay identical
+   */
+  private void stringLiteral(int start, int column) {
+    int end = start + 1;
+    boolean carriageReturn = false;
+    char ch;
+
+    while ((ch = charAt(end)) != '@' && ch != '\0') {
+      if (ch == '\n') {
+        lineNo++;
+        lineStart = end + 1;
+      } else if (ch == '\r') {
+        carriageReturn = true;
+      }
+      end++;
+    }
+
+    if (ch == '\0') {
+      error("EOF", end, column, column + 1 + 2 * readCount(start + 1, end));
+      return;
+    }
+    end++;
+    int right = (column + 2 + 2 * readCount(start + 1, end - 1)) / 2 + 1;
+
+    if (carriageReturn) {
+      // slow path: drop the carriage returns the reader would have skipped
+      StringBuilder lexeme = new StringBuilder();
+      for (int i = start; i < end; i++) {
+        if (buffer[i] != '\r' || isKeptCarriageReturn(i)) {
+          lexeme.append(buffer[i]);
+        }
+      }
+      found(symbols.symbol(lexeme.toString(), Tokens.StringLit), end, column, right);
+      return;
+    }
+
+    found(symbols.symbol(buffer, start, end, Tokens.StringLit), end, column, right);
+  }
+
+  /**
+   * @return the number of chars an IReader hands out for buffer[from..to)
+   */
+  private int readCount(int from, int to) {
+    int count = 0;
+
+    for (int i = from; i < to; i++) {
+      if (buffer[i] != '\r' || isKeptCarriageReturn(i)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * the readers skip a '\r' unless it directly follows a skipped '\r'
+   */
+  private boolean isKeptCarriageReturn(int i) {
+    int run = 0;
+
+    while (i - run - 1 >= 0 && buffer[i - run - 1] == '\r') {
+      run++;
+    }
+    return run % 2 == 1;
+  }
+
+  /**
+   * @return false if a comment was skipped instead of finding a token
+   */
+  protected boolean operatorOrSeparator(int start, int column) {
+    if (start >= length || buffer[start] == '\0') {
+      found(symbols.symbol("\0", Tokens.EOF), start, column, column);
+      return true;
+    }
+
+    // We might have a two character operator, so we need to test for that first
+    Symbol symbol = start + 1 < length ? symbols.symbol(buffer, start, start + 2, Tokens.BogusToken) : null;
+
+    if (symbol == null) {
+      symbol = symbols.symbol(buffer, start, start + 1, Tokens.BogusToken);
+
+      if (symbol == null) {
+        error(Character.toString(buffer[start]), start + 1, column, column + 1);
+      } else {
+        found(symbol, start + 1, column, column);
+      }
+      return true;
+    } else if (symbol.getKind() == Tokens.Comment) {
+      position = start + 2;
+      ignoreComment();
+      return false;
+    }
+
+    found(symbol, start + 2, column, column + 1);
+    return true;
+  }
+
+  /**
+   * Scan the next token into the token* fields
+   */
+  public void scan() {
+    boolean foundToken;
+
+    do {
+      scanPastWhitespace();
+
+      int start = position;
+      int column = start - lineStart;
+      char ch = charAt(start);
+      tokenStart = start;
+      tokenLine = lineNo;
+      foundToken = true;
+
+      if (CharClass.isIdentifierStart(ch)) {
+        reservedWordOrIdentifier(start, column);
+      } else if (CharClass.isDigit(ch)) {
+        integer(start, column);
+      } else if (ch == '@') {
+        stringLiteral(start, column);
+      } else {
+        foundToken = operatorOrSeparator(start, column);
+      }
+    } while (!foundToken);
+  }
+
+  /**
+   * @return the next Token found in the source file
+   */
+  public Token nextToken() {
+    scan();
+
+    return new Token(tokenLeft, tokenRight, tokenSymbol, tokenLine);
+  }
+
+  /**
+   * Used by the constrainer to build intrinsic trees
+   */
+  public Token anonymousIdentifierToken(String identifier) {
+    return new Token(-1, -1, symbols.symbol(identifier, Tokens.Identifier), tokenLine);
+  }
+}
@@ -1,6 +1,6 @@
 package lexer;
 
-import java.util.HashMap;
+import compiler.CompilationContext;
 
 /**
  * The Symbol class is used to store all user strings along with
@@ -8,19 +8,25 @@ import java.util.HashMap;
  * store the "abc" in name and Sym.Tokens.Identifier in kind
  **/
 public class Symbol {
-  // symbols contains all strings in the source program
-  private static HashMap<String, Symbol> symbols = new HashMap<>();
-
-  private String lexeme;
+  private final String lexeme;
   // token kind of symbol
-  private Tokens kind;
+  private final Tokens kind;
+  private final int hash;
+  private final int id;
 
-  private Symbol(String lexeme, Tokens kind) {
+  /**
+   * Symbols are only made by an Interner (or its LexemeArena); use
+   * symbol() to get one
+   */
+  Symbol(String lexeme, Tokens kind, int hash, int id) {
     this.lexeme = lexeme;
     this.kind = kind;
+    this.hash = hash;
+    this.id = id;
   }
 //had to change this to not include "@" when printing back the stringLit
   public String toString() {
+    String lexeme = lexeme();
     if (kind == Tokens.StringLit){
       return lexeme.substring(1, lexeme.length() - 1 );
     }
@@ -31,30 +37,81 @@ public class Symbol {
     return kind;
   }
 
+  /**
+   * @return a small integer unique to this Symbol within its Interner; ids
+   *         are dense so they can index arrays
+   */
+  public int getId() {
+    return id;
+  }
+
+  /**
+   * @return the Symbol with the given id in the current compilation
+   */
+  public static Symbol byId(int id) {
+    return CompilationContext.current().symbols().byId(id);
+  }
+
+  int hash() {
+    return hash;
+  }
+
+  String lexeme() {
+    return lexeme;
+  }
+
+  int length() {
+    return lexeme.length();
+  }
+
   public boolean isStringLit(){
+    String lexeme = lexeme();
     return lexeme.startsWith("@") && lexeme.endsWith("@");
   }
 
   public boolean isHexLit(){
+    String lexeme = lexeme();
     String hexLit = lexeme.substring(2);
     return lexeme.startsWith("0x") && hexLit.matches("[0-9a-fA-F]{6}");
   }
   /**
-   * Return the unique symbol associated with a string.
+   * Return the unique symbol associated with a string in the current
+   * compilation (see CompilationContext).
    * Repeated calls to symbol("abc") will return the same Symbol.
    */
   public static Symbol symbol(String newTokenString, Tokens kind) {
-    Symbol s = symbols.get(newTokenString);
+    return CompilationContext.current().symbols().symbol(newTokenString, kind);
+  }
+
+  /**
+   * Same as symbol(String, Tokens) but the lexeme is given as the chars
+   * buffer[start..end)
+   */
+  public static Symbol symbol(char[] buffer, int start, int end, Tokens kind) {
+    return CompilationContext.current().symbols().symbol(buffer, start, end, kind);
+  }
 
-    if (s == null) {
-      if (kind == Tokens.BogusToken) {
-        // bogus string so don't enter into symbols
-        return null;
+  /**
+   * @return the Symbol shared by every compilation for the given token kind;
+   *         only TokenType makes these
+   */
+  static Symbol pinned(String lexeme, Tokens kind) {
+    return Interner.PINNED.symbol(lexeme, kind);
+  }
+
+  boolean matches(char[] buffer, int start, int end) {
+    if (lexeme.length() != end - start) {
+      return false;
+    }
+    for (int k = start; k < end; k++) {
+      if (lexeme.charAt(k - start) != buffer[k]) {
+        return false;
       }
-      s = new Symbol(newTokenString, kind);
-      symbols.put(newTokenString, s);
     }
+    return true;
+  }
 
-    return s;
+  boolean matches(String other) {
+    return other.equals(lexeme);
   }
 }
@@ -1,5 +1,7 @@
 package lexer;
 
+import lexer.readers.LineIndex;
+
 /**
  * The Token class records the information for a token:
  * 1. The Symbol that describes the characters in the token
@@ -10,7 +12,10 @@ public class Token {
   
   private int leftPosition, rightPosition, lineNo;
   private Symbol symbol;
-
+  // a Token made from an offset resolves its line through the LineIndex
+  // only when asked for it
+  private LineIndex lines;
+  private int offset = -1;
 
   /**
    * Create a new Token based on the given Symbol
@@ -32,6 +37,16 @@ public class Token {
     this.lineNo = -1;
   }
 
+  /**
+   * Create a Token that knows only the source offset it starts at; its line
+   * number is looked up in lines on demand
+   */
+  public Token(int leftPosition, int rightPosition, Symbol symbol, LineIndex lines, int offset) {
+    this(leftPosition, rightPosition, symbol, 0);
+    this.lines = lines;
+    this.offset = offset;
+  }
+
   public Symbol getSymbol() {
     return symbol;
   }
@@ -39,8 +54,8 @@ public class Token {
 
   public String toString() {
     String line = "";
-    if (lineNo > 0) {
-      line = String.format("line: %d", lineNo);
+    if (lines != null || lineNo > 0) {
+      line = String.format("line: %d", getLineNumber());
     }
     return symbol.toString() + "           left: " + leftPosition + "        right: " + rightPosition + "       " + 
                           line + "     " + symbol.getKind().toString();
@@ -66,8 +81,25 @@ public class Token {
     return symbol.getKind();
   }
 
+  /**
+   * @return the offset in the source buffer the token starts at, or -1 if
+   *         the token was made without one
+   */
+  public int getOffset() {
+    return offset;
+  }
+
+  /**
+   * @return the LineIndex of the source the token came from, if known
+   */
+  public LineIndex getLineIndex() {
+    return lines;
+  }
+
   public int getLineNumber() {
-    if (lineNo == 0) {
+    if (lines != null) {
+      return lines.lineOf(offset);
+    } else if (lineNo == 0) {
       return 1;
     } else {
       return lineNo;
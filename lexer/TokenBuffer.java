@@ -0,0 +1,315 @@
+package lexer;
+
+import java.util.Arrays;
+
+import lexer.readers.LineIndex;
+
+/**
+ * The TokenBuffer holds a whole token stream in parallel primitive arrays
+ * (struct-of-arrays) instead of one Token object per token; token i is
+ * described by its kind, the offsets of its source text, the id of its
+ * Symbol and the left/right positions a Token would report. Line numbers
+ * are not stored; they are resolved from the start offset through the
+ * LineIndex of the source when asked for.
+ *
+ * The last entry is always the EOF token. A Cursor walks the buffer: the
+ * Parser can read kinds and Symbols straight from it, and since it is
+ * also an ILexer, anything that wants Token objects still gets them (made
+ * on demand). Because the whole stream is available, lookahead is just
+ * an index.
+ */
+public class TokenBuffer {
+
+  private byte[] kinds;
+  private int[] starts, ends, symbols, lefts, rights;
+  private int size;
+  private final LineIndex lines;
+  // the interner the symbol ids refer to
+  private final Interner symbolTable;
+
+  private static final Tokens[] kindValues = Tokens.values();
+
+  public TokenBuffer(Interner symbolTable, LineIndex lines) {
+    this(symbolTable, lines, 1024);
+  }
+
+  public TokenBuffer(Interner symbolTable, LineIndex lines, int capacity) {
+    this.symbolTable = symbolTable;
+    this.lines = lines;
+    capacity = Math.max(capacity, 16);
+    kinds = new byte[capacity];
+    starts = new int[capacity];
+    ends = new int[capacity];
+    symbols = new int[capacity];
+    lefts = new int[capacity];
+    rights = new int[capacity];
+  }
+
+  /**
+   * Lex the whole source with the given lexer, up to and including EOF
+   */
+  public static TokenBuffer lex(SliceLexer lexer) {
+    // roughly one token per 4 chars of source is a good first guess
+    TokenBuffer tokens = new TokenBuffer(lexer.symbols, lexer.lines(), lexer.length / 4);
+
+    do {
+      lexer.scan();
+      tokens.add(lexer);
+    } while (lexer.tokenSymbol.getKind() != Tokens.EOF);
+
+    return tokens;
+  }
+
+  /**
+   * Append the token the lexer just scanned
+   */
+  void add(SliceLexer lexer) {
+    add(lexer.tokenSymbol, lexer.tokenStart, lexer.tokenEnd, lexer.tokenLeft,
+        lexer.tokenRight);
+  }
+
+  public void add(Symbol symbol, int start, int end, int left, int right) {
+    if (size == kinds.length) {
+      grow();
+    }
+    kinds[size] = (byte) symbol.getKind().ordinal();
+    starts[size] = start;
+    ends[size] = end;
+    symbols[size] = symbol.getId();
+    lefts[size] = left;
+    rights[size] = right;
+    size++;
+  }
+
+  /**
+   * Append tokens [from..to) of another buffer, moving their offsets by
+   * shift; the left/right positions are copied as they are
+   */
+  public void addAll(TokenBuffer other, int from, int to, int shift) {
+    int count = to - from;
+
+    while (size + count > kinds.length) {
+      grow();
+    }
+    System.arraycopy(other.kinds, from, kinds, size, count);
+    System.arraycopy(other.symbols, from, symbols, size, count);
+    System.arraycopy(other.lefts, from, lefts, size, count);
+    System.arraycopy(other.rights, from, rights, size, count);
+
+    for (int i = 0; i < count; i++) {
+      starts[size + i] = other.starts[from + i] + shift;
+      ends[size + i] = other.ends[from + i] + shift;
+    }
+    size += count;
+  }
+
+  /**
+   * @return the index of the first token starting at or after offset; size()
+   *         if there is none
+   */
+  public int indexAt(int offset) {
+    int low = 0, high = size;
+
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+
+      if (starts[mid] < offset) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @return the index of the '}' that closes the '{' at index open; -1 if
+   *         it is not closed
+   */
+  public int match(int open) {
+    int depth = 0;
+
+    for (int i = open; i < size; i++) {
+      byte kind = kinds[i];
+
+      if (kind == Tokens.LeftBrace.ordinal()) {
+        depth++;
+      } else if (kind == Tokens.RightBrace.ordinal() && --depth == 0) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private void grow() {
+    int capacity = kinds.length * 2;
+
+    kinds = Arrays.copyOf(kinds, capacity);
+    starts = Arrays.copyOf(starts, capacity);
+    ends = Arrays.copyOf(ends, capacity);
+    symbols = Arrays.copyOf(symbols, capacity);
+    lefts = Arrays.copyOf(lefts, capacity);
+    rights = Arrays.copyOf(rights, capacity);
+  }
+
+  /**
+   * @return the number of tokens, including the final EOF
+   */
+  public int size() {
+    return size;
+  }
+
+  public Tokens kind(int i) {
+    return kindValues[kinds[i]];
+  }
+
+  public int start(int i) {
+    return starts[i];
+  }
+
+  public int end(int i) {
+    return ends[i];
+  }
+
+  /**
+   * @return the line token i starts on
+   */
+  public int line(int i) {
+    return lines.lineOf(starts[i]);
+  }
+
+  public LineIndex lines() {
+    return lines;
+  }
+
+  public Interner symbolTable() {
+    return symbolTable;
+  }
+
+  public int symbolId(int i) {
+    return symbols[i];
+  }
+
+  public Symbol symbol(int i) {
+    return symbolTable.byId(symbols[i]);
+  }
+
+  public int left(int i) {
+    return lefts[i];
+  }
+
+  public int right(int i) {
+    return rights[i];
+  }
+
+  /**
+   * @return token i as a Token object
+   */
+  public Token token(int i) {
+    return new Token(lefts[i], rights[i], symbol(i), lines, starts[i]);
+  }
+
+  /**
+   * @return a cursor positioned before the first token
+   */
+  public Cursor cursor() {
+    return new Cursor(0, size);
+  }
+
+  /**
+   * @return a cursor over tokens [from..to); past the end it reports EOF
+   */
+  public Cursor cursor(int from, int to) {
+    return new Cursor(from, to);
+  }
+
+  /**
+   * A Cursor steps through the buffer; advance() moves to the next token
+   * and the accessors describe the current one. Once the range is used up
+   * the cursor stays on an EOF token.
+   */
+  public class Cursor implements ILexer {
+
+    private final int from, to;
+    private int index;
+
+    private Cursor(int from, int to) {
+      this.from = from;
+      this.to = to;
+      this.index = from - 1;
+    }
+
+    /**
+     * move to the next token
+     *
+     * @return false once the cursor is at EOF
+     */
+    public boolean advance() {
+      if (index < to) {
+        index++;
+      }
+      return kind() != Tokens.EOF;
+    }
+
+    /**
+     * make token index (within the cursor's range) the current token
+     */
+    public void seek(int index) {
+      this.index = index;
+    }
+
+    /**
+     * @return the buffer this cursor walks
+     */
+    public TokenBuffer buffer() {
+      return TokenBuffer.this;
+    }
+
+    /**
+     * @return the index in the buffer of the current token
+     */
+    public int index() {
+      return index;
+    }
+
+    public Tokens kind() {
+      return index < to ? TokenBuffer.this.kind(index) : Tokens.EOF;
+    }
+
+    /**
+     * @return the kind of the token k places after the current one
+     */
+    public Tokens peek(int k) {
+      int i = index + k;
+      return i < to ? TokenBuffer.this.kind(i) : Tokens.EOF;
+    }
+
+    public Symbol symbol() {
+      return index < to ? TokenBuffer.this.symbol(index) : symbolTable.symbol("\0", Tokens.EOF);
+    }
+
+    /**
+     * @return the current token as a Token object
+     */
+    public Token token() {
+      return index < to ? TokenBuffer.this.token(index) : new Token(-1, -1, symbol());
+    }
+
+    public int from() {
+      return from;
+    }
+
+    public int to() {
+      return to;
+    }
+
+    public Token nextToken() {
+      advance();
+      return token();
+    }
+
+    public Token anonymousIdentifierToken(String identifier) {
+      return new Token(-1, -1, symbolTable.symbol(identifier, Tokens.Identifier));
+    }
+  }
+}
@@ -1,58 +1,68 @@
 package lexer;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 
 /**
  * This file is automatically generated
  * it contains the table of mappings from token
- * constants to their Symbols
+ * constants to their Symbols; the table is built once,
+ * when the class is loaded, and cannot be modified
  */
 public class TokenType {
 
-  public static Map<Tokens,Symbol> tokens = new HashMap<>();
+  public static final Map<Tokens,Symbol> tokens;
 
-  public static void init() {
+  static {
+    Map<Tokens,Symbol> table = new EnumMap<>(Tokens.class);
+
+    table.put(Tokens.Program, Symbol.pinned("program",Tokens.Program));
+    table.put(Tokens.Int, Symbol.pinned("int",Tokens.Int));
+    table.put(Tokens.BOOLean, Symbol.pinned("boolean",Tokens.BOOLean));
+    table.put(Tokens.If, Symbol.pinned("if",Tokens.If));
+    table.put(Tokens.Then, Symbol.pinned("then",Tokens.Then));
+    table.put(Tokens.Else, Symbol.pinned("else",Tokens.Else));
+    table.put(Tokens.While, Symbol.pinned("while",Tokens.While));
+    table.put(Tokens.Function, Symbol.pinned("function",Tokens.Function));
+    table.put(Tokens.Return, Symbol.pinned("return",Tokens.Return));
+    table.put(Tokens.Identifier, Symbol.pinned("<id>",Tokens.Identifier));
+    table.put(Tokens.INTeger, Symbol.pinned("<int>",Tokens.INTeger));
+    table.put(Tokens.LeftBrace, Symbol.pinned("{",Tokens.LeftBrace));
+    table.put(Tokens.RightBrace, Symbol.pinned("}",Tokens.RightBrace));
+    table.put(Tokens.LeftParen, Symbol.pinned("(",Tokens.LeftParen));
+    table.put(Tokens.RightParen, Symbol.pinned(")",Tokens.RightParen));
+    table.put(Tokens.Comma, Symbol.pinned(",",Tokens.Comma));
+    table.put(Tokens.Assign, Symbol.pinned("=",Tokens.Assign));
+    table.put(Tokens.Equal, Symbol.pinned("==",Tokens.Equal));
+    table.put(Tokens.NotEqual, Symbol.pinned("!=",Tokens.NotEqual));
+    table.put(Tokens.Less, Symbol.pinned("<",Tokens.Less));
+    table.put(Tokens.LessEqual, Symbol.pinned("<=",Tokens.LessEqual));
+    table.put(Tokens.Plus, Symbol.pinned("+",Tokens.Plus));
+    table.put(Tokens.Minus, Symbol.pinned("-",Tokens.Minus));
+    table.put(Tokens.Or, Symbol.pinned("|",Tokens.Or));
+    table.put(Tokens.And, Symbol.pinned("&",Tokens.And));
+    table.put(Tokens.Multiply, Symbol.pinned("*",Tokens.Multiply));
+    table.put(Tokens.Divide, Symbol.pinned("/",Tokens.Divide));
+    table.put(Tokens.Comment, Symbol.pinned("//",Tokens.Comment));
+    table.put(Tokens.Greater, Symbol.pinned(">",Tokens.Greater));
+    table.put(Tokens.GreaterEqual, Symbol.pinned(">=",Tokens.GreaterEqual));
+    table.put(Tokens.LeftBracket, Symbol.pinned("[",Tokens.LeftBracket));
+    table.put(Tokens.RightBracket, Symbol.pinned("]",Tokens.RightBracket));
+    table.put(Tokens.Modulo, Symbol.pinned("%",Tokens.Modulo));
+    table.put(Tokens.Arrow, Symbol.pinned("->",Tokens.Arrow));
+    table.put(Tokens.Unless, Symbol.pinned("unless",Tokens.Unless));
+    table.put(Tokens.Select, Symbol.pinned("select",Tokens.Select));
+    table.put(Tokens.StringType, Symbol.pinned("string",Tokens.StringType));
+    table.put(Tokens.StringLit, Symbol.pinned("<string>",Tokens.StringLit));
+    table.put(Tokens.HexType, Symbol.pinned("hex",Tokens.HexType));
+    table.put(Tokens.HexLit, Symbol.pinned("<hex>",Tokens.HexLit));
 
-    tokens.put(Tokens.Program, Symbol.symbol("program",Tokens.Program));
-    tokens.put(Tokens.Int, Symbol.symbol("int",Tokens.Int));
-    tokens.put(Tokens.BOOLean, Symbol.symbol("boolean",Tokens.BOOLean));
-    tokens.put(Tokens.If, Symbol.symbol("if",Tokens.If));
-    tokens.put(Tokens.Then, Symbol.symbol("then",Tokens.Then));
-    tokens.put(Tokens.Else, Symbol.symbol("else",Tokens.Else));
-    tokens.put(Tokens.While, Symbol.symbol("while",Tokens.While));
-    tokens.put(Tokens.Function, Symbol.symbol("function",Tokens.Function));
-    tokens.put(Tokens.Return, Symbol.symbol("return",Tokens.Return));
-    tokens.put(Tokens.Identifier, Symbol.symbol("<id>",Tokens.Identifier));
-    tokens.put(Tokens.INTeger, Symbol.symbol("<int>",Tokens.INTeger));
-    tokens.put(Tokens.LeftBrace, Symbol.symbol("{",Tokens.LeftBrace));
-    tokens.put(Tokens.RightBrace, Symbol.symbol("}",Tokens.RightBrace));
-    tokens.put(Tokens.LeftParen, Symbol.symbol("(",Tokens.LeftParen));
-    tokens.put(Tokens.RightParen, Symbol.symbol(")",Tokens.RightParen));
-    tokens.put(Tokens.Comma, Symbol.symbol(",",Tokens.Comma));
-    tokens.put(Tokens.Assign, Symbol.symbol("=",Tokens.Assign));
-    tokens.put(Tokens.Equal, Symbol.symbol("==",Tokens.Equal));
-    tokens.put(Tokens.NotEqual, Symbol.symbol("!=",Tokens.NotEqual));
-    tokens.put(Tokens.Less, Symbol.symbol("<",Tokens.Less));
-    tokens.put(Tokens.LessEqual, Symbol.symbol("<=",Tokens.LessEqual));
-    tokens.put(Tokens.Plus, Symbol.symbol("+",Tokens.Plus));
-    tokens.put(Tokens.Minus, Symbol.symbol("-",Tokens.Minus));
-    tokens.put(Tokens.Or, Symbol.symbol("|",Tokens.Or));
-    tokens.put(Tokens.And, Symbol.symbol("&",Tokens.And));
-    tokens.put(Tokens.Multiply, Symbol.symbol("*",Tokens.Multiply));
-    tokens.put(Tokens.Divide, Symbol.symbol("/",Tokens.Divide));
-    tokens.put(Tokens.Comment, Symbol.symbol("//",Tokens.Comment));
-    tokens.put(Tokens.Greater, Symbol.symbol(">",Tokens.Greater));
-    tokens.put(Tokens.GreaterEqual, Symbol.symbol(">=",Tokens.GreaterEqual));
-    tokens.put(Tokens.LeftBracket, Symbol.symbol("[",Tokens.LeftBracket));
-    tokens.put(Tokens.RightBracket, Symbol.symbol("]",Tokens.RightBracket));
-    tokens.put(Tokens.Modulo, Symbol.symbol("%",Tokens.Modulo));
-    tokens.put(Tokens.Arrow, Symbol.symbol("->",Tokens.Arrow));
-    tokens.put(Tokens.Unless, Symbol.symbol("unless",Tokens.Unless));
-    tokens.put(Tokens.Select, Symbol.symbol("select",Tokens.Select));
-    tokens.put(Tokens.StringType, Symbol.symbol("string",Tokens.StringType));
-    tokens.put(Tokens.StringLit, Symbol.symbol("<string>",Tokens.StringLit));
-    tokens.put(Tokens.HexType, Symbol.symbol("hex",Tokens.HexType));
-    tokens.put(Tokens.HexLit, Symbol.symbol("<hex>",Tokens.HexLit));
+    tokens = Collections.unmodifiableMap(table);
+  }
+
+  /**
+   * the table is static data; init() only makes sure the class - and
+   * with it the Symbol of every reserved word - has been loaded
+   */
+  public static void init() {
   }
 }
@@ -0,0 +1,83 @@
+package lexer;
+
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A CharScanner that looks at a whole vector of chars per step with the
+ * (incubating) Vector API; the chars left over at the end of a run, and
+ * any run that reaches a non-ASCII char, are finished by the scalar code.
+ *
+ * Only use it through CharScanner.create()/vector(): loading this class
+ * needs the jdk.incubator.vector module (--add-modules jdk.incubator.vector
+ * both to compile and to run).
+ */
+class VectorCharScanner extends CharScanner {
+
+  private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+  private static final int LANES = SPECIES.length();
+  // most runs between tokens are a char or two; those are quicker to
+  // finish one char at a time than to set up a vector for
+  private static final int SHORT_RUN = 8;
+
+  @Override
+  public int skipWhitespace(char[] buffer, int from, int to) {
+    newlines = 0;
+    lastNewline = -1;
+    int i = from;
+    int shortEnd = Math.min(to, from + SHORT_RUN);
+    char ch;
+
+    for (; i < shortEnd; i++) {
+      if (!CharClass.isWhitespace(ch = buffer[i])) {
+        return i;
+      }
+      if (ch == '\n') {
+        newlines++;
+        lastNewline = i;
+      }
+    }
+
+    for (; i + LANES <= to; i += LANES) {
+      ShortVector v = ShortVector.fromCharArray(SPECIES, buffer, i);
+      VectorMask<Short> newline = v.eq((short) '\n');
+      // the ASCII whitespace: ' ', '\t'..'\r' and '\u001C'..'\u001F'
+      VectorMask<Short> whitespace = v.eq((short) ' ')
+          .or(v.compare(VectorOperators.GE, (short) '\t').and(v.compare(VectorOperators.LE, (short) '\r')))
+          .or(v.compare(VectorOperators.GE, (short) '\u001C').and(v.compare(VectorOperators.LE, (short) '\u001F')));
+
+      if (!whitespace.allTrue()) {
+        int end = whitespace.not().firstTrue();
+        countNewlines(newline.and(SPECIES.indexInRange(0, end)), i);
+        // the run may go on with non-ASCII whitespace
+        return skipWhitespaceFrom(buffer, i + end, to);
+      }
+      countNewlines(newline, i);
+    }
+    return skipWhitespaceFrom(buffer, i, to);
+  }
+
+  private void countNewlines(VectorMask<Short> newline, int base) {
+    if (newline.anyTrue()) {
+      newlines += newline.trueCount();
+      lastNewline = base + newline.lastTrue();
+    }
+  }
+
+  @Override
+  public int lineEnd(char[] buffer, int from, int to) {
+    int i = from;
+
+    for (; i + LANES <= to; i += LANES) {
+      ShortVector v = ShortVector.fromCharArray(SPECIES, buffer, i);
+      VectorMask<Short> end = v.eq((short) '\n').or(v.eq((short) 0));
+
+      if (end.anyTrue()) {
+        return i + end.firstTrue();
+      }
+    }
+    return super.lineEnd(buffer, i, to);
+  }
+}
@@ -0,0 +1,161 @@
+package lexer.readers;
+
+import java.util.Arrays;
+
+/**
+ * A LineIndex records the offset at which every line of an in-memory source
+ * starts; it is built in a single pass and then answers "which line/column
+ * is offset n on" with a binary search, so tokens and diagnostics only need
+ * to carry an offset. Line numbers count '\n' only, the same way the
+ * readers and lexers do.
+ */
+public class LineIndex {
+
+  private final char[] buffer;
+  private final int length;
+  // lineStarts[k] is the offset of the first character of line k + 1
+  private int[] lineStarts;
+  private int lineCount;
+
+  public LineIndex(char[] buffer, int length) {
+    this.buffer = buffer;
+    this.length = length;
+
+    lineStarts = new int[Math.max(16, length / 32)];
+    lineCount = 1;
+
+    for (int i = 0; i < length; i++) {
+      if (buffer[i] == '\n') {
+        if (lineCount == lineStarts.length) {
+          lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+        }
+        lineStarts[lineCount++] = i + 1;
+      }
+    }
+  }
+
+  private LineIndex(char[] buffer, int length, int[] lineStarts, int lineCount) {
+    this.buffer = buffer;
+    this.length = length;
+    this.lineStarts = lineStarts;
+    this.lineCount = lineCount;
+  }
+
+  /**
+   * Build the index of an edited copy of this source without scanning all of
+   * it again: line starts before the edit are kept, the inserted text is
+   * scanned and the line starts after the edit are shifted
+   *
+   * @param buffer   the edited source
+   * @param length   its length
+   * @param offset   where the edit starts
+   * @param removed  how many chars were removed at offset
+   * @param inserted how many chars were inserted in their place
+   */
+  public LineIndex edit(char[] buffer, int length, int offset, int removed, int inserted) {
+    int keep = lineOf(offset);
+    int resume = lineOf(offset + removed);
+    int delta = inserted - removed;
+    int[] starts = new int[Math.max(16, lineCount + inserted)];
+    int count = keep;
+
+    System.arraycopy(lineStarts, 0, starts, 0, keep);
+
+    for (int i = offset; i < offset + inserted; i++) {
+      if (buffer[i] == '\n') {
+        starts[count++] = i + 1;
+      }
+    }
+    for (int k = resume; k < lineCount; k++) {
+      starts[count++] = lineStarts[k] + delta;
+    }
+    return new LineIndex(buffer, length, starts, count);
+  }
+
+  /**
+   * @return the (1 based) line that offset is on; offsets at or past the
+   *         end of the source are on the last line
+   */
+  public int lineOf(int offset) {
+    int low = 0, high = lineCount - 1;
+
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+
+      if (lineStarts[mid] <= offset) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low + 1;
+  }
+
+  /**
+   * @return the (0 based) column of offset within its line
+   */
+  public int columnOf(int offset) {
+    return offset - lineStarts[lineOf(offset) - 1];
+  }
+
+  /**
+   * @return the number of lines; a source ending in '\n' has an empty
+   *         last line
+   */
+  public int lineCount() {
+    return lineCount;
+  }
+
+  public int lineStart(int line) {
+    return lineStarts[line - 1];
+  }
+
+  /**
+   * @return the offset just past the text of the line, not counting its
+   *         line terminator
+   */
+  public int lineEnd(int line) {
+    int end = line < lineCount ? lineStarts[line] - 1 : length;
+
+    if (end > lineStarts[line - 1] && buffer[end - 1] == '\r') {
+      end--;
+    }
+    return end;
+  }
+
+  /**
+   * @return the text of the given line without its line terminator
+   */
+  public String line(int line) {
+    int start = lineStart(line);
+    return new String(buffer, start, lineEnd(line) - start);
+  }
+
+  /**
+   * @return the line holding offset followed by a caret under the offset,
+   *         e.g. for diagnostics
+   */
+  public String snippet(int offset) {
+    int line = lineOf(offset);
+    String prefix = String.format("%5d: ", line);
+    StringBuilder sb = new StringBuilder(prefix).append(line(line)).append(System.lineSeparator());
+
+    for (int i = prefix.length() + columnOf(offset); i > 0; i--) {
+      sb.append(' ');
+    }
+    return sb.append('^').toString();
+  }
+
+  /**
+   * @return every line of the source formatted with the given format, which
+   *         gets the line number and its text (e.g. "%5d: %s")
+   */
+  public String listing(String format) {
+    StringBuilder sb = new StringBuilder();
+
+    for (int line = 1; line <= lineCount && lineStart(line) < length; line++) {
+      sb.append(String.format(format, line, line(line))).append(System.lineSeparator());
+    }
+    return sb.toString();
+  }
+}
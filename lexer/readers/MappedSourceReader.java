@@ -0,0 +1,207 @@
+package lexer.readers;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+* This class reads the whole source program into memory once and then
+* serves characters out of that buffer; the file is memory mapped and, as
+* long as it is plain ASCII, widened straight into a char array - the UTF-8
+* decoder is only used when a non-ASCII byte is found.
+*
+* Line and column tracking is done with index arithmetic rather than by
+* collecting the current line, and it mirrors SourceReader exactly: a '\r'
+* is skipped (but still takes up a column) and the line number advances on
+* the read that follows a '\n'
+*/
+public class MappedSourceReader implements IReader {
+
+  private char[] buffer;
+  private int length;
+  // index of the next character to hand out
+  private int position = 0;
+  // index of the first character on the current line
+  private int lineStart = 0;
+  // line number of source program
+  private int lineNumber = 1;
+  private boolean completedLine = false;
+  // built the first time someone needs to map offsets to lines
+  private LineIndex lines;
+
+  /**
+  * Construct a new MappedSourceReader
+  *
+  * @param sourceFile the String describing the user's source file
+  * @exception IOException is thrown if there is an I/O problem
+  */
+  public MappedSourceReader(String sourceFile) throws IOException {
+    this(Paths.get(sourceFile));
+  }
+
+  public MappedSourceReader(Path sourceFile) throws IOException {
+    this(load(sourceFile));
+  }
+
+  public MappedSourceReader(CharBuffer source) {
+    if (source.hasArray() && source.arrayOffset() == 0 && source.position() == 0) {
+      this.buffer = source.array();
+      this.length = source.limit();
+    } else {
+      this.buffer = new char[source.remaining()];
+      source.duplicate().get(buffer);
+      this.length = buffer.length;
+    }
+  }
+
+  /**
+  * @param source the program text itself rather than a file name
+  */
+  public static MappedSourceReader fromText(CharSequence source) {
+    return new MappedSourceReader(CharBuffer.wrap(source.toString().toCharArray()));
+  }
+
+  /**
+  * Map the file and turn its bytes into characters
+  */
+  static CharBuffer load(Path sourceFile) throws IOException {
+    try (FileChannel channel = FileChannel.open(sourceFile, StandardOpenOption.READ)) {
+      long size = channel.size();
+
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("source file too large: " + sourceFile);
+      }
+      MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      int count = (int) size;
+      char[] chars = new char[count];
+
+      // ASCII fast path: widen each byte, bail out to the decoder on the
+      // first byte with the high bit set
+      for (int i = 0; i < count; i++) {
+        byte b = bytes.get(i);
+
+        if (b < 0) {
+          return StandardCharsets.UTF_8.decode(bytes.position(0));
+        }
+        chars[i] = (char) b;
+      }
+
+      return CharBuffer.wrap(chars);
+    }
+  }
+
+  public void close() {
+    /* no-op - nothing is held open once the buffer is loaded */
+  }
+
+  private char advance() {
+    int i = position++;
+
+    return i < length ? buffer[i] : '\0';
+  }
+
+  /**
+  * read next char; track line #
+  *
+  * @return the character just read in; '\0' at end of file
+  */
+  public char read() {
+    if (completedLine) {
+      lineNumber++;
+      lineStart = position;
+      completedLine = false;
+    }
+
+    char character = advance();
+
+    if (character == '\r') {
+      character = advance();
+    }
+
+    if (character == '\n') {
+      completedLine = true;
+    }
+
+    return character;
+  }
+
+  public int getColumn() {
+    return position - 1 - lineStart;
+  }
+
+  public int getLineNumber() {
+    return lineNumber;
+  }
+
+  /**
+  * @return the backing array; only the first <i>length()</i> chars are source
+  */
+  public char[] buffer() {
+    return buffer;
+  }
+
+  public int length() {
+    return length;
+  }
+
+  /**
+  * @return the index in buffer() of the next character read() will return
+  */
+  public int position() {
+    return position;
+  }
+
+  /**
+  * @return the line index of the source, built on first use
+  */
+  public LineIndex lines() {
+    if (lines == null) {
+      lines = new LineIndex(buffer, length);
+    }
+    return lines;
+  }
+
+  /**
+  * Produce the same numbered listing as SourceReader.toString(), but out of
+  * the in-memory buffer instead of a second pass over the file
+  */
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    int i = 1;
+    int start = 0;
+
+    while (start < length) {
+      int end = start;
+
+      while (end < length && buffer[end] != '\n' && buffer[end] != '\r') {
+        end++;
+      }
+      int next = end;
+
+      if (next < length && buffer[next] == '\r') {
+        next++;
+      }
+      if (next < length && buffer[next] == '\n') {
+        next++;
+      }
+
+      if (end == start) {
+        sb.append(String.format("%3d:%n", i++));
+      } else {
+        sb.append(String.format("%3d: ", i++)).append(buffer, start, end - start);
+
+        if (next < length) {
+          sb.append(System.lineSeparator());
+        }
+      }
+      start = next;
+    }
+
+    return sb.toString();
+  }
+}
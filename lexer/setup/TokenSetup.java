@@ -5,8 +5,9 @@ import java.io.*;
 
 /**
  * TokenSetup class is used to read the tokens from file <i>tokens</i>
- * and automatically build the 2 classes/files <i>TokenType.java</i>
- * and <i>Sym.java</i><br>
+ * and automatically build the 4 classes/files <i>TokenType.java</i>,
+ * <i>Tokens.java</i>, <i>TokenTable.java</i> (the DFA used by DfaLexer)
+ * and <i>Keywords.java</i> (a perfect hash of the reserved words)<br>
  * Therefore, if there is any change to the tokens then we only need to
  * modify the file <i>tokens</i> and run this program again before using the
  * compiler
@@ -17,7 +18,9 @@ public class TokenSetup {
   private int tokenCount = 0;
   private BufferedReader in;
   // files used for new classes
-  private PrintWriter tokenType, tokens;
+  private PrintWriter tokenType, tokens, tokenTable, keywords;
+  // type/value pairs in the order they were read
+  private List<String[]> entries = new ArrayList<>();
 
   public static void main(String args[]) {
     new TokenSetup().initTokenClasses();
@@ -34,6 +37,10 @@ public class TokenSetup {
           "lexer" + sep + "TokenType.java"));
       tokens = new PrintWriter(new FileOutputStream(
           "lexer" + sep + "Tokens.java"));
+      tokenTable = new PrintWriter(new FileOutputStream(
+          "lexer" + sep + "TokenTable.java"));
+      keywords = new PrintWriter(new FileOutputStream(
+          "lexer" + sep + "Keywords.java"));
     } catch (Exception e) {
       System.out.println(e);
     }
@@ -66,7 +73,7 @@ public class TokenSetup {
   }
 
   /**
-   * initTokenClasses will create the 2 files
+   * initTokenClasses will create the 4 files
    */
   public void initTokenClasses() {
     tokenType.println("package lexer;");
@@ -76,14 +83,15 @@ public class TokenSetup {
     tokenType.println("/**");
     tokenType.println(" * This file is automatically generated");
     tokenType.println(" * it contains the table of mappings from token");
-    tokenType.println(" * constants to their Symbols");
+    tokenType.println(" * constants to their Symbols; the table is built once,");
+    tokenType.println(" * when the class is loaded, and cannot be modified");
     tokenType.println(" */");
     tokenType.println("public class TokenType {");
     tokenType.println("");
-    tokenType
-        .println("  public static Map<Tokens,Symbol> tokens = new HashMap<>();");
+    tokenType.println("  public static final Map<Tokens,Symbol> tokens;");
     tokenType.println("");
-    tokenType.println("  public static void init() {");
+    tokenType.println("  static {");
+    tokenType.println("    Map<Tokens,Symbol> table = new EnumMap<>(Tokens.class);");
 
     tokens.println("package lexer;");
     tokens.println("");
@@ -103,9 +111,10 @@ public class TokenSetup {
       }
 
       String symType = "Tokens." + type;
+      entries.add(new String[] { type, value });
 
       tokenType.println(
-          "    tokens.put(" + symType + ", Symbol.symbol(\"" +
+          "    table.put(" + symType + ", Symbol.pinned(\"" +
               value + "\"," + symType + "));");
 
       if (tokenCount % 5 == 0) {
@@ -115,6 +124,15 @@ public class TokenSetup {
       }
     }
 
+    tokenType.println("");
+    tokenType.println("    tokens = Collections.unmodifiableMap(table);");
+    tokenType.println("  }");
+    tokenType.println("");
+    tokenType.println("  /**");
+    tokenType.println("   * the table is static data; init() only makes sure the class - and");
+    tokenType.println("   * with it the Symbol of every reserved word - has been loaded");
+    tokenType.println("   */");
+    tokenType.println("  public static void init() {");
     tokenType.println("  }");
     tokenType.println("}");
     tokenType.close();
@@ -122,9 +140,284 @@ public class TokenSetup {
     tokens.println(", EOF\n}\n");
     tokens.close();
 
+    initTokenTable();
+    initKeywords();
+
     try {
       in.close();
     } catch (Exception e) {
       /* no-op */ }
   }
+
+  /**
+   * placeholders such as &lt;id&gt; or &lt;int&gt; name a token that has no
+   * fixed spelling, so they are left out of the DFA
+   */
+  private static boolean isFixedLexeme(String value) {
+    return !(value.length() > 2 && value.startsWith("<") && value.endsWith(">"));
+  }
+
+  private static boolean isIdentifierStart(char c) {
+    return Character.isJavaIdentifierStart(c);
+  }
+
+  private static boolean isIdentifierPart(char c) {
+    return c != '\0' && Character.isJavaIdentifierPart(c);
+  }
+
+  private static boolean isWord(String value) {
+    if (!isIdentifierStart(value.charAt(0))) {
+      return false;
+    }
+    for (int i = 1; i < value.length(); i++) {
+      if (!isIdentifierPart(value.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Build a DFA over character classes that recognizes every fixed lexeme
+   * (operators, separators and reserved words) plus identifiers, and write
+   * it out as TokenTable.java.<br>
+   * Every ASCII character that occurs in some lexeme gets its own class;
+   * the remaining identifier characters share two classes (those that may
+   * start an identifier and those that may only continue one); everything
+   * else is class 0. The DFA itself is a trie of the lexemes where every
+   * state reached by a reserved word prefix falls through to a single
+   * identifier state on any other identifier character.
+   */
+  private void initTokenTable() {
+    List<String[]> fixed = new ArrayList<>();
+    for (String[] entry : entries) {
+      if (isFixedLexeme(entry[1])) {
+        fixed.add(entry);
+      }
+    }
+
+    int[] charClass = new int[128];
+    int classes = 1;
+    for (String[] entry : fixed) {
+      for (char c : entry[1].toCharArray()) {
+        if (c < 128 && charClass[c] == 0) {
+          charClass[c] = classes++;
+        }
+      }
+    }
+    int identifierStartClass = classes++, identifierPartClass = classes++;
+    for (char c = 0; c < 128; c++) {
+      if (charClass[c] == 0 && isIdentifierStart(c)) {
+        charClass[c] = identifierStartClass;
+      } else if (charClass[c] == 0 && isIdentifierPart(c)) {
+        charClass[c] = identifierPartClass;
+      }
+    }
+    boolean[] identifierClass = new boolean[classes];
+    for (char c = 0; c < 128; c++) {
+      if (isIdentifierPart(c)) {
+        identifierClass[charClass[c]] = true;
+      }
+    }
+
+    // state 0 is the start state, state 1 the identifier state
+    List<int[]> transitions = new ArrayList<>();
+    List<String> accept = new ArrayList<>();
+    int[] start = new int[classes], identifier = new int[classes];
+    Arrays.fill(start, -1);
+    Arrays.fill(identifier, -1);
+    transitions.add(start);
+    accept.add(null);
+    transitions.add(identifier);
+    accept.add("Identifier");
+
+    // states on the path of a reserved word
+    Set<Integer> wordStates = new HashSet<>();
+
+    for (String[] entry : fixed) {
+      int state = 0;
+      for (char c : entry[1].toCharArray()) {
+        int[] row = transitions.get(state);
+        int cls = charClass[c];
+        if (row[cls] == -1) {
+          int[] next = new int[classes];
+          Arrays.fill(next, -1);
+          transitions.add(next);
+          accept.add(null);
+          row[cls] = transitions.size() - 1;
+        }
+        state = row[cls];
+        if (isWord(entry[1])) {
+          wordStates.add(state);
+        }
+      }
+      accept.set(state, entry[0]);
+    }
+
+    for (char c = 0; c < 128; c++) {
+      int cls = charClass[c];
+      if (isIdentifierPart(c)) {
+        identifier[cls] = 1;
+      }
+      if (isIdentifierStart(c) && start[cls] == -1) {
+        start[cls] = 1;
+      }
+    }
+    // reserved word prefixes continue as identifiers
+    for (int state : wordStates) {
+      int[] row = transitions.get(state);
+      for (int cls = 0; cls < classes; cls++) {
+        if (identifierClass[cls] && row[cls] == -1) {
+          row[cls] = 1;
+        }
+      }
+      if (accept.get(state) == null) {
+        accept.set(state, "Identifier");
+      }
+    }
+
+    tokenTable.println("package lexer;");
+    tokenTable.println("");
+    tokenTable.println("/**");
+    tokenTable.println(" * This file is automatically generated");
+    tokenTable.println(" * - it contains a DFA that recognizes every operator, separator and");
+    tokenTable.println(" * reserved word in tokens.txt along with identifiers; characters are");
+    tokenTable.println(" * first mapped to a class and the DFA moves on classes");
+    tokenTable.println(" */");
+    tokenTable.println("final class TokenTable {");
+    tokenTable.println("");
+    tokenTable.println("  static final int CLASSES = " + classes + ";");
+    tokenTable.println("");
+    tokenTable.println("  // class of each ASCII character; anything else is class 0");
+    tokenTable.println("  static final byte[] charClass = {");
+    printRows(charClass, 16);
+    tokenTable.println("  };");
+    tokenTable.println("");
+    tokenTable.println("  // next state is transitions[state * CLASSES + class]; -1 for none");
+    tokenTable.println("  static final short[] transitions = {");
+    int[] flat = new int[transitions.size() * classes];
+    for (int state = 0; state < transitions.size(); state++) {
+      System.arraycopy(transitions.get(state), 0, flat, state * classes, classes);
+    }
+    printRows(flat, classes);
+    tokenTable.println("  };");
+    tokenTable.println("");
+    tokenTable.println("  // token recognized when the DFA stops in a state; null if none");
+    tokenTable.println("  static final Tokens[] accept = {");
+    for (int state = 0; state < accept.size(); state++) {
+      String token = accept.get(state) == null ? "null" : "Tokens." + accept.get(state);
+      tokenTable.println("    " + token + (state < accept.size() - 1 ? "," : ""));
+    }
+    tokenTable.println("  };");
+    tokenTable.println("}");
+    tokenTable.close();
+  }
+
+  private void printRows(int[] values, int perRow) {
+    for (int i = 0; i < values.length; i += perRow) {
+      StringBuilder row = new StringBuilder("   ");
+      for (int j = i; j < Math.min(i + perRow, values.length); j++) {
+        row.append(" ").append(values[j]).append(j < values.length - 1 ? "," : "");
+      }
+      tokenTable.println(row);
+    }
+  }
+
+  /**
+   * must match the hash emitted into Keywords.java
+   */
+  private static int keywordHash(String word, int seed, int mask) {
+    int length = word.length();
+    int h = ((word.charAt(0) * 31 + word.charAt(length > 1 ? 1 : 0)) * 31
+        + word.charAt(length - 1)) * seed + length;
+    return (h ^ (h >>> 7)) & mask;
+  }
+
+  /**
+   * Find a seed for which keywordHash maps every reserved word to its own
+   * slot and write the resulting table out as Keywords.java
+   */
+  private void initKeywords() {
+    List<String[]> words = new ArrayList<>();
+    for (String[] entry : entries) {
+      if (isFixedLexeme(entry[1]) && isWord(entry[1])) {
+        words.add(entry);
+      }
+    }
+
+    int size = Integer.highestOneBit(Math.max(words.size(), 1) * 2 - 1) * 2;
+    int seed = 0;
+    String[][] slots = null;
+
+    while (slots == null) {
+      for (seed = 1; seed < 1 << 16 && slots == null; seed++) {
+        slots = new String[size][];
+        for (String[] word : words) {
+          int h = keywordHash(word[1], seed, size - 1);
+          if (slots[h] != null) {
+            slots = null;
+            break;
+          }
+          slots[h] = word;
+        }
+      }
+      if (slots == null) {
+        size *= 2;
+      } else {
+        seed--;
+      }
+    }
+
+    keywords.println("package lexer;");
+    keywords.println("");
+    keywords.println("/**");
+    keywords.println(" * This file is automatically generated");
+    keywords.println(" * - it contains a collision-free (perfect) hash of the reserved words");
+    keywords.println(" * so a lexer can recognize one straight from a slice of its buffer");
+    keywords.println(" */");
+    keywords.println("public final class Keywords {");
+    keywords.println("");
+    keywords.println("  private static final int SEED = " + seed + ", MASK = " + (size - 1) + ";");
+    keywords.println("");
+    keywords.println("  private static final String[] words = {");
+    for (int i = 0; i < size; i++) {
+      String word = slots[i] == null ? "null" : "\"" + slots[i][1] + "\"";
+      keywords.println("    " + word + (i < size - 1 ? "," : ""));
+    }
+    keywords.println("  };");
+    keywords.println("");
+    keywords.println("  private static final Tokens[] kinds = {");
+    for (int i = 0; i < size; i++) {
+      String kind = slots[i] == null ? "null" : "Tokens." + slots[i][0];
+      keywords.println("    " + kind + (i < size - 1 ? "," : ""));
+    }
+    keywords.println("  };");
+    keywords.println("");
+    keywords.println("  private Keywords() {");
+    keywords.println("  }");
+    keywords.println("");
+    keywords.println("  /**");
+    keywords.println("   * @return the kind of the reserved word in buffer[start..end); null when");
+    keywords.println("   *         the slice is not a reserved word");
+    keywords.println("   */");
+    keywords.println("  public static Tokens lookup(char[] buffer, int start, int end) {");
+    keywords.println("    int length = end - start;");
+    keywords.println("    int h = ((buffer[start] * 31 + buffer[length > 1 ? start + 1 : start]) * 31");
+    keywords.println("        + buffer[end - 1]) * SEED + length;");
+    keywords.println("    int slot = (h ^ (h >>> 7)) & MASK;");
+    keywords.println("    String word = words[slot];");
+    keywords.println("");
+    keywords.println("    if (word == null || word.length() != length) {");
+    keywords.println("      return null;");
+    keywords.println("    }");
+    keywords.println("    for (int i = 0; i < length; i++) {");
+    keywords.println("      if (word.charAt(i) != buffer[start + i]) {");
+    keywords.println("        return null;");
+    keywords.println("      }");
+    keywords.println("    }");
+    keywords.println("    return kinds[slot];");
+    keywords.println("  }");
+    keywords.println("}");
+    keywords.close();
+  }
 }
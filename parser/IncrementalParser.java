@@ -0,0 +1,191 @@
+package parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ast.AST;
+import compiler.CompilationContext;
+import lexer.IncrementalLexer;
+import lexer.TokenBuffer;
+
+/**
+ * The IncrementalParser keeps the tree of a program up to date as its
+ * source is edited, parsing again only the smallest block or function
+ * declaration that holds the edit.
+ *
+ * While parsing, the Parser records the token range of every block and
+ * function declaration (a region). After an edit the IncrementalLexer
+ * tells which tokens changed: those from changedFrom() up to oldResume()
+ * in the old stream. The smallest region that starts before them and ends
+ * after them still has its first and last token, so its tokens are parsed
+ * again with rBlock() or rDecl(); if that parses exactly the region, the
+ * new kids replace the kids of the region's old node. The old node, and
+ * every node outside the region, keeps its identity and its decoration;
+ * the new nodes are numbered after all the nodes made before.
+ *
+ * If no region holds the edit, or the region no longer parses as what it
+ * was, the whole program is parsed again, so a syntax error is reported
+ * just as execute() would report it. Besides the parse, an edit only
+ * moves the recorded token ranges. The IncrementalLexer's bulk copies of
+ * the source and the token stream come on top of that, so an edit costs
+ * time linear in the file size, with a small constant.
+ */
+public class IncrementalParser {
+
+  private final IncrementalLexer lexer;
+  private final CompilationContext context = CompilationContext.current();
+  private AST tree;
+  private List<Region> regions = new ArrayList<>();
+  // the number of tokens parsed by the last parse
+  private int reparsed;
+
+  public IncrementalParser(IncrementalLexer lexer) {
+    this.lexer = lexer;
+  }
+
+  /**
+   * @return the tree of the current source; null if it did not parse
+   */
+  public AST tree() {
+    return tree;
+  }
+
+  /**
+   * @return the number of tokens the last parse or edit parsed
+   */
+  public int reparsedCount() {
+    return reparsed;
+  }
+
+  /**
+   * Parse the whole program
+   *
+   * @return the AST for the source program
+   * @exception Exception - pass on any type of exception raised
+   */
+  @SuppressWarnings("try")
+  public AST execute() throws Exception {
+    TokenBuffer tokens = lexer.tokens();
+    List<Region> found = new ArrayList<>();
+
+    tree = null;
+    regions = found;
+    reparsed = tokens.size();
+
+    try (CompilationContext.Current c = context.makeCurrent()) {
+      Parser parser = new Parser(tokens);
+      parser.setRegions(found);
+      tree = parser.execute();
+    }
+    return tree;
+  }
+
+  /**
+   * Replace removed chars at offset with inserted and bring the tree up to
+   * date
+   *
+   * @return the tree of the edited program; the same tree as before unless
+   *         the whole program had to be parsed again
+   * @exception Exception - pass on any type of exception raised
+   */
+  public AST edit(int offset, int removed, CharSequence inserted) throws Exception {
+    lexer.edit(offset, removed, inserted);
+
+    Region region = tree == null ? null : enclosingRegion();
+    if (region == null || !reparse(region)) {
+      return execute();
+    }
+    return tree;
+  }
+
+  /**
+   * @return the smallest region whose first and last tokens the last edit
+   *         left alone; null if there is none
+   */
+  private Region enclosingRegion() {
+    Region smallest = null;
+
+    for (Region r : regions) {
+      if (r.first < lexer.changedFrom() && r.last >= lexer.oldResume()
+          && (smallest == null || r.last - r.first < smallest.last - smallest.first)) {
+        smallest = r;
+      }
+    }
+    return smallest;
+  }
+
+  /**
+   * Parse region again and graft its new kids onto its node
+   *
+   * @return false if it does not parse as it did before
+   */
+  @SuppressWarnings("try")
+  private boolean reparse(Region region) throws Exception {
+    int delta = lexer.newResume() - lexer.oldResume();
+    int last = region.last + delta;
+    List<Region> found = new ArrayList<>();
+    AST t;
+
+    try (CompilationContext.Current c = context.makeCurrent()) {
+      TokenBuffer.Cursor cursor = lexer.tokens().cursor(region.first, last + 1);
+      Parser parser = new Parser(cursor);
+      parser.setRegions(found);
+      t = region.function ? parser.rDecl() : parser.rBlock();
+
+      if (cursor.index() != last + 1 || t.getClass() != region.tree.getClass()) {
+        return false;
+      }
+    } catch (SyntaxError e) {
+      return false;
+    }
+
+    List<AST> kids = region.tree.getKids();
+    kids.clear();
+    kids.addAll(t.getKids());
+
+    // the regions inside the old one are replaced by those just found
+    List<Region> updated = new ArrayList<>();
+    for (Region r : regions) {
+      if (r == region) {
+        updated.add(r);
+      } else if (r.first >= region.first && r.last <= region.last) {
+        continue;
+      } else if (r.first >= lexer.oldResume()) {
+        r.first += delta;
+        r.last += delta;
+        updated.add(r);
+      } else if (r.last >= lexer.oldResume()) {
+        r.last += delta;
+        updated.add(r);
+      } else {
+        updated.add(r);
+      }
+    }
+    for (Region r : found) {
+      if (r.tree != t) {
+        updated.add(r);
+      }
+    }
+    region.last = last;
+    regions = updated;
+    reparsed = last - region.first + 1;
+    return true;
+  }
+
+  /**
+   * A block or function declaration and the indices of its first and last
+   * tokens
+   */
+  static final class Region {
+    private final AST tree;
+    private final boolean function;
+    private int first, last;
+
+    Region(AST tree, boolean function, int first, int last) {
+      this.tree = tree;
+      this.function = function;
+      this.first = first;
+      this.last = last;
+    }
+  }
+}
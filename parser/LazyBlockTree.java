@@ -0,0 +1,123 @@
+package parser;
+
+import java.util.List;
+
+import ast.AST;
+import ast.BlockTree;
+import compiler.CompilationContext;
+import lexer.TokenBuffer;
+
+/**
+ * A LazyBlockTree stands in for the body of a function that the Parser did
+ * not parse (see Parser.setLazyFunctionBodies): it only knows the range of
+ * tokens of the body. The first time its kids are asked for, the tokens
+ * are parsed and the declarations and statements become its kids.
+ *
+ * The body is parsed with the options of the Parser that made the block
+ * (iterative expressions, shared leaves), and its own function bodies are
+ * left lazy in turn. The block itself is numbered in order with the nodes
+ * around it; the nodes of the body are numbered when it is parsed, after
+ * all the nodes made before then. Bodies may be parsed on several threads
+ * at once: the context's counter is atomic, so their nodes all get
+ * different numbers, though the numbers of two bodies parsed together may
+ * interleave. A syntax error in the body is not printed; it is thrown as
+ * an IllegalStateException (holding the SyntaxError) from the call that
+ * made it parse, and the same exception again from every later call.
+ */
+public class LazyBlockTree extends BlockTree {
+
+  private final TokenBuffer tokens;
+  // the '{' and '}' of the body
+  private final int first, last;
+  private final CompilationContext context;
+  private final boolean iterativeExpressions, sharedLeaves;
+  // set once the body is parsed and all its kids are in
+  private volatile boolean parsed;
+  // set while the body's kids are being added; guarded by the lock
+  private boolean filling;
+  // what parsing the body threw, thrown again by every later access
+  private volatile RuntimeException failure;
+
+  LazyBlockTree(TokenBuffer tokens, int first, int last, CompilationContext context,
+      boolean iterativeExpressions, boolean sharedLeaves) {
+    this.tokens = tokens;
+    this.first = first;
+    this.last = last;
+    this.context = context;
+    this.iterativeExpressions = iterativeExpressions;
+    this.sharedLeaves = sharedLeaves;
+  }
+
+  /**
+   * @return true once the body has been parsed
+   */
+  public boolean isParsed() {
+    return parsed;
+  }
+
+  /**
+   * @return the number of tokens in the body, braces included
+   */
+  public int tokenCount() {
+    return last - first + 1;
+  }
+
+  @SuppressWarnings("try")
+  private void parse() {
+    if (parsed) {
+      return;
+    }
+
+    synchronized (this) {
+      // the parser adding the kids of the body reads them as it goes
+      if (parsed || filling) {
+        return;
+      }
+      if (failure != null) {
+        throw failure;
+      }
+      filling = true;
+
+      try (CompilationContext.Current c = context.makeCurrent()) {
+        Parser parser = new Parser(tokens.cursor(first + 1, last + 1));
+        parser.setLazyFunctionBodies(true);
+        parser.setIterativeExpressions(iterativeExpressions);
+        parser.setSharedLeaves(sharedLeaves);
+        parser.rBlockBody(this);
+        parsed = true;
+      } catch (SyntaxError e) {
+        failure = new IllegalStateException(e.toString(), e);
+        throw failure;
+      } catch (Exception e) {
+        failure = new IllegalStateException(e);
+        throw failure;
+      } finally {
+        filling = false;
+      }
+    }
+  }
+
+  @Override
+  public AST getKid(int i) {
+    parse();
+    return super.getKid(i);
+  }
+
+  @Override
+  public int kidCount() {
+    parse();
+    return super.kidCount();
+  }
+
+  @Override
+  public List<AST> getKids() {
+    parse();
+    return super.getKids();
+  }
+
+  @Override
+  public AST addKid(AST kid) {
+    parse();
+    return super.addKid(kid);
+  }
+}
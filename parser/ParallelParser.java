@@ -0,0 +1,233 @@
+package parser;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import ast.AST;
+import compiler.CompilationContext;
+import lexer.TokenBuffer;
+import lexer.Tokens;
+
+/**
+ * The ParallelParser parses the bodies of the top-level functions of a
+ * program at the same time on a ForkJoinPool; the result is exactly the
+ * tree the sequential Parser builds, node numbers included.
+ *
+ * A pass over the token kinds matches the braces and finds the body of
+ * each function declared in the program block: a '{' directly inside the
+ * program block that follows TYPE NAME '(' ... ')'. Each body is parsed
+ * with rBlock() by a Parser of its own, over just the body's tokens and
+ * in a context of its own, so its nodes are numbered 1, 2, ... Meanwhile
+ * the calling thread parses the program with a Parser that, when it gets
+ * to a body, waits for its tree and takes it instead of parsing it.
+ *
+ * The sequential parser makes all the nodes of a body one after the
+ * other, so a body's nodes are renumbered by adding the number of nodes
+ * made before the body, and the program's own count moves on past them.
+ * A body that did not parse cleanly, or ended before its closing '}', is
+ * parsed again in place by the sequential parser so any syntax error is
+ * reported just as it would be.
+ */
+public class ParallelParser {
+
+  private final TokenBuffer tokens;
+  private final ForkJoinPool pool;
+  // the tasks parsing the bodies, by the index of their '{'
+  private final Map<Integer, BodyTask> bodies = new HashMap<>();
+
+  public ParallelParser(TokenBuffer tokens) {
+    this(tokens, ForkJoinPool.commonPool());
+  }
+
+  public ParallelParser(TokenBuffer tokens, ForkJoinPool pool) {
+    this.tokens = tokens;
+    this.pool = pool;
+  }
+
+  /**
+   * Parse the program in the current context
+   *
+   * @return the AST for the source program
+   * @exception Exception - pass on any type of exception raised
+   */
+  public AST execute() throws Exception {
+    CompilationContext context = CompilationContext.current();
+    List<BodyTask> tasks = new ArrayList<>();
+
+    for (int[] range : functionBodies(tokens)) {
+      BodyTask task = new BodyTask(range[0], range[1], context);
+      bodies.put(range[0], task);
+      tasks.add(task);
+    }
+
+    try {
+      for (BodyTask task : tasks) {
+        pool.execute(task);
+      }
+
+      Parser parser = new Parser(tokens);
+      parser.setPrepared(this);
+      return parser.execute();
+    } finally {
+      // nothing is left running after a syntax error
+      for (BodyTask task : tasks) {
+        task.cancel(false);
+      }
+    }
+  }
+
+  /**
+   * @return the [first, last] token indices of the body of every function
+   *         declared in the program block, in source order; none if the
+   *         braces do not match
+   */
+  public static List<int[]> functionBodies(TokenBuffer tokens) {
+    List<int[]> bodies = new ArrayList<>();
+    int depth = 0, start = -1;
+
+    for (int i = 0; i < tokens.size(); i++) {
+      Tokens kind = tokens.kind(i);
+
+      if (kind == Tokens.LeftBrace) {
+        depth++;
+
+        if (depth == 2 && isFunctionBody(tokens, i)) {
+          start = i;
+        }
+      } else if (kind == Tokens.RightBrace) {
+        if (depth == 2 && start != -1) {
+          bodies.add(new int[] { start, i });
+          start = -1;
+        }
+        if (--depth < 0) {
+          return new ArrayList<>();
+        }
+      }
+    }
+    return depth == 0 ? bodies : new ArrayList<>();
+  }
+
+  /**
+   * @return true if the '{' at index i follows TYPE NAME '(' ... ')'
+   */
+  private static boolean isFunctionBody(TokenBuffer tokens, int i) {
+    if (i < 1 || tokens.kind(i - 1) != Tokens.RightParen) {
+      return false;
+    }
+
+    // formals hold no parentheses, so the '(' is the nearest one before
+    int open = i - 2;
+    while (open >= 0 && tokens.kind(open) != Tokens.LeftParen) {
+      open--;
+    }
+    if (open < 2 || tokens.kind(open - 1) != Tokens.Identifier) {
+      return false;
+    }
+
+    Tokens type = tokens.kind(open - 2);
+    return type == Tokens.Int || type == Tokens.BOOLean || type == Tokens.StringType
+        || type == Tokens.HexType;
+  }
+
+  /**
+   * Wait for the body that starts at token first, renumbered to follow the
+   * nodes context has made so far
+   *
+   * @return the body; null if there is none for first or it has to be
+   *         parsed in place
+   */
+  Body take(int first, CompilationContext context) {
+    BodyTask task = bodies.remove(first);
+
+    if (task == null) {
+      return null;
+    }
+
+    Body body = task.join();
+    if (body == null) {
+      return null;
+    }
+
+    body.renumber(context.reserveNodeNums(body.nodeCount));
+    return body;
+  }
+
+  /**
+   * A function body parsed ahead of time: its tree, the number of nodes in
+   * it and the index of its closing '}'
+   */
+  static final class Body {
+    private final AST tree;
+    private final int nodeCount, last;
+
+    Body(AST tree, int nodeCount, int last) {
+      this.tree = tree;
+      this.nodeCount = nodeCount;
+      this.last = last;
+    }
+
+    AST tree() {
+      return tree;
+    }
+
+    int last() {
+      return last;
+    }
+
+    /**
+     * add base to the number of every node, without recursion
+     */
+    private void renumber(int base) {
+      List<AST> stack = new ArrayList<>();
+      stack.add(tree);
+
+      while (!stack.isEmpty()) {
+        AST t = stack.remove(stack.size() - 1);
+        t.setNodeNum(t.getNodeNum() + base);
+
+        for (int i = 1; i <= t.kidCount(); i++) {
+          stack.add(t.getKid(i));
+        }
+      }
+    }
+  }
+
+  /**
+   * Parses tokens [first..last] as a BLOCK; the result is null if that
+   * fails or does not end at last
+   */
+  private final class BodyTask extends RecursiveTask<Body> {
+
+    private static final long serialVersionUID = 1L;
+    private final int first, last;
+    private final CompilationContext program;
+
+    BodyTask(int first, int last, CompilationContext program) {
+      this.first = first;
+      this.last = last;
+      this.program = program;
+    }
+
+    @SuppressWarnings("try")
+    @Override
+    protected Body compute() {
+      CompilationContext context = new CompilationContext(program.symbols());
+
+      try (CompilationContext.Current c = context.makeCurrent()) {
+        TokenBuffer.Cursor cursor = tokens.cursor(first, last + 1);
+        AST tree = new Parser(cursor).rBlock();
+
+        if (cursor.index() != last + 1) {
+          return null;
+        }
+        return new Body(tree, context.nodeCount(), last);
+      } catch (Exception e) {
+        return null;
+      }
+    }
+  }
+}
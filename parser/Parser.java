@@ -1,6 +1,7 @@
 package parser;
 
 import ast.*;
+import compiler.CompilationContext;
 import java.util.*;
 import lexer.*;
 
@@ -83,6 +84,13 @@ public class Parser {
   
   private Token currentToken;
   private ILexer lex;
+  // set when parsing from a TokenBuffer; the current token is then only
+  // described by currentKind/currentSymbol and no Token is created
+  private TokenBuffer.Cursor tokens;
+  private Tokens currentKind;
+  private Symbol currentSymbol;
+  // the compilation the tree is built for
+  private final CompilationContext context = CompilationContext.current();
   private EnumSet<Tokens> relationalOps = EnumSet.of(
   Tokens.Equal,
   Tokens.NotEqual,
@@ -99,6 +107,18 @@ public class Parser {
   Tokens.Divide,
   Tokens.And,
   Tokens.Modulo);
+  // the bodies of top-level functions parsed ahead of time
+  private ParallelParser prepared;
+  // leave function bodies unparsed until they are looked at
+  private boolean lazyFunctionBodies;
+  // parse expressions by precedence climbing with explicit stacks instead
+  // of recursive descent; see rExprIterative
+  private boolean iterativeExpressions;
+  // when set, the token range of each block and function declaration is
+  // added to it (see IncrementalParser)
+  private List<IncrementalParser.Region> regions;
+  // the shared type and literal nodes when leaves are shared; else null
+  private LeafPool leaves;
   
   /**
   * Construct a new Parser;
@@ -123,22 +143,153 @@ public class Parser {
     scan();
   }
   
+  /**
+  * Construct a Parser that reads from a buffer of pre-lexed tokens
+  *
+  * @param tokens - the whole token stream of the source program
+  */
+  public Parser(TokenBuffer tokens) throws Exception {
+    this(tokens.cursor());
+  }
+  
+  /**
+  * Construct a Parser that reads the tokens of a cursor, e.g. just the
+  * part of a program that is a function body
+  */
+  public Parser(TokenBuffer.Cursor tokens) throws Exception {
+    this.tokens = tokens;
+    lex = this.tokens;
+    scan();
+  }
+  
+  /**
+  * Choose how expressions are parsed: recursively (the default) or
+  * iteratively, where nesting is only limited by the heap. Both build the
+  * same trees with the same node numbers.
+  */
+  public void setIterativeExpressions(boolean iterative) {
+    iterativeExpressions = iterative;
+  }
+  
+  /**
+  * Choose whether type and int/hex literal nodes are made for every place
+  * they appear (the default) or shared: taken from the LeafPool of the
+  * compilation, so there is one node per type and per literal
+  */
+  public void setSharedLeaves(boolean shared) {
+    leaves = shared ? context.leaves() : null;
+  }
+  
+  /**
+  * Choose whether function bodies are parsed right away (the default) or
+  * only when their kids are first asked for (see LazyBlockTree); that
+  * needs a Parser reading from a TokenBuffer, and a syntax error in a
+  * body only shows when the body is parsed.
+  */
+  public void setLazyFunctionBodies(boolean lazy) {
+    lazyFunctionBodies = lazy;
+  }
+  
+  /**
+  * Record the token range of every block and function declaration parsed
+  * from here on in regions
+  */
+  void setRegions(List<IncrementalParser.Region> regions) {
+    this.regions = regions;
+  }
+  
+  /**
+  * Parse the function bodies the given ParallelParser has prepared by
+  * taking its trees instead
+  */
+  void setPrepared(ParallelParser prepared) {
+    this.prepared = prepared;
+  }
+  
   public ILexer getLex() {
     return (ILexer) lex;
   }
   
+  /**
+  * @return the compilation this parser belongs to: the context that was
+  * current when it was made
+  */
+  public CompilationContext getContext() {
+    return context;
+  }
+  
+  /**
+  * @return the pool the shared type and literal nodes come from; null if
+  * this parser does not share leaves
+  */
+  public LeafPool getLeaves() {
+    return leaves;
+  }
+  
   /**
   * Execute the parse command
   *
   * @return the AST for the source program
   * @exception Exception - pass on any type of exception raised
   */
+  @SuppressWarnings("try")
   public AST execute() throws Exception {
-    try {
+    try (CompilationContext.Current c = context.makeCurrent()) {
       return rProgram();
     } catch (SyntaxError e) {
       e.print();
       throw e;
+    } finally {
+      closeLexer();
+    }
+  }
+  
+  /**
+  * Parse the program straight into a FlatAST: the program and its outer
+  * block are made in the builder, and each declaration and statement of
+  * the outer block is copied into it as soon as it is parsed, so only one
+  * of them is held as AST objects at a time. The nodes get the same
+  * numbers as execute() gives them.
+  *
+  * @return the flat tree for the source program
+  * @exception Exception - pass on any type of exception raised
+  */
+  @SuppressWarnings("try")
+  public FlatAST executeFlat() throws Exception {
+    try (CompilationContext.Current c = context.makeCurrent()) {
+      FlatAST.Builder builder = new FlatAST.Builder(context.symbols());
+      int program = builder.node(FlatAST.Kind.PROGRAM, null, context.nextNodeNum());
+      
+      expect(Tokens.Program);
+      expect(Tokens.LeftBrace);
+      int block = builder.node(FlatAST.Kind.BLOCK, null, context.nextNodeNum());
+      builder.addKid(program, block);
+      
+      while (startingDecl()) {
+        builder.addKid(block, builder.add(rDecl()));
+      }
+      while (startingStatement()) {
+        builder.addKid(block, builder.add(rStatement()));
+      }
+      expect(Tokens.RightBrace);
+      
+      return builder.build(program);
+    } catch (SyntaxError e) {
+      e.print();
+      throw e;
+    } finally {
+      closeLexer();
+    }
+  }
+  
+  /**
+  * The parser owns its lexer: one that holds on to something, like the
+  * thread of a PipelinedLexer, is closed once the parse is over, whether
+  * it reached EOF or not
+  */
+  private void closeLexer() throws Exception {
+    if (lex instanceof AutoCloseable) {
+      ((AutoCloseable) lex).close();
     }
   }
   
@@ -167,9 +318,26 @@ public class Parser {
   *                        left brace isn't found
   */
   public AST rBlock() throws SyntaxError {
+    int first = tokens == null ? -1 : tokens.index();
     expect(Tokens.LeftBrace);
-    AST t = new BlockTree();
-    
+    return record(rBlockBody(new BlockTree()), first, false);
+  }
+  
+  /**
+  * add t, whose tokens start at first and end just before the current
+  * token, to the regions if they are being recorded
+  */
+  private AST record(AST t, int first, boolean function) {
+    if (regions != null && tokens != null) {
+      regions.add(new IncrementalParser.Region(t, function, first, tokens.index() - 1));
+    }
+    return t;
+  }
+  
+  /**
+  * the rest of a BLOCK after its '{': D* S* '}', added to t
+  */
+  AST rBlockBody(AST t) throws SyntaxError {
     // Get declarations until there are no more matches for declarations
     while (startingDecl()) {
       t.addKid(rDecl());
@@ -212,6 +380,7 @@ public class Parser {
   */
   public AST rDecl() throws SyntaxError {
     AST t, t1;
+    int first = tokens == null ? -1 : tokens.index();
     t = rType();
     t1 = rName();
     
@@ -220,14 +389,42 @@ public class Parser {
     if (isNextTok(Tokens.LeftParen)) {
       t = (new FunctionDeclTree()).addKid(t).addKid(t1);
       t.addKid(rFuncHead());
-      t.addKid(rBlock());
-      return t;
+      t.addKid(rFunctionBody());
+      return record(t, first, true);
     }
     t = (new DeclTree()).addKid(t).addKid(t1);
     
     return t;
   }
   
+  /**
+  * the BLOCK of a function declaration: a LazyBlockTree in lazy mode, the
+  * tree a ParallelParser made for it if there is one, else parsed here
+  */
+  private AST rFunctionBody() throws SyntaxError {
+    if (lazyFunctionBodies && tokens != null && isNextTok(Tokens.LeftBrace)) {
+      int last = tokens.buffer().match(tokens.index());
+      
+      if (last != -1) {
+        AST t = new LazyBlockTree(tokens.buffer(), tokens.index(), last, context,
+            iterativeExpressions, leaves != null);
+        tokens.seek(last);
+        scan();
+        return t;
+      }
+    }
+    
+    ParallelParser.Body body = prepared == null ? null : prepared.take(tokens.index(), context);
+    
+    if (body == null) {
+      return rBlock();
+    }
+    // carry on after its '}'
+    tokens.seek(body.last());
+    scan();
+    return body.tree();
+  }
+  
   /**
   * Types:
   * TYPE -> 'int'
@@ -242,16 +439,16 @@ public class Parser {
     AST t;
     
     if (isNextTok(Tokens.Int)) {
-      t = new IntTypeTree();
+      t = leaves == null ? new IntTypeTree() : leaves.intType();
       scan();
     } else if (isNextTok(Tokens.BOOLean)) {
-      t = new BoolTypeTree();
+      t = leaves == null ? new BoolTypeTree() : leaves.boolType();
       scan();
     } else if (isNextTok(Tokens.StringType)) {
-      t = new StringTypeTree();
+      t = leaves == null ? new StringTypeTree() : leaves.stringType();
       scan();
     } else {
-      t = new HexTypeTree();
+      t = leaves == null ? new HexTypeTree() : leaves.hexType();
       scan();
     }
     return t;
@@ -380,7 +577,7 @@ public class Parser {
     AST t = new SelectBlockTree();
     
     boolean selectorFound = false;
-    while (currentToken.getKind() == Tokens.LeftBracket){
+    while (isNextTok(Tokens.LeftBracket)){
       t.addKid(rSelector());
       selectorFound = true;
     } 
@@ -388,7 +585,7 @@ public class Parser {
     expect(Tokens.RightBrace);
     
     if (!selectorFound) {
-      throw new SyntaxError(currentToken, Tokens.Identifier);
+      throw new SyntaxError(currentToken(), Tokens.Identifier);
     }
     
     return t;
@@ -422,6 +619,9 @@ public class Parser {
   * @exception SyntaxError - thrown for any syntax error
   */
   public AST rExpr() throws SyntaxError {
+    if (iterativeExpressions) {
+      return rExprIterative();
+    }
     AST t, kid = rSimpleExpr();
     
     t = getRelationTree();
@@ -511,19 +711,19 @@ public class Parser {
     }
     // -> <int>
     else if (isNextTok(Tokens.INTeger)) {
-      t = new IntTree(currentToken);
+      t = intLiteral();
       scan();
       return t;
     }
     // -> <string>  
     else if (isNextTok(Tokens.StringLit)){
-      t = new StringTree(currentToken);
+      t = new StringTree(currentSymbol);
       scan();
       return t;
     }
     // -> <hex> 
     else if (isNextTok(Tokens.HexLit)){
-      t = new HexTree(currentToken);
+      t = hexLiteral();
       scan();
       return t;
     }
@@ -553,6 +753,166 @@ public class Parser {
     return t;
   }
   
+  /**
+  * Parse E (with all the SE, T and F below it) without recursion, by
+  * precedence climbing over the relationalOps/addingOps/multiplyingOps
+  * levels. Operands and operator trees wait on explicit stacks; a
+  * parenthesized expression or call argument opens a group on the group
+  * stack which is reduced to one operand at its ')' or ','.
+  *
+  * Operator and leaf trees are made as their tokens are scanned, exactly
+  * as the recursive rules make them, so the trees and their node numbers
+  * are the same; like E -> SE relop SE, a group takes at most one
+  * relational operator and ends at a second one.
+  *
+  * @return the tree corresponding to the expression
+  * @exception SyntaxError - thrown for any syntax error
+  */
+  public AST rExprIterative() throws SyntaxError {
+    ArrayList<AST> operands = new ArrayList<>();
+    ArrayList<AST> operators = new ArrayList<>();
+    ArrayList<ExprGroup> groups = new ArrayList<>();
+    ExprGroup group = new ExprGroup(null, 0);
+    
+    while (true) {
+      // an operand: F without its recursive cases
+      AST operand;
+      
+      if (isNextTok(Tokens.LeftParen)) {
+        scan();
+        groups.add(group);
+        group = new ExprGroup(null, operators.size());
+        continue;
+      } else if (isNextTok(Tokens.INTeger)) {
+        operand = intLiteral();
+        scan();
+      } else if (isNextTok(Tokens.StringLit)) {
+        operand = new StringTree(currentSymbol);
+        scan();
+      } else if (isNextTok(Tokens.HexLit)) {
+        operand = hexLiteral();
+        scan();
+      } else {
+        operand = rName();
+        
+        if (isNextTok(Tokens.LeftParen)) {
+          scan();
+          AST call = (new CallTree()).addKid(operand);
+          
+          if (!isNextTok(Tokens.RightParen)) {
+            // the first argument
+            groups.add(group);
+            group = new ExprGroup(call, operators.size());
+            continue;
+          }
+          scan();
+          operand = call;
+        }
+      }
+      operands.add(operand);
+      
+      // then operators, closing groups as they end, until one is followed
+      // by another operand
+      while (true) {
+        int precedence = precedence(currentKind);
+        
+        if (precedence > 0 && !(precedence == 1 && group.relational)) {
+          reduce(operands, operators, group, precedence);
+          
+          if (precedence == 1) {
+            operators.add(getRelationTree());
+            group.relational = true;
+          } else if (precedence == 2) {
+            operators.add(getAddOperTree());
+          } else {
+            operators.add(getMultOperTree());
+          }
+          break;
+        }
+        
+        // the end of the expression in this group
+        reduce(operands, operators, group, 1);
+        
+        if (groups.isEmpty()) {
+          return operands.remove(operands.size() - 1);
+        }
+        
+        AST call = group.call;
+        group = groups.remove(groups.size() - 1);
+        
+        if (call == null) {
+          expect(Tokens.RightParen);
+          continue;
+        }
+        
+        call.addKid(operands.remove(operands.size() - 1));
+        if (isNextTok(Tokens.Comma)) {
+          scan();
+          // the next argument
+          groups.add(group);
+          group = new ExprGroup(call, operators.size());
+          break;
+        }
+        expect(Tokens.RightParen);
+        operands.add(call);
+      }
+    }
+  }
+  
+  /**
+  * @return 1, 2 or 3 for relational, adding and multiplying operators; 0
+  * for anything else
+  */
+  private int precedence(Tokens kind) {
+    if (relationalOps.contains(kind)) {
+      return 1;
+    } else if (addingOps.contains(kind)) {
+      return 2;
+    } else if (multiplyingOps.contains(kind)) {
+      return 3;
+    }
+    return 0;
+  }
+  
+  /**
+  * Give the operators of the group with at least the given precedence
+  * their operands, the last ones first
+  */
+  private void reduce(ArrayList<AST> operands, ArrayList<AST> operators,
+  ExprGroup group, int precedence) {
+    while (operators.size() > group.operatorBase) {
+      AST operator = operators.get(operators.size() - 1);
+      
+      int level = operator instanceof RelOpTree ? 1 : operator instanceof AddOpTree ? 2 : 3;
+      
+      if (level < precedence) {
+        return;
+      }
+      operators.remove(operators.size() - 1);
+      AST right = operands.remove(operands.size() - 1);
+      AST left = operands.remove(operands.size() - 1);
+      operator.addKid(left);
+      operator.addKid(right);
+      operands.add(operator);
+    }
+  }
+  
+  /**
+  * A parenthesized expression or call argument being parsed by
+  * rExprIterative: its call (null for parentheses), whether it has had
+  * its relational operator and where its operators start on the stack
+  */
+  private static class ExprGroup {
+    final AST call;
+    boolean relational;
+    final int operatorBase;
+    
+    ExprGroup(AST call, int operatorBase) {
+      this.call = call;
+      this.operatorBase = operatorBase;
+    }
+  }
+  
   /**
   * Identifier:
   * NAME -> <id>
@@ -563,21 +923,33 @@ public class Parser {
   public AST rName() throws SyntaxError {
     AST t;
     if (isNextTok(Tokens.Identifier)) {
-      t = new IdTree(currentToken);
+      t = new IdTree(currentSymbol);
       scan();
       
       return t;
     } else {
-      throw new SyntaxError(currentToken, Tokens.Identifier);
+      throw new SyntaxError(currentToken(), Tokens.Identifier);
     }
   }
   
+  /**
+  * @return the tree for the int literal that is the current token
+  */
+  private AST intLiteral() {
+    return leaves == null ? new IntTree(currentSymbol) : leaves.intLiteral(currentSymbol);
+  }
+
+  /**
+  * @return the tree for the hex literal that is the current token
+  */
+  private AST hexLiteral() {
+    return leaves == null ? new HexTree(currentSymbol) : leaves.hexLiteral(currentSymbol);
+  }
+
   // build tree with current token's relation
   private AST getRelationTree() {
-    Tokens kind = currentToken.getKind();
-    
-    if (relationalOps.contains(kind)) {
-      AST t = new RelOpTree(currentToken);
+    if (relationalOps.contains(currentKind)) {
+      AST t = new RelOpTree(currentSymbol);
       scan();
       
       return t;
@@ -587,10 +959,8 @@ public class Parser {
   }
   
   private AST getAddOperTree() {
-    Tokens kind = currentToken.getKind();
-    
-    if (addingOps.contains(kind)) {
-      AST t = new AddOpTree(currentToken);
+    if (addingOps.contains(currentKind)) {
+      AST t = new AddOpTree(currentSymbol);
       scan();
       
       return t;
@@ -600,10 +970,8 @@ public class Parser {
   }
   
   private AST getMultOperTree() {
-    Tokens kind = currentToken.getKind();
-    
-    if (multiplyingOps.contains(kind)) {
-      AST t = new MultOpTree(currentToken);
+    if (multiplyingOps.contains(currentKind)) {
+      AST t = new MultOpTree(currentSymbol);
       scan();
       
       return t;
@@ -613,7 +981,15 @@ public class Parser {
   }
   
   private boolean isNextTok(Tokens kind) {
-    return currentToken != null && currentToken.getKind() == kind;
+    return currentKind == kind;
+  }
+  
+  /**
+  * @return the current token; when parsing from a TokenBuffer it is only
+  * made into a Token here, for error reporting
+  */
+  private Token currentToken() {
+    return tokens != null ? tokens.token() : currentToken;
   }
   
   private void expect(Tokens kind) throws SyntaxError {
@@ -622,11 +998,20 @@ public class Parser {
       
       return;
     }
-    throw new SyntaxError(currentToken, kind);
+    throw new SyntaxError(currentToken(), kind);
   }
   
   private void scan() {
+    if (tokens != null) {
+      tokens.advance();
+      currentKind = tokens.kind();
+      currentSymbol = tokens.symbol();
+      
+      return;
+    }
     currentToken = lex.nextToken();
+    currentKind = currentToken == null ? null : currentToken.getKind();
+    currentSymbol = currentToken == null ? null : currentToken.getSymbol();
     
     return;
   }
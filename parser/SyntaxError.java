@@ -23,6 +23,11 @@ public class SyntaxError extends Exception {
 
   void print() {
     System.out.println("Expected: " + kindExpected);
+
+    // point at the offending token when we know where it came from
+    if (tokenFound != null && tokenFound.getLineIndex() != null) {
+      System.out.println(tokenFound.getLineIndex().snippet(tokenFound.getOffset()));
+    }
     return;
   }
 
@@ -0,0 +1,46 @@
+package tests.helpers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.Stream;
+
+import lexer.ILexer;
+import lexer.Token;
+import lexer.Tokens;
+
+public class TokenAssertions {
+
+  /**
+   * Drain both lexers and check they produce the same tokens: kind, lexeme,
+   * positions and line number
+   */
+  public static void assertSameTokens(ILexer expected, ILexer actual) {
+    Token expectedToken, actualToken;
+    int index = 0;
+
+    do {
+      expectedToken = expected.nextToken();
+      actualToken = actual.nextToken();
+
+      assertEquals(describe(expectedToken), describe(actualToken), "token " + index);
+      index++;
+    } while (expectedToken.getKind() != Tokens.EOF);
+  }
+
+  public static String describe(Token token) {
+    return String.format(
+        "%s %s left: %d right: %d line: %d",
+        token.getKind(),
+        token.getLexeme(),
+        token.getLeftPosition(),
+        token.getRightPosition(),
+        token.getLineNumber());
+  }
+
+  public static Stream<Path> sampleFiles() throws Exception {
+    return Files.walk(Paths.get("sample_files")).filter(p -> p.toString().endsWith(".x"));
+  }
+}
@@ -0,0 +1,58 @@
+package tests.helpers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import ast.*;
+
+public class TreeAssertions {
+
+  /**
+   * Check two trees have the same shape, node classes, symbols and node
+   * numbers
+   */
+  public static void assertSameTree(AST expected, AST actual) {
+    assertEquals(describe(expected), describe(actual));
+  }
+
+  public static String describe(AST t) {
+    StringBuilder sb = new StringBuilder();
+    describe(t, 0, sb);
+    return sb.toString();
+  }
+
+  private static void describe(AST t, int depth, StringBuilder sb) {
+    sb.append("  ".repeat(depth))
+        .append(t.getNodeNum())
+        .append(' ')
+        .append(t.getClass().getSimpleName());
+
+    String symbol = symbolOf(t);
+    if (symbol != null) {
+      sb.append(' ').append(symbol);
+    }
+    sb.append('\n');
+
+    for (int i = 1; i <= t.kidCount(); i++) {
+      describe(t.getKid(i), depth + 1, sb);
+    }
+  }
+
+  private static String symbolOf(AST t) {
+    if (t instanceof IdTree) {
+      return ((IdTree) t).getSymbol().toString();
+    } else if (t instanceof IntTree) {
+      return ((IntTree) t).getSymbol().toString();
+    } else if (t instanceof StringTree) {
+      return ((StringTree) t).getSymbol().toString();
+    } else if (t instanceof HexTree) {
+      return ((HexTree) t).getSymbol().toString();
+    } else if (t instanceof RelOpTree) {
+      return ((RelOpTree) t).getSymbol().toString();
+    } else if (t instanceof AddOpTree) {
+      return ((AddOpTree) t).getSymbol().toString();
+    } else if (t instanceof MultOpTree) {
+      return ((MultOpTree) t).getSymbol().toString();
+    }
+    return null;
+  }
+}
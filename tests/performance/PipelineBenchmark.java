@@ -0,0 +1,77 @@
+package tests.performance;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import ast.AST;
+import lexer.DfaLexer;
+import lexer.PipelinedLexer;
+import parser.Parser;
+
+/**
+ * Times parsing with the lexer on the parser's thread against parsing
+ * with the lexer pipelined on a thread of its own.
+ *
+ * usage: java tests.performance.PipelineBenchmark [file.x] [runs]
+ * without a file a large program is generated
+ */
+public class PipelineBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    Path file = args.length > 0 ? Path.of(args[0]) : generate(200_000);
+    int runs = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+    System.out.printf("%s: %d bytes, %d runs%n", file, Files.size(file), runs);
+
+    // warm up both paths first
+    for (int i = 0; i < 3; i++) {
+      sequential(file);
+      pipelined(file);
+    }
+
+    long sequential = 0, pipelined = 0;
+
+    for (int i = 0; i < runs; i++) {
+      sequential += sequential(file);
+      pipelined += pipelined(file);
+    }
+
+    System.out.printf("sequential: %8.2f ms%n", sequential / 1e6 / runs);
+    System.out.printf("pipelined:  %8.2f ms%n", pipelined / 1e6 / runs);
+    System.out.printf("speedup:    %8.2fx%n", (double) sequential / pipelined);
+  }
+
+  private static long sequential(Path file) throws Exception {
+    long start = System.nanoTime();
+    parse(new Parser(new DfaLexer(file.toString())));
+    return System.nanoTime() - start;
+  }
+
+  private static long pipelined(Path file) throws Exception {
+    long start = System.nanoTime();
+    parse(new Parser(new PipelinedLexer(file.toString())));
+    return System.nanoTime() - start;
+  }
+
+  private static AST parse(Parser parser) throws Exception {
+    AST.NodeCount = 0;
+    return parser.execute();
+  }
+
+  /**
+   * @return a temporary program with the given number of statements
+   */
+  static Path generate(int statements) throws Exception {
+    StringBuilder source = new StringBuilder("program {\n  int x int y\n");
+
+    for (int i = 0; i < statements; i++) {
+      source.append("  x = y * ").append(i).append(" + (x - 0x00ff0").append(i % 10).append(") // step\n");
+    }
+    source.append("}\n");
+
+    Path file = Files.createTempFile("pipeline", ".x");
+    file.toFile().deleteOnExit();
+    Files.writeString(file, source);
+    return file;
+  }
+}
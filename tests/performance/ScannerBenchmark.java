@@ -0,0 +1,86 @@
+package tests.performance;
+
+import lexer.CharScanner;
+import lexer.SliceLexer;
+import lexer.TokenBuffer;
+
+/**
+ * Compares the scalar CharScanner with the Vector API one, both on their
+ * own (skipping every whitespace run and comment of a source) and inside
+ * the SliceLexer. Run with --add-modules jdk.incubator.vector, otherwise
+ * only the scalar numbers are printed.
+ *
+ * usage: java --add-modules jdk.incubator.vector tests.performance.ScannerBenchmark [runs]
+ */
+public class ScannerBenchmark {
+
+  public static void main(String[] args) {
+    int runs = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+    char[] source = generate(100_000);
+    CharScanner vector = CharScanner.vector();
+
+    System.out.printf("%d chars, %d runs%n", source.length, runs);
+    if (vector == null) {
+      System.out.println("jdk.incubator.vector is not available; scalar only");
+    }
+
+    report("skip scalar", runs, () -> skipAll(new CharScanner(), source));
+    if (vector != null) {
+      report("skip vector", runs, () -> skipAll(vector, source));
+    }
+    report("lex scalar ", runs, () -> TokenBuffer.lex(new SliceLexer(source, source.length, new CharScanner())).size());
+    if (vector != null) {
+      report("lex vector ", runs, () -> TokenBuffer.lex(new SliceLexer(source, source.length, vector)).size());
+    }
+  }
+
+  interface Run {
+    int run();
+  }
+
+  private static void report(String name, int runs, Run run) {
+    int check = 0;
+
+    // warm up
+    for (int i = 0; i < runs; i++) {
+      check += run.run();
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < runs; i++) {
+      check += run.run();
+    }
+    System.out.printf("%s: %8.3f ms   (%d)%n", name, (System.nanoTime() - start) / 1e6 / runs, check);
+  }
+
+  /**
+   * skip every whitespace run, treating the rest of a line after a
+   * non-whitespace char as a comment
+   */
+  private static int skipAll(CharScanner scanner, char[] source) {
+    int i = 0, lines = 0;
+
+    while (i < source.length) {
+      i = scanner.skipWhitespace(source, i, source.length);
+      lines += scanner.newlines();
+      i = scanner.lineEnd(source, i, source.length);
+    }
+    return lines;
+  }
+
+  /**
+   * @return a program that is mostly indentation and comment banners
+   */
+  static char[] generate(int statements) {
+    StringBuilder source = new StringBuilder("program {\n  int x\n");
+    String banner = "//" + "=".repeat(76) + "\n";
+
+    for (int i = 0; i < statements; i++) {
+      if (i % 10 == 0) {
+        source.append("\n        ").append(banner).append("        // section ").append(i).append("\n        ").append(banner);
+      }
+      source.append("                x = x + ").append(i).append("\n");
+    }
+    source.append("}\n");
+    return source.toString().toCharArray();
+  }
+}
@@ -0,0 +1,183 @@
+package tests.regression;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import ast.AST;
+import ast.AstCache;
+import ast.FlatAST;
+import compiler.CompilationContext;
+import constrain.Constrainer;
+import lexer.Symbol;
+import parser.Parser;
+import tests.helpers.TokenAssertions;
+import tests.helpers.TreeAssertions;
+
+public class AstCacheTest {
+
+  @TempDir
+  Path directory;
+
+  @ParameterizedTest
+  @MethodSource("sampleFiles")
+  void testRoundTrip(Path file) throws Exception {
+    AST t = parse(file);
+
+    if (t != null) {
+      FlatAST flat = FlatAST.fromTree(t, CompilationContext.current().symbols());
+      Path treeFile = directory.resolve("tree.ast");
+
+      AstCache.write(flat, treeFile, false);
+      TreeAssertions.assertSameTree(t, AstCache.read(treeFile, CompilationContext.current().symbols()).toTree());
+    }
+  }
+
+  @SuppressWarnings("try")
+  @Test
+  void testSymbolsInternedInLoadingContext() throws Exception {
+    Path treeFile = directory.resolve("tree.ast");
+    AST t = parse(Path.of("sample_files/fib.x"));
+    AstCache.write(FlatAST.fromTree(t, CompilationContext.current().symbols()), treeFile, false);
+
+    try (CompilationContext context = new CompilationContext()) {
+      FlatAST flat = AstCache.read(treeFile, context.symbols());
+
+      for (int n = 0; n < flat.size(); n++) {
+        Symbol s = flat.symbol(n);
+        if (s != null) {
+          assertSame(s, context.symbols().symbol(lexeme(s), s.getKind()));
+        }
+      }
+      try (CompilationContext.Current c = context.makeCurrent()) {
+        TreeAssertions.assertSameTree(t, flat.toTree());
+      }
+      // loading a tree doesn't number any nodes in the loading context
+      assertEquals(0, context.nodeCount());
+    }
+  }
+
+  @Test
+  void testDecorationsKeptOnlyIfAsked() throws Exception {
+    AST.NodeCount = 0;
+    Parser parser = new Parser("sample_files/fib.x");
+    AST t = parser.execute();
+    new Constrainer(t, parser).execute();
+    FlatAST flat = FlatAST.fromTree(t, parser.getContext().symbols());
+
+    Path decorated = directory.resolve("decorated.ast"), bare = directory.resolve("bare.ast");
+    AstCache.write(flat, decorated, true);
+    AstCache.write(flat, bare, false);
+
+    FlatAST withDecorations = AstCache.read(decorated, parser.getContext().symbols());
+    FlatAST without = AstCache.read(bare, parser.getContext().symbols());
+    int decorations = 0;
+    for (int n = 0; n < flat.size(); n++) {
+      assertEquals(flat.decoration(n), withDecorations.decoration(n));
+      assertEquals(-1, without.decoration(n));
+      if (flat.decoration(n) != -1) {
+        decorations++;
+      }
+    }
+    assertNotEquals(0, decorations);
+  }
+
+  @Test
+  void testKeyedBySourceContent() throws Exception {
+    AstCache cache = new AstCache(directory.resolve("cache"));
+    Path source = directory.resolve("a.x");
+    Files.writeString(source, "program { int i i = 1 }");
+    byte[] content = Files.readAllBytes(source);
+
+    assertNull(cache.load(content, CompilationContext.current().symbols(), false));
+    AST.NodeCount = 0;
+    FlatAST parsed = cache.parse(source);
+    assertNotNull(cache.load(content, CompilationContext.current().symbols(), false));
+
+    // unchanged: the tree comes from the cache
+    Files.writeString(cache.file(content, false), "");
+    assertThrows(IOException.class, () -> cache.parse(source));
+
+    // changed: a new key, parsed again
+    Files.writeString(source, "program { int i i = 2 }");
+    AST.NodeCount = 0;
+    FlatAST changed = cache.parse(source);
+    assertNotEquals(AstCache.key(content, false), AstCache.key(Files.readAllBytes(source), false));
+    assertEquals(parsed.size(), changed.size());
+
+    cache.clear();
+    assertNull(cache.load(content, CompilationContext.current().symbols(), false));
+  }
+
+  @Test
+  void testKey() {
+    byte[] a = "program { }".getBytes(StandardCharsets.UTF_8);
+
+    assertEquals(AstCache.key(a, false), AstCache.key(a.clone(), false));
+    assertNotEquals(AstCache.key(a, false), AstCache.key("program {}".getBytes(StandardCharsets.UTF_8), false));
+    assertNotEquals(AstCache.key(a, false), AstCache.key(a, true));
+  }
+
+  @Test
+  void testDecoratedAndBareKeptApart() throws Exception {
+    AstCache cache = new AstCache(directory.resolve("cache"));
+    byte[] content = Files.readAllBytes(Path.of("sample_files/fib.x"));
+    AST.NodeCount = 0;
+    Parser parser = new Parser("sample_files/fib.x");
+    AST t = parser.execute();
+    new Constrainer(t, parser).execute();
+    FlatAST flat = FlatAST.fromTree(t, parser.getContext().symbols());
+
+    cache.store(content, flat, true);
+    // a caller that wants a bare tree does not get the decorated one
+    assertNull(cache.load(content, parser.getContext().symbols(), false));
+    FlatAST decorated = cache.load(content, parser.getContext().symbols(), true);
+    assertNotNull(decorated);
+
+    cache.store(content, flat, false);
+    FlatAST bare = cache.load(content, parser.getContext().symbols(), false);
+    for (int n = 0; n < flat.size(); n++) {
+      assertEquals(flat.decoration(n), decorated.decoration(n));
+      assertEquals(-1, bare.decoration(n));
+    }
+  }
+
+  @Test
+  void testNotATreeFile() throws Exception {
+    Path file = directory.resolve("junk.ast");
+    Files.writeString(file, "not a tree at all");
+
+    assertThrows(IOException.class, () -> AstCache.read(file, CompilationContext.current().symbols()));
+  }
+
+  private static String lexeme(Symbol s) {
+    return s.isStringLit() ? "@" + s + "@" : s.toString();
+  }
+
+  private static AST parse(Path file) {
+    AST.NodeCount = 0;
+    try {
+      return new Parser(file.toString()).execute();
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  static Stream<Path> sampleFiles() throws Exception {
+    return TokenAssertions.sampleFiles();
+  }
+}
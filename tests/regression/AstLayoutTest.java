@@ -0,0 +1,68 @@
+package tests.regression;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import ast.AST;
+import ast.AddOpTree;
+import ast.BinaryTree;
+import ast.BlockTree;
+import ast.IdTree;
+import ast.IntTree;
+import ast.ListTree;
+import ast.ReturnTree;
+import lexer.Symbol;
+import lexer.Tokens;
+
+public class AstLayoutTest {
+
+  @Test
+  void testLeavesHaveNoKids() {
+    AST leaf = new IntTree(Symbol.symbol("1", Tokens.INTeger));
+
+    assertEquals(0, leaf.kidCount());
+    assertNull(leaf.getKid(1));
+    assertTrue(leaf.getKids().isEmpty());
+    assertThrows(IllegalStateException.class, () -> leaf.addKid(new IntTree(Symbol.symbol("2", Tokens.INTeger))));
+  }
+
+  @Test
+  void testBinaryNodesHoldTwoKids() {
+    AST left = new IdTree(Symbol.symbol("a", Tokens.Identifier));
+    AST right = new IntTree(Symbol.symbol("1", Tokens.INTeger));
+    AST plus = new AddOpTree(Symbol.symbol("+", Tokens.Plus));
+
+    assertTrue(plus instanceof BinaryTree);
+    assertEquals(0, plus.kidCount());
+    assertSame(plus, plus.addKid(left).addKid(right));
+    assertEquals(2, plus.kidCount());
+    assertSame(left, plus.getKid(1));
+    assertSame(right, ((BinaryTree) plus).getRight());
+    assertNull(plus.getKid(3));
+    assertEquals(List.of(left, right), plus.getKids());
+    assertThrows(IllegalStateException.class, () -> plus.addKid(left));
+
+    AST ret = new ReturnTree().addKid(plus);
+    assertEquals(1, ret.kidCount());
+    assertEquals(List.of(plus), ret.getKids());
+  }
+
+  @Test
+  void testListNodesGrow() {
+    AST block = new BlockTree();
+
+    assertTrue(block instanceof ListTree);
+    for (int i = 0; i < 20; i++) {
+      block.addKid(new IntTree(Symbol.symbol(Integer.toString(i), Tokens.INTeger)));
+    }
+    assertEquals(20, block.kidCount());
+    assertEquals("19", ((IntTree) block.getKid(20)).getSymbol().toString());
+  }
+}
@@ -0,0 +1,72 @@
+package tests.regression;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import lexer.CharScanner;
+import lexer.Lexer;
+import lexer.SliceLexer;
+import lexer.readers.MappedSourceReader;
+import tests.helpers.TokenAssertions;
+
+public class CharScannerTest {
+
+  @ParameterizedTest
+  @MethodSource("sampleFiles")
+  void testVectorMatchesScalarOnSampleFiles(Path file) throws Exception {
+    MappedSourceReader reader = new MappedSourceReader(file.toString());
+
+    assertSameScans(reader.buffer(), reader.length());
+  }
+
+  @Test
+  void testVectorMatchesScalarOnWhitespaceRuns() {
+    // runs of every kind of whitespace, including non-ASCII, broken up by
+    // other chars, '\0' and chars that are negative as shorts
+    char[] alphabet = { ' ', ' ', ' ', '\t', '\n', '\r', '\u000B', '\u001C', '\u001F', '\u2003',
+        '\u00A0', 'x', '/', '\0', '\uFFFF', ' ', '\u0008', '\u000E' };
+    Random random = new Random(42);
+    char[] buffer = new char[4096];
+
+    for (int i = 0; i < buffer.length; i++) {
+      buffer[i] = random.nextInt(8) == 0 ? alphabet[random.nextInt(alphabet.length)] : ' ';
+    }
+    assertSameScans(buffer, buffer.length);
+  }
+
+  @ParameterizedTest
+  @MethodSource("sampleFiles")
+  void testScalarLexerMatchesLexer(Path file) throws Exception {
+    MappedSourceReader reader = new MappedSourceReader(file.toString());
+
+    TokenAssertions.assertSameTokens(new Lexer(file.toString()),
+        new SliceLexer(reader.buffer(), reader.length(), new CharScanner()));
+  }
+
+  private void assertSameScans(char[] buffer, int length) {
+    CharScanner vector = CharScanner.vector();
+    assumeTrue(vector != null, "jdk.incubator.vector is not available");
+    CharScanner scalar = new CharScanner();
+
+    for (int from = 0; from < length; from++) {
+      assertEquals(scalar.skipWhitespace(buffer, from, length), vector.skipWhitespace(buffer, from, length),
+          "skipWhitespace from " + from);
+      assertEquals(scalar.newlines(), vector.newlines(), "newlines from " + from);
+      assertEquals(scalar.lastNewline(), vector.lastNewline(), "lastNewline from " + from);
+      assertEquals(scalar.lineEnd(buffer, from, length), vector.lineEnd(buffer, from, length),
+          "lineEnd from " + from);
+    }
+  }
+
+  static Stream<Path> sampleFiles() throws Exception {
+    return TokenAssertions.sampleFiles();
+  }
+}
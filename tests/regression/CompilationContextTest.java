@@ -0,0 +1,134 @@
+package tests.regression;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import ast.AST;
+import codegen.Codegen;
+import compiler.CompilationContext;
+import constrain.Constrainer;
+import lexer.Symbol;
+import lexer.TokenType;
+import lexer.Tokens;
+import parser.Parser;
+
+public class CompilationContextTest {
+
+  // programs that parse and constrain without errors
+  private static final String[] programs = {
+      "sample_files/basic.x", "sample_files/codegen.x", "sample_files/factorial.x",
+      "sample_files/fib.x", "sample_files/scopes.x", "sample_files/simple.x",
+      "sample_files/statements/assignment.x", "sample_files/statements/while.x" };
+
+  @Test
+  void testConcurrentCompilesMatchSequential() throws Exception {
+    List<String> expected = new ArrayList<>();
+    for (String program : programs) {
+      expected.add(compile(program));
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<String>> results = new ArrayList<>();
+
+      for (int round = 0; round < 4; round++) {
+        for (String program : programs) {
+          results.add(pool.submit(() -> compile(program)));
+        }
+      }
+      for (int i = 0; i < results.size(); i++) {
+        assertEquals(expected.get(i % programs.length), results.get(i).get(), programs[i % programs.length]);
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  void testEachContextHasItsOwnIntrinsicsAndSymbols() throws Exception {
+    CompilationContext first = new CompilationContext(), second = new CompilationContext();
+
+    compile(first, programs[0]);
+    compile(second, programs[0]);
+
+    assertNotSame(first.intrinsics().intTree, second.intrinsics().intTree);
+    assertNotSame(first.symbols().symbol("i", Tokens.Identifier), second.symbols().symbol("i", Tokens.Identifier));
+    // the reserved words and operators are shared
+    assertSame(TokenType.tokens.get(Tokens.Program), first.symbols().symbol("program", Tokens.Identifier));
+    assertSame(TokenType.tokens.get(Tokens.Program), second.symbols().symbol("program", Tokens.Identifier));
+  }
+
+  @Test
+  void testOffHeapContextMatchesHeapContext() throws Exception {
+    for (String program : programs) {
+      try (CompilationContext context = new CompilationContext(true)) {
+        assertEquals(compile(program), compile(context, program), program);
+        assertTrue(context.symbols().offHeapUsage() > 0);
+        assertEquals("i", context.symbols().symbol("i", Tokens.Identifier).toString());
+      }
+    }
+  }
+
+  @SuppressWarnings("try")
+  @Test
+  void testDefaultContextNumbersWithNodeCount() throws Exception {
+    AST.NodeCount = 0;
+    AST t = new Parser(programs[0]).execute();
+
+    assertEquals(1, t.getNodeNum());
+    assertEquals(AST.NodeCount, CompilationContext.defaultContext().nodeCount());
+
+    try (CompilationContext.Current c = new CompilationContext().makeCurrent()) {
+      assertEquals(1, new Parser(programs[0]).execute().getNodeNum());
+      assertSame(Symbol.symbol("i", Tokens.Identifier),
+          CompilationContext.current().symbols().symbol("i", Tokens.Identifier));
+    }
+    assertSame(CompilationContext.defaultContext(), CompilationContext.current());
+  }
+
+  private static String compile(String program) throws Exception {
+    return compile(new CompilationContext(), program);
+  }
+
+  /**
+   * parse, constrain and generate code for program in context
+   *
+   * @return the decorated tree, node numbers included
+   */
+  @SuppressWarnings("try")
+  private static String compile(CompilationContext context, String program) throws Exception {
+    try (CompilationContext.Current c = context.makeCurrent()) {
+      Parser parser = new Parser(program);
+      AST t = parser.execute();
+
+      new Constrainer(t, parser).execute();
+      new Codegen(t).execute();
+
+      StringBuilder sb = new StringBuilder();
+      describe(t, sb);
+      return sb.toString();
+    }
+  }
+
+  private static void describe(AST t, StringBuilder sb) {
+    sb.append(t.getNodeNum()).append(' ').append(t.getClass().getSimpleName());
+    if (t.getDecoration() != null) {
+      sb.append(" -> ").append(t.getDecoration().getNodeNum());
+    }
+    sb.append('\n');
+
+    for (int i = 1; i <= t.kidCount(); i++) {
+      describe(t.getKid(i), sb);
+    }
+  }
+}
@@ -0,0 +1,41 @@
+package tests.regression;
+
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import lexer.DfaLexer;
+import lexer.Lexer;
+import lexer.readers.MappedSourceReader;
+import tests.helpers.TokenAssertions;
+
+public class DfaLexerTest {
+
+  @ParameterizedTest
+  @MethodSource("sampleFiles")
+  void testSampleFiles(Path file) throws Exception {
+    TokenAssertions.assertSameTokens(new Lexer(file.toString()), new DfaLexer(file.toString()));
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {
+      "program { int i i = 012 + 0 + 0x1a2B3c }",
+      "if iff then thenx else_ elsewhere while whiles hex hexa",
+      "x = @multi\nline@ y != z // comment\n w <= 0x12",
+      "a->b>=c==d%e<f>g|h&i*j/k-l+m[n]o,p\r\n// trailing",
+      "caf\u00e9 = \u00e9t\u00e9",
+      "abc ! def",
+      "" })
+  void testEdgeCases(String source) throws Exception {
+    TokenAssertions.assertSameTokens(
+        new Lexer(MappedSourceReader.fromText(source)),
+        new DfaLexer(MappedSourceReader.fromText(source)));
+  }
+
+  static Stream<Path> sampleFiles() throws Exception {
+    return TokenAssertions.sampleFiles();
+  }
+}
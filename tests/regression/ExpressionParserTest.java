@@ -0,0 +1,156 @@
+package tests.regression;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import ast.AST;
+import ast.AddOpTree;
+import ast.MultOpTree;
+import lexer.DfaLexer;
+import lexer.TokenBuffer;
+import lexer.readers.MappedSourceReader;
+import parser.Parser;
+import parser.SyntaxError;
+import tests.helpers.TokenAssertions;
+import tests.helpers.TreeAssertions;
+
+public class ExpressionParserTest {
+
+  private static final String[] operators = {
+      "+", "-", "|", "*", "/", "&", "%", "==", "!=", "<", "<=", ">", ">=" };
+
+  @ParameterizedTest
+  @MethodSource("sampleFiles")
+  void testSampleFilesMatchRecursiveParser(Path file) throws Exception {
+    assertSameParse(new MappedSourceReader(file.toString()));
+  }
+
+  @Test
+  void testRandomExpressionsMatchRecursiveParser() throws Exception {
+    Random random = new Random(42);
+
+    for (int i = 0; i < 500; i++) {
+      String program = "program { x = " + expression(random, 4) + " }";
+      assertSameParse(MappedSourceReader.fromText(program));
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {
+      "a < b < c", "(a < b) < c", "a < (b < c)", "f(a, b < c, (d))", "f()", "f(g(h()), 1)",
+      "a + * b", "(a + b", "a + b)", "f(a b)", "f(a,)", "f(,a)", "(", "a <", "@str@ + 0x00ff00" })
+  void testEdgeCasesMatchRecursiveParser(String expression) throws Exception {
+    assertSameParse(MappedSourceReader.fromText("program { x = " + expression + " }"));
+  }
+
+  @Test
+  void testDeepNesting() throws Exception {
+    int depth = 200_000;
+    String parens = "(".repeat(depth) + "1" + ")".repeat(depth);
+    String right = "a*(".repeat(depth) + "1" + ")".repeat(depth);
+    String calls = "f(".repeat(depth) + "1" + ")".repeat(depth);
+
+    parseIteratively("program { x = " + parens + " }");
+    assertThrows(StackOverflowError.class, () -> parse(MappedSourceReader.fromText("program { x = " + parens + " }"), false));
+    parseIteratively("program { x = " + calls + " }");
+
+    // the tree itself is as deep as the nesting
+    AST t = parseIteratively("program { x = " + right + " }");
+    t = t.getKid(1).getKid(1).getKid(2);
+    int levels = 0;
+    while (t instanceof MultOpTree) {
+      t = t.getKid(2);
+      levels++;
+    }
+    assertEquals(depth, levels);
+  }
+
+  @Test
+  void testLongChain() throws Exception {
+    int length = 200_000;
+    AST t = parseIteratively("program { x = 1" + " + 1".repeat(length) + " }");
+
+    // left associative: the first operator is the deepest
+    t = t.getKid(1).getKid(1).getKid(2);
+    int levels = 0;
+    while (t instanceof AddOpTree) {
+      t = t.getKid(1);
+      levels++;
+    }
+    assertEquals(length, levels);
+  }
+
+  /**
+   * parse the program both ways; the trees (node numbers included) or the
+   * syntax errors must be the same
+   */
+  private static void assertSameParse(MappedSourceReader reader) throws Exception {
+    Object expected = parse(reader, false);
+    Object actual = parse(reader, true);
+
+    if (expected instanceof AST && actual instanceof AST) {
+      TreeAssertions.assertSameTree((AST) expected, (AST) actual);
+    } else {
+      assertEquals(String.valueOf(expected), String.valueOf(actual));
+    }
+  }
+
+  private static Object parse(MappedSourceReader reader, boolean iterative) throws Exception {
+    AST.NodeCount = 0;
+    Parser parser = new Parser(TokenBuffer.lex(new DfaLexer(reader)));
+    parser.setIterativeExpressions(iterative);
+
+    try {
+      return parser.rProgram();
+    } catch (SyntaxError e) {
+      return e;
+    }
+  }
+
+  private static AST parseIteratively(String program) throws Exception {
+    Parser parser = new Parser(TokenBuffer.lex(new DfaLexer(MappedSourceReader.fromText(program))));
+    parser.setIterativeExpressions(true);
+
+    return parser.rProgram();
+  }
+
+  private static String expression(Random random, int depth) {
+    StringBuilder sb = new StringBuilder(operand(random, depth));
+
+    for (int n = random.nextInt(4); n > 0; n--) {
+      sb.append(' ').append(operators[random.nextInt(operators.length)]).append(' ')
+          .append(operand(random, depth));
+    }
+    return sb.toString();
+  }
+
+  private static String operand(Random random, int depth) {
+    switch (depth > 0 ? random.nextInt(6) : random.nextInt(3)) {
+    case 0:
+      return "i" + random.nextInt(3);
+    case 1:
+      return Integer.toString(random.nextInt(100));
+    case 2:
+      return "@s@";
+    case 3:
+      return "(" + expression(random, depth - 1) + ")";
+    case 4:
+      return "f()";
+    default:
+      return "f(" + expression(random, depth - 1) + ", " + expression(random, depth - 1) + ")";
+    }
+  }
+
+  static Stream<Path> sampleFiles() throws Exception {
+    return TokenAssertions.sampleFiles();
+  }
+}
@@ -0,0 +1,128 @@
+package tests.regression;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.file.Path;
+import java.util.IdentityHashMap;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import ast.AST;
+import ast.FlatAST;
+import compiler.CompilationContext;
+import constrain.Constrainer;
+import lexer.Tokens;
+import parser.Parser;
+import tests.helpers.TokenAssertions;
+import tests.helpers.TreeAssertions;
+
+public class FlatASTTest {
+
+  @ParameterizedTest
+  @MethodSource("sampleFiles")
+  void testRoundTrip(Path file) throws Exception {
+    AST t = parse(file);
+
+    if (t != null) {
+      FlatAST flat = FlatAST.fromTree(t, CompilationContext.current().symbols());
+
+      assertEquals(countNodes(t), flat.size());
+      TreeAssertions.assertSameTree(t, flat.toTree());
+    }
+  }
+
+  @ParameterizedTest
+  @MethodSource("sampleFiles")
+  void testParserBuildsSameFlatTree(Path file) throws Exception {
+    AST t = parse(file);
+
+    if (t != null) {
+      AST.NodeCount = 0;
+      FlatAST flat = new Parser(file.toString()).executeFlat();
+
+      TreeAssertions.assertSameTree(t, flat.toTree());
+      assertEquals(FlatAST.Kind.PROGRAM, flat.kind(flat.root()));
+      assertEquals(t.getNodeNum(), flat.nodeNum(flat.root()));
+    }
+  }
+
+  @Test
+  void testDecorationsRoundTrip() throws Exception {
+    AST.NodeCount = 0;
+    Parser parser = new Parser("sample_files/fib.x");
+    AST t = parser.execute();
+    new Constrainer(t, parser).execute();
+
+    FlatAST flat = FlatAST.fromTree(t, parser.getContext().symbols());
+    int count = parser.getContext().nodeCount();
+    AST copy = flat.toTree();
+
+    TreeAssertions.assertSameTree(t, copy);
+    assertSameDecorations(t, copy, new IdentityHashMap<>());
+    // the copy keeps the stored numbers without taking new ones
+    assertEquals(count, parser.getContext().nodeCount());
+  }
+
+  @Test
+  void testView() throws Exception {
+    AST.NodeCount = 0;
+    FlatAST flat = new Parser("sample_files/simple.x").executeFlat();
+    int block = flat.kid(flat.root(), 1);
+
+    assertEquals(1, flat.kidCount(flat.root()));
+    assertEquals(-1, flat.kid(flat.root(), 2));
+    assertEquals(-1, flat.nextSibling(block));
+    assertEquals(FlatAST.Kind.BLOCK, flat.kind(block));
+    assertNull(flat.symbol(block));
+    assertEquals(-1, flat.decoration(block));
+
+    // every symbol read back from the view is the one the parser saw
+    for (int n = 0; n < flat.size(); n++) {
+      if (flat.kind(n) == FlatAST.Kind.ID) {
+        assertEquals(Tokens.Identifier, flat.symbol(n).getKind());
+        assertEquals(flat.symbolId(n), flat.symbol(n).getId());
+      }
+    }
+  }
+
+  private static void assertSameDecorations(AST expected, AST actual, IdentityHashMap<AST, Boolean> seen) {
+    if (seen.put(expected, Boolean.TRUE) != null) {
+      return;
+    }
+    if (expected.getDecoration() == null) {
+      assertNull(actual.getDecoration());
+    } else {
+      TreeAssertions.assertSameTree(expected.getDecoration(), actual.getDecoration());
+      assertSameDecorations(expected.getDecoration(), actual.getDecoration(), seen);
+    }
+    for (int i = 1; i <= expected.kidCount(); i++) {
+      assertSameDecorations(expected.getKid(i), actual.getKid(i), seen);
+    }
+  }
+
+  private static int countNodes(AST t) {
+    int count = 1;
+
+    for (int i = 1; i <= t.kidCount(); i++) {
+      count += countNodes(t.getKid(i));
+    }
+    return count;
+  }
+
+  private static AST parse(Path file) {
+    AST.NodeCount = 0;
+    try {
+      return new Parser(file.toString()).execute();
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  static Stream<Path> sampleFiles() throws Exception {
+    return TokenAssertions.sampleFiles();
+  }
+}
@@ -0,0 +1,82 @@
+package tests.regression;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import lexer.IncrementalLexer;
+import lexer.SliceLexer;
+import lexer.TokenBuffer;
+import lexer.readers.MappedSourceReader;
+import tests.helpers.TokenAssertions;
+
+public class IncrementalLexerTest {
+
+  private static final String[] insertions = { "x", "\n", "@", "//", " ", "0x1", "= 12 ", "" };
+
+  @ParameterizedTest
+  @MethodSource("sampleFiles")
+  void testEditsMatchFullLex(Path file) throws Exception {
+    IncrementalLexer lexer = new IncrementalLexer(new MappedSourceReader(file.toString()));
+    int step = Math.max(1, lexer.length() / 25);
+    int edit = 0;
+
+    for (int offset = 0; offset < lexer.length(); offset += step, edit++) {
+      String inserted = insertions[edit % insertions.length];
+      int removed = Math.min(edit % 3, lexer.length() - offset);
+
+      assertSameBuffer(lexer, lexer.edit(offset, removed, inserted));
+    }
+    // and at the very end of the source
+    assertSameBuffer(lexer, lexer.edit(lexer.length(), 0, "\n{ x }"));
+  }
+
+  @Test
+  void testEditInsideStringLiteral() {
+    IncrementalLexer lexer = lexer("program { write(@a\nb\nc@) int x }");
+
+    assertSameBuffer(lexer, lexer.edit(21, 0, "@"));
+    assertSameBuffer(lexer, lexer.edit(21, 1, ""));
+  }
+
+  @Test
+  void testLocalEditRelexesLittle() {
+    StringBuilder source = new StringBuilder("program {\n");
+
+    for (int i = 0; i < 2000; i++) {
+      source.append("  int x").append(i).append(" = ").append(i).append("\n");
+    }
+    source.append("}\n");
+
+    IncrementalLexer lexer = lexer(source.toString());
+    int offset = source.indexOf("x1000 ");
+
+    assertSameBuffer(lexer, lexer.edit(offset, 1, "y"));
+    assertTrue(lexer.relexedCount() < 10, "relexed " + lexer.relexedCount() + " tokens");
+  }
+
+  private static IncrementalLexer lexer(String source) {
+    return new IncrementalLexer(source.toCharArray(), source.length());
+  }
+
+  private void assertSameBuffer(IncrementalLexer lexer, TokenBuffer actual) {
+    TokenBuffer expected = TokenBuffer.lex(new SliceLexer(lexer.buffer(), lexer.length()));
+
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.start(i), actual.start(i), "start of token " + i);
+      assertEquals(expected.end(i), actual.end(i), "end of token " + i);
+    }
+    TokenAssertions.assertSameTokens(expected.cursor(), actual.cursor());
+  }
+
+  static Stream<Path> sampleFiles() throws Exception {
+    return TokenAssertions.sampleFiles();
+  }
+}
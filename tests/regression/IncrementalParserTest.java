@@ -0,0 +1,199 @@
+package tests.regression;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import ast.AST;
+import ast.IdTree;
+import compiler.CompilationContext;
+import lexer.IncrementalLexer;
+import lexer.readers.MappedSourceReader;
+import parser.IncrementalParser;
+import parser.SyntaxError;
+import tests.helpers.TokenAssertions;
+import tests.helpers.TreeAssertions;
+
+public class IncrementalParserTest {
+
+  private static final String[] insertions = { "x", "\n", " ", "1", "{", "}", "int y ", "" };
+
+  @ParameterizedTest
+  @MethodSource("sampleFiles")
+  void testEditsMatchFullParse(Path file) throws Exception {
+    IncrementalLexer lexer = new IncrementalLexer(new MappedSourceReader(file.toString()));
+    IncrementalParser parser = new IncrementalParser(lexer);
+    parse(parser);
+    int step = Math.max(1, lexer.length() / 25);
+    int edit = 0;
+
+    for (int offset = 0; offset < lexer.length(); offset += step, edit++) {
+      String inserted = insertions[edit % insertions.length];
+      int removed = Math.min(edit % 3, lexer.length() - offset);
+
+      Object actual = edit(parser, offset, removed, inserted);
+      assertSameParse(fullParse(lexer), actual);
+    }
+  }
+
+  @Test
+  void testEditInFunctionKeepsRestOfTree() throws Exception {
+    String source = "program {\n int f(int a) { return a + 1 }\n int g(int b) { return b * 2 }\n"
+        + " int x\n x = f(g(3))\n}\n";
+    IncrementalLexer lexer = lexer(source);
+    IncrementalParser parser = new IncrementalParser(lexer);
+    AST t = parser.execute();
+
+    AST block = t.getKid(1), f = block.getKid(1), g = block.getKid(2), assign = block.getKid(4);
+    AST fBody = f.getKid(4), oldReturn = fBody.getKid(1);
+    f.setDecoration(g);
+    assign.setDecoration(f);
+
+    assertSame(t, parser.edit(source.indexOf("a + 1"), 5, "a - 7"));
+    assertSameParse(fullParse(lexer), parser.tree());
+
+    // only f's body was parsed again
+    assertSame(block, t.getKid(1));
+    assertSame(f, block.getKid(1));
+    assertSame(g, block.getKid(2));
+    assertSame(assign, block.getKid(4));
+    assertSame(fBody, f.getKid(4));
+    assertNotSame(oldReturn, fBody.getKid(1));
+    assertSame(g, f.getDecoration());
+    assertSame(f, assign.getDecoration());
+    assertEquals("{ return a - 7 }".split(" ").length, parser.reparsedCount());
+  }
+
+  @Test
+  void testEditInFunctionHeadReparsesDeclaration() throws Exception {
+    String source = "program {\n int f(int a) {\n return a\n }\n int x\n}\n";
+    IncrementalLexer lexer = lexer(source);
+    IncrementalParser parser = new IncrementalParser(lexer);
+    AST t = parser.execute();
+    AST f = t.getKid(1).getKid(1);
+
+    parser.edit(source.indexOf("a)"), 1, "count");
+    assertSameParse(fullParse(lexer), parser.tree());
+    assertSame(f, t.getKid(1).getKid(1));
+    assertEquals("count", ((IdTree) f.getKid(3).getKid(1).getKid(2)).getSymbol().toString());
+    // int f ( int count ) { return a }
+    assertEquals(10, parser.reparsedCount());
+  }
+
+  @Test
+  void testLaterRegionsMoveWithEdit() throws Exception {
+    String source = "program {\n int f() {\n return 1\n }\n int g() {\n return 2\n }\n}\n";
+    IncrementalLexer lexer = lexer(source);
+    IncrementalParser parser = new IncrementalParser(lexer);
+    AST t = parser.execute();
+    AST g = t.getKid(1).getKid(2);
+
+    // f grows by a few tokens, then g is edited at its new place
+    parser.edit(source.indexOf("return 1"), 0, "int y y = 3 ");
+    String edited = new String(lexer.buffer(), 0, lexer.length());
+    parser.edit(edited.indexOf("return 2"), 8, "return 5");
+
+    assertSameParse(fullParse(lexer), parser.tree());
+    assertSame(g, t.getKid(1).getKid(2));
+    assertEquals("{ return 5 }".split(" ").length, parser.reparsedCount());
+  }
+
+  @Test
+  void testLargeProgramReparsesOnlyEditedFunction() throws Exception {
+    StringBuilder source = new StringBuilder("program {\n");
+
+    for (int i = 0; i < 500; i++) {
+      source.append(" int f").append(i).append("(int a) { int b b = a + ").append(i).append(" return b }\n");
+    }
+    source.append("}\n");
+
+    IncrementalLexer lexer = lexer(source.toString());
+    IncrementalParser parser = new IncrementalParser(lexer);
+    parser.execute();
+
+    parser.edit(source.indexOf("a + 250 "), 7, "a * 250");
+    assertSameParse(fullParse(lexer), parser.tree());
+    assertTrue(parser.reparsedCount() < 20, "reparsed " + parser.reparsedCount());
+  }
+
+  @Test
+  void testSyntaxErrorThenFix() throws Exception {
+    String source = "program {\n int f() { return 1 }\n}\n";
+    IncrementalLexer lexer = lexer(source);
+    IncrementalParser parser = new IncrementalParser(lexer);
+    parser.execute();
+
+    int offset = source.indexOf("1 }");
+    assertThrows(SyntaxError.class, () -> parser.edit(offset, 1, "+"));
+    assertNull(parser.tree());
+
+    parser.edit(offset, 1, "2");
+    assertSameParse(fullParse(lexer), parser.tree());
+    assertEquals(lexer.tokens().size(), parser.reparsedCount());
+  }
+
+  /**
+   * the tree or syntax error a new parser gets from the source lexer holds
+   */
+  @SuppressWarnings("try")
+  private static Object fullParse(IncrementalLexer lexer) throws Exception {
+    char[] buffer = Arrays.copyOf(lexer.buffer(), lexer.length());
+
+    try (CompilationContext context = new CompilationContext();
+        CompilationContext.Current c = context.makeCurrent()) {
+      return parse(new IncrementalParser(new IncrementalLexer(buffer, buffer.length)));
+    }
+  }
+
+  private static Object parse(IncrementalParser parser) throws Exception {
+    try {
+      return parser.execute();
+    } catch (SyntaxError e) {
+      return e;
+    }
+  }
+
+  private static Object edit(IncrementalParser parser, int offset, int removed, String inserted)
+      throws Exception {
+    try {
+      return parser.edit(offset, removed, inserted);
+    } catch (SyntaxError e) {
+      return e;
+    }
+  }
+
+  /**
+   * the same trees but for the node numbers, or the same syntax errors
+   */
+  private static void assertSameParse(Object expected, Object actual) {
+    if (expected instanceof AST && actual instanceof AST) {
+      assertEquals(withoutNumbers(TreeAssertions.describe((AST) expected)),
+          withoutNumbers(TreeAssertions.describe((AST) actual)));
+    } else {
+      assertEquals(String.valueOf(expected), String.valueOf(actual));
+    }
+  }
+
+  private static String withoutNumbers(String description) {
+    return description.replaceAll("(?m)^(\\s*)\\d+ ", "$1");
+  }
+
+  private static IncrementalLexer lexer(String source) {
+    return new IncrementalLexer(source.toCharArray(), source.length());
+  }
+
+  static Stream<Path> sampleFiles() throws Exception {
+    return TokenAssertions.sampleFiles();
+  }
+}
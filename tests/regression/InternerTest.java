@@ -0,0 +1,190 @@
+package tests.regression;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import compiler.CompilationContext;
+import lexer.Interner;
+import lexer.LexemeArena;
+import lexer.Symbol;
+import lexer.TokenType;
+import lexer.Tokens;
+
+public class InternerTest {
+
+  private static final int THREADS = 8, LEXEMES = 20_000;
+
+  @Test
+  void testConcurrentInterningIsCanonical() throws Exception {
+    Interner interner = new Interner();
+    int pinned = interner.size();
+    ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<Symbol[]>> results = new ArrayList<>();
+
+    try {
+      for (int t = 0; t < THREADS; t++) {
+        int thread = t;
+
+        results.add(pool.submit(() -> {
+          Symbol[] symbols = new Symbol[LEXEMES];
+          start.await();
+
+          // every thread interns every lexeme, half of them from slices,
+          // each in a different order
+          for (int k = 0; k < LEXEMES; k++) {
+            int i = (k * 7919 + thread * 104729) % LEXEMES;
+            String lexeme = "x" + i;
+
+            if ((i + thread) % 2 == 0) {
+              char[] buffer = ("  " + lexeme + "  ").toCharArray();
+              symbols[i] = interner.symbol(buffer, 2, 2 + lexeme.length(), Tokens.Identifier);
+            } else {
+              symbols[i] = interner.symbol(lexeme, Tokens.Identifier);
+            }
+            // byId has a symbol as soon as any thread can find it
+            if (interner.byId(symbols[i].getId()) != symbols[i]) {
+              throw new AssertionError("byId(" + symbols[i].getId() + ") is not " + lexeme);
+            }
+          }
+          return symbols;
+        }));
+      }
+      start.countDown();
+
+      Symbol[] first = results.get(0).get();
+      for (Future<Symbol[]> result : results) {
+        Symbol[] symbols = result.get();
+
+        for (int i = 0; i < LEXEMES; i++) {
+          assertSame(first[i], symbols[i], "x" + i);
+        }
+      }
+
+      // ids are dense, unique and map back to their symbols
+      assertEquals(pinned + LEXEMES, interner.size());
+      Set<Integer> ids = new HashSet<>();
+      for (Symbol symbol : first) {
+        assertSame(symbol, interner.byId(symbol.getId()));
+        ids.add(symbol.getId());
+      }
+      assertEquals(LEXEMES, ids.size());
+      for (int id : ids) {
+        assertEquals(true, id >= pinned && id < pinned + LEXEMES);
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  void testPinnedAndBogusSymbols() {
+    Interner interner = new Interner();
+    char[] buffer = "<=>=".toCharArray();
+
+    assertSame(TokenType.tokens.get(Tokens.LessEqual), interner.symbol(buffer, 0, 2, Tokens.BogusToken));
+    assertSame(TokenType.tokens.get(Tokens.While), interner.symbol("while", Tokens.Identifier));
+    assertSame(TokenType.tokens.get(Tokens.While), interner.byId(TokenType.tokens.get(Tokens.While).getId()));
+    assertNull(interner.symbol(buffer, 1, 3, Tokens.BogusToken));
+    assertNull(interner.symbol("=>", Tokens.BogusToken));
+    assertSame(interner.symbol((String) null, Tokens.EOF), new Interner().symbol((String) null, Tokens.EOF));
+  }
+
+  @Test
+  void testLiveSymbolStats() {
+    Interner interner = new Interner();
+    long empty = interner.memoryUsage();
+
+    assertEquals(0, interner.ownCount());
+    assertEquals(Interner.pinnedCount(), interner.size());
+    interner.symbol("while", Tokens.Identifier);
+    assertEquals(0, interner.ownCount());
+
+    for (int i = 0; i < 5000; i++) {
+      interner.symbol("@string literal " + i + "@", Tokens.StringLit);
+    }
+    assertEquals(5000, interner.ownCount());
+    assertTrue(interner.memoryUsage() > empty + 5000 * 20);
+
+    Interner.Stats stats = Interner.stats();
+    assertTrue(stats.interners >= 1);
+    assertTrue(stats.symbols >= 5000);
+    assertEquals(Interner.pinnedCount(), stats.pinned);
+  }
+
+  @Test
+  void testNewGeneration() {
+    CompilationContext context = new CompilationContext();
+    Interner first = context.symbols();
+    Symbol x = first.symbol("x", Tokens.Identifier);
+    Symbol plus = first.symbol("+", Tokens.BogusToken);
+
+    assertSame(first, context.newGeneration());
+    Interner second = context.symbols();
+
+    assertNotSame(first, second);
+    assertEquals(0, second.ownCount());
+    assertNull(second.symbol("x", Tokens.BogusToken));
+    assertNotSame(x, second.symbol("x", Tokens.Identifier));
+    // the pinned symbols carry over
+    assertSame(plus, second.symbol("+", Tokens.BogusToken));
+    // the old generation is left as it was
+    assertSame(x, first.symbol("x", Tokens.Identifier));
+  }
+
+  @Test
+  void testArenaLexemes() {
+    LexemeArena arena = new LexemeArena(64);
+    Interner interner = new Interner(arena);
+    char[] buffer = "  counter @a string@ \u00e9t\u00e9 \u03c0  ".toCharArray();
+
+    Symbol counter = interner.symbol(buffer, 2, 9, Tokens.Identifier);
+    Symbol string = interner.symbol("@a string@", Tokens.StringLit);
+    Symbol latin = interner.symbol(buffer, 21, 24, Tokens.Identifier);
+    Symbol greek = interner.symbol(buffer, 25, 26, Tokens.Identifier);
+
+    assertSame(counter, interner.symbol("counter", Tokens.Identifier));
+    assertSame(string, interner.symbol(buffer, 10, 20, Tokens.StringLit));
+    assertSame(latin, interner.symbol("\u00e9t\u00e9", Tokens.Identifier));
+    assertSame(greek, interner.symbol("\u03c0", Tokens.Identifier));
+    assertNull(interner.symbol("count", Tokens.BogusToken));
+    assertEquals("counter", counter.toString());
+    assertEquals("a string", string.toString());
+    assertTrue(string.isStringLit());
+    assertEquals("\u00e9t\u00e9", latin.toString());
+
+    // lexemes go into the arena one byte per char, starting new slabs as
+    // needed
+    for (int i = 0; i < 100; i++) {
+      interner.symbol("identifier" + i, Tokens.Identifier);
+    }
+    assertTrue(arena.slabCount() > 1);
+    assertEquals(7 + 10 + 3 + 10 * 11 + 90 * 12, arena.used());
+    assertEquals(arena.bytes(), interner.offHeapUsage());
+
+    // with the foreign memory module the slabs are freed by close()
+    assertEquals(ModuleLayer.boot().findModule("jdk.incubator.foreign").isPresent(), arena.freesOnClose());
+    arena.close();
+    arena.close();
+    assertTrue(arena.isClosed());
+    assertThrows(IllegalStateException.class, () -> counter.toString());
+    assertThrows(IllegalStateException.class, () -> interner.symbol("another", Tokens.Identifier));
+    // a lexeme that was never in the arena can still be read
+    assertEquals("\u03c0", greek.toString());
+  }
+}
@@ -0,0 +1,91 @@
+package tests.regression;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import lexer.Keywords;
+import lexer.Tokens;
+
+public class KeywordsTest {
+
+  @Test
+  void testEveryKeyword() throws Exception {
+    Map<String, Tokens> keywords = keywords();
+
+    for (Map.Entry<String, Tokens> keyword : keywords.entrySet()) {
+      assertSame(keyword.getValue(), lookup(keyword.getKey()), keyword.getKey());
+      // in the middle of a buffer, as a lexer sees it
+      char[] buffer = ("x " + keyword.getKey() + "(").toCharArray();
+      assertSame(keyword.getValue(), Keywords.lookup(buffer, 2, buffer.length - 1), keyword.getKey());
+    }
+    assertEquals(13, keywords.size());
+  }
+
+  @Test
+  void testSameHashAndLength() throws Exception {
+    // the hash only looks at the first, second and last chars and the
+    // length, so changing any other char keeps the slot
+    for (String keyword : keywords().keySet()) {
+      for (int i = 2; i < keyword.length() - 1; i++) {
+        char[] word = keyword.toCharArray();
+        word[i] = word[i] == 'z' ? 'y' : 'z';
+        assertNull(Keywords.lookup(word, 0, word.length), new String(word));
+      }
+    }
+  }
+
+  @Test
+  void testNotKeywords() throws Exception {
+    Map<String, Tokens> keywords = keywords();
+
+    for (String word : new String[] { "x", "i", "in", "iff", "If", "IF", "whil", "whiles", "programs",
+        "rogram", "then_", "int1", "Int", "booleans", "functio", "selects" }) {
+      assertNull(lookup(word), word);
+    }
+
+    // every short word lands in some slot, often a taken one of the same
+    // length; only the keywords themselves are found
+    char[] word = new char[4];
+    for (int length = 1; length <= word.length; length++) {
+      int count = (int) Math.pow(26, length);
+
+      for (int n = 0; n < count; n++) {
+        for (int k = 0, rest = n; k < length; k++, rest /= 26) {
+          word[k] = (char) ('a' + rest % 26);
+        }
+        String lexeme = new String(word, 0, length);
+        assertSame(keywords.get(lexeme), Keywords.lookup(word, 0, length), lexeme);
+      }
+    }
+  }
+
+  private static Tokens lookup(String word) {
+    return Keywords.lookup(word.toCharArray(), 0, word.length());
+  }
+
+  /**
+   * @return the reserved words of the language, read from the token list
+   *         Keywords is generated from
+   */
+  private static Map<String, Tokens> keywords() throws IOException {
+    Map<String, Tokens> keywords = new HashMap<>();
+
+    for (String line : Files.readAllLines(Path.of("lexer/setup/tokens.txt"))) {
+      String[] entry = line.trim().split("\\s+");
+
+      if (entry.length == 2 && entry[1].matches("[a-z]+")) {
+        keywords.put(entry[1], Tokens.valueOf(entry[0]));
+      }
+    }
+    return keywords;
+  }
+}
@@ -0,0 +1,213 @@
+package tests.regression;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import ast.AST;
+import ast.FunctionDeclTree;
+import ast.IdTree;
+import compiler.CompilationContext;
+import lexer.DfaLexer;
+import lexer.TokenBuffer;
+import lexer.readers.MappedSourceReader;
+import parser.LazyBlockTree;
+import parser.Parser;
+import tests.helpers.TokenAssertions;
+import tests.helpers.TreeAssertions;
+
+public class LazyParseTest {
+
+  private static final int THREADS = 8;
+
+  @ParameterizedTest
+  @MethodSource("sampleFiles")
+  void testLazyTreeMatchesOnceParsed(Path file) throws Exception {
+    MappedSourceReader reader = new MappedSourceReader(file.toString());
+    AST expected = parse(reader, false), actual = parse(reader, true);
+
+    if (expected != null && actual != null) {
+      // the body nodes are numbered when they are parsed, so only the
+      // shapes and symbols are compared, and a LazyBlockTree is a BlockTree
+      assertEquals(withoutNumbers(TreeAssertions.describe(expected)),
+          withoutNumbers(TreeAssertions.describe(actual)));
+    }
+  }
+
+  @SuppressWarnings("try")
+  @Test
+  void testBodiesAreParsedOnDemand() throws Exception {
+    StringBuilder program = new StringBuilder("program {\n");
+    for (int i = 0; i < 100; i++) {
+      program.append("int f").append(i).append("(int a) { int b int g(int c) { return c } b = g(a) return a + b }\n");
+    }
+    program.append("int x x = f3(1) }");
+
+    CompilationContext context = new CompilationContext();
+    try (CompilationContext.Current c = context.makeCurrent()) {
+      Parser parser = new Parser(TokenBuffer.lex(new DfaLexer(MappedSourceReader.fromText(program.toString()))));
+      parser.setLazyFunctionBodies(true);
+      AST t = parser.execute();
+      AST block = t.getKid(1);
+      int made = context.nodeCount();
+
+      // the signatures are there without parsing any body
+      AST f3 = block.getKid(4);
+      assertTrue(f3 instanceof FunctionDeclTree);
+      assertEquals("f3", ((IdTree) f3.getKid(2)).getSymbol().toString());
+      assertEquals(1, f3.getKid(3).kidCount());
+
+      LazyBlockTree body = (LazyBlockTree) f3.getKid(4);
+      assertFalse(body.isParsed());
+      assertEquals(made, context.nodeCount());
+
+      // touching the kids parses just this body; its nested function is
+      // left for later in turn
+      assertEquals(4, body.kidCount());
+      assertTrue(body.isParsed());
+      assertFalse(((LazyBlockTree) block.getKid(1).getKid(4)).isParsed());
+      LazyBlockTree nested = (LazyBlockTree) body.getKid(2).getKid(4);
+      assertFalse(nested.isParsed());
+      assertEquals(1, nested.kidCount());
+      assertTrue(context.nodeCount() > made);
+    }
+  }
+
+  @SuppressWarnings("try")
+  @Test
+  void testBodiesParsedOnSeveralThreads() throws Exception {
+    // bodies big enough that the threads are often parsing at once
+    String statements = " b = b + a * 2 + g(b)".repeat(50);
+    StringBuilder program = new StringBuilder("program {\n");
+    for (int i = 0; i < 200; i++) {
+      program.append("int f").append(i).append("(int a) { int b int g(int c) { return c + 1 } b = g(a)")
+          .append(statements).append(" return a + b * 2 }\n");
+    }
+    program.append("int x x = f3(1) }");
+
+    CompilationContext context = new CompilationContext();
+    AST t;
+    try (CompilationContext.Current c = context.makeCurrent()) {
+      Parser parser = new Parser(TokenBuffer.lex(new DfaLexer(MappedSourceReader.fromText(program.toString()))));
+      parser.setLazyFunctionBodies(true);
+      parser.setSharedLeaves(true);
+      t = parser.execute();
+    }
+
+    // every thread walks the whole tree, starting at a different function,
+    // so the bodies are parsed by whichever thread gets to them first
+    AST block = t.getKid(1);
+    ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> walks = new ArrayList<>();
+    try {
+      for (int k = 0; k < THREADS; k++) {
+        int first = k * 25;
+
+        walks.add(pool.submit(() -> {
+          start.await();
+          for (int i = 0; i < 200; i++) {
+            TreeAssertions.describe(block.getKid(1 + (first + i) % 200));
+          }
+          return null;
+        }));
+      }
+      start.countDown();
+      for (Future<?> walk : walks) {
+        walk.get();
+      }
+    } finally {
+      pool.shutdown();
+    }
+
+    // each node has a number of its own, and the count covers them all
+    IdentityHashMap<AST, Boolean> nodes = new IdentityHashMap<>();
+    collect(t, nodes);
+    Set<Integer> numbers = new HashSet<>();
+    for (AST node : nodes.keySet()) {
+      assertTrue(numbers.add(node.getNodeNum()), "node " + node.getNodeNum() + " twice");
+    }
+    assertEquals(context.nodeCount(), numbers.size());
+  }
+
+  @Test
+  void testSyntaxErrorShowsWhenParsed() throws Exception {
+    Parser parser = new Parser(TokenBuffer.lex(new DfaLexer(
+        MappedSourceReader.fromText("program { int f(int a) { return a + } x = 1 }"))));
+    parser.setLazyFunctionBodies(true);
+    LazyBlockTree body = (LazyBlockTree) parser.execute().getKid(1).getKid(1).getKid(4);
+
+    IllegalStateException first = assertThrows(IllegalStateException.class, () -> body.kidCount());
+    // the body stays unparsed and every later look at it fails the same way
+    assertFalse(body.isParsed());
+    assertSame(first, assertThrows(IllegalStateException.class, () -> body.getKid(1)));
+    assertSame(first, assertThrows(IllegalStateException.class, () -> body.getKids()));
+  }
+
+  @SuppressWarnings("try")
+  @Test
+  void testBodyParsedWithCreatorsOptions() throws Exception {
+    CompilationContext context = new CompilationContext();
+    try (CompilationContext.Current c = context.makeCurrent()) {
+      Parser parser = new Parser(TokenBuffer.lex(new DfaLexer(
+          MappedSourceReader.fromText("program { int f(int a) { int b b = a + 1 return b } int x x = 1 }"))));
+      parser.setLazyFunctionBodies(true);
+      parser.setSharedLeaves(true);
+      AST block = parser.execute().getKid(1);
+      AST body = block.getKid(1).getKid(4);
+
+      // the body's declaration and literal come from the same pool
+      assertSame(context.leaves().intType(), body.getKid(1).getKid(1));
+      assertSame(block.getKid(2).getKid(1), body.getKid(1).getKid(1));
+      assertSame(block.getKid(3).getKid(2), body.getKid(2).getKid(2).getKid(2));
+    }
+  }
+
+  private static void collect(AST t, IdentityHashMap<AST, Boolean> nodes) {
+    if (nodes.put(t, true) == null) {
+      for (int i = 1; i <= t.kidCount(); i++) {
+        collect(t.getKid(i), nodes);
+      }
+    }
+  }
+
+  private static AST parse(MappedSourceReader reader, boolean lazy) throws Exception {
+    AST.NodeCount = 0;
+    Parser parser = new Parser(TokenBuffer.lex(new DfaLexer(reader)));
+    parser.setLazyFunctionBodies(lazy);
+    try {
+      AST t = parser.execute();
+      // parse every body now, so a syntax error in one is caught here
+      TreeAssertions.describe(t);
+      return t;
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  private static String withoutNumbers(String description) {
+    return description.replaceAll("(?m)^(\\s*)\\d+ ", "$1").replace("LazyBlockTree", "BlockTree");
+  }
+
+  static Stream<Path> sampleFiles() throws Exception {
+    return TokenAssertions.sampleFiles();
+  }
+}
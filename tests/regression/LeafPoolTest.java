@@ -0,0 +1,209 @@
+package tests.regression;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import ast.AST;
+import ast.FlatAST;
+import ast.IntTypeTree;
+import codegen.Codegen;
+import compiler.CompilationContext;
+import constrain.Constrainer;
+import lexer.DfaLexer;
+import lexer.TokenBuffer;
+import lexer.readers.MappedSourceReader;
+import parser.Parser;
+import parser.SyntaxError;
+import tests.helpers.TokenAssertions;
+import tests.helpers.TreeAssertions;
+import visitor.CountVisitor;
+import visitor.DrawOffsetVisitor;
+import visitor.OffsetVisitor;
+
+public class LeafPoolTest {
+
+  @TempDir
+  Path directory;
+
+  @ParameterizedTest
+  @MethodSource("sampleFiles")
+  void testSameTreesAsUnshared(Path file) throws Exception {
+    assertEquals(withoutNumbers(parse(file.toString(), false, false)),
+        withoutNumbers(parse(file.toString(), true, false)));
+    assertEquals(withoutNumbers(parse(file.toString(), false, true)),
+        withoutNumbers(parse(file.toString(), true, true)));
+  }
+
+  @SuppressWarnings("try")
+  @Test
+  void testTypesAndLiteralsShared() throws Exception {
+    try (CompilationContext context = new CompilationContext();
+        CompilationContext.Current c = context.makeCurrent()) {
+      AST block = parser("program { int a int b boolean c int f(int x, int y) { return x } a = 1 + 1 b = 2 + 0x00ff00 * 0x00ff00 }")
+          .rProgram().getKid(1);
+      AST intType = block.getKid(1).getKid(1);
+
+      assertTrue(intType instanceof IntTypeTree);
+      assertSame(intType, block.getKid(2).getKid(1));
+      assertSame(intType, block.getKid(4).getKid(1));
+      assertSame(intType, block.getKid(4).getKid(3).getKid(2).getKid(1));
+      assertNotSame(intType, block.getKid(3).getKid(1));
+      assertSame(intType, context.leaves().intType());
+
+      AST one = block.getKid(5).getKid(2);
+      assertSame(one.getKid(1), one.getKid(2));
+      AST hex = block.getKid(6).getKid(2).getKid(2);
+      assertSame(hex.getKid(1), hex.getKid(2));
+      assertNotSame(block.getKid(6).getKid(2).getKid(1), one.getKid(1));
+      assertEquals(5, context.leaves().size());
+    }
+  }
+
+  @Test
+  void testFewerNodesForDeclarations() throws Exception {
+    StringBuilder program = new StringBuilder("program {\n");
+    for (int i = 0; i < 1000; i++) {
+      program.append(" int x").append(i).append('\n');
+    }
+    for (int i = 0; i < 1000; i++) {
+      program.append(" x").append(i).append(" = 1\n");
+    }
+    program.append("}\n");
+
+    int unshared = nodeCount(program.toString(), false), shared = nodeCount(program.toString(), true);
+
+    // a type node per declaration and a literal per assignment saved
+    assertEquals(unshared - 2000 + 2, shared);
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = { "sample_files/fib.x", "sample_files/factorial.x", "sample_files/codegen.x" })
+  void testSameCode(String program) throws Exception {
+    assertEquals(compile(program, false), compile(program, true));
+  }
+
+  @SuppressWarnings("try")
+  @Test
+  void testConstrainedSharedTree() throws Exception {
+    try (CompilationContext context = new CompilationContext();
+        CompilationContext.Current c = context.makeCurrent()) {
+      Parser parser = parser("program { int a int f(int x) { return x + 1 } a = f(1) + 1 }");
+      AST t = parser.execute();
+      new Constrainer(t, parser).execute();
+
+      // the intrinsic int tree holds the shared type node, and the
+      // declarations are typed by it
+      AST intTree = context.intrinsics().intTree;
+      assertSame(context.leaves().intType(), intTree.getKid(1));
+      assertSame(intTree, t.getKid(1).getKid(1).getKid(2).getDecoration());
+
+      // a flat copy has a node for every place a shared node appears, each
+      // with its decoration
+      FlatAST flat = FlatAST.fromTree(t, context.symbols());
+      AST copy = flat.toTree();
+      TreeAssertions.assertSameTree(t, copy);
+      assertSameDecorations(t, copy);
+
+      // the offset visitors lay out and draw every place as well
+      OffsetVisitor offsets = new OffsetVisitor();
+      CountVisitor counter = new CountVisitor();
+      t.accept(offsets);
+      t.accept(counter);
+      assertEquals(places(t), offsets.getOffset().size());
+      assertEquals(places(t), IntStream.of(counter.getCount()).sum());
+
+      DrawOffsetVisitor drawer = new DrawOffsetVisitor(counter.getCount(), offsets.getOffset(), offsets.getMaxOffset());
+      t.accept(drawer);
+      assertNotNull(drawer.getImage());
+    }
+  }
+
+  /**
+   * @return the number of places in t, a shared node counted at each one
+   */
+  private static int places(AST t) {
+    int count = 1;
+
+    for (int i = 1; i <= t.kidCount(); i++) {
+      count += places(t.getKid(i));
+    }
+    return count;
+  }
+
+  private static void assertSameDecorations(AST expected, AST actual) {
+    AST decoration = expected.getDecoration();
+
+    assertEquals(decoration == null ? -1 : decoration.getNodeNum(),
+        actual.getDecoration() == null ? -1 : actual.getDecoration().getNodeNum());
+    for (int i = 1; i <= expected.kidCount(); i++) {
+      assertSameDecorations(expected.getKid(i), actual.getKid(i));
+    }
+  }
+
+  @SuppressWarnings("try")
+  private String compile(String program, boolean shared) throws Exception {
+    try (CompilationContext context = new CompilationContext();
+        CompilationContext.Current c = context.makeCurrent()) {
+      Parser parser = new Parser(program);
+      parser.setSharedLeaves(shared);
+      AST t = parser.execute();
+
+      new Constrainer(t, parser).execute();
+      Path out = directory.resolve(shared ? "shared.codes" : "unshared.codes");
+      new Codegen(t).execute().printCodes(out.toString());
+      return Files.readString(out);
+    }
+  }
+
+  @SuppressWarnings("try")
+  private static int nodeCount(String program, boolean shared) throws Exception {
+    try (CompilationContext context = new CompilationContext();
+        CompilationContext.Current c = context.makeCurrent()) {
+      Parser parser = parser(program);
+      parser.setSharedLeaves(shared);
+      parser.rProgram();
+      return context.nodeCount();
+    }
+  }
+
+  @SuppressWarnings("try")
+  private static String parse(String file, boolean shared, boolean iterative) throws Exception {
+    try (CompilationContext context = new CompilationContext();
+        CompilationContext.Current c = context.makeCurrent()) {
+      Parser parser = new Parser(TokenBuffer.lex(new DfaLexer(new MappedSourceReader(file))));
+      parser.setSharedLeaves(shared);
+      parser.setIterativeExpressions(iterative);
+      return TreeAssertions.describe(parser.rProgram());
+    } catch (SyntaxError e) {
+      return e.toString();
+    }
+  }
+
+  private static Parser parser(String program) throws Exception {
+    Parser parser = new Parser(TokenBuffer.lex(new DfaLexer(MappedSourceReader.fromText(program))));
+    parser.setSharedLeaves(true);
+    return parser;
+  }
+
+  private static String withoutNumbers(String description) {
+    return description.replaceAll("(?m)^(\\s*)\\d+ ", "$1");
+  }
+
+  static Stream<Path> sampleFiles() throws Exception {
+    return TokenAssertions.sampleFiles();
+  }
+}
@@ -0,0 +1,116 @@
+package tests.regression;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.IdentityHashMap;
+
+import org.junit.jupiter.api.Test;
+
+import ast.AST;
+import ast.IntNodeMap;
+import ast.NodeMap;
+import compiler.CompilationContext;
+import parser.Parser;
+import visitor.CountVisitor;
+import visitor.OffsetVisitor;
+
+public class NodeMapTest {
+
+  @Test
+  void testMaps() throws Exception {
+    AST t = parse("sample_files/fib.x");
+    IntNodeMap ints = new IntNodeMap(4);
+    NodeMap<String> names = new NodeMap<>(4);
+    AST kid = t.getKid(1).getKid(1);
+
+    assertFalse(ints.contains(kid));
+    assertEquals(7, ints.getOrDefault(kid, 7));
+    ints.put(kid, -3);
+    ints.put(t, 0);
+    assertTrue(ints.contains(t));
+    assertEquals(-3, ints.get(kid));
+    assertEquals(2, ints.size());
+    ints.remove(kid);
+    assertFalse(ints.contains(kid));
+
+    assertNull(names.put(kid, "kid"));
+    assertEquals("kid", names.put(kid, "decl"));
+    assertEquals("decl", names.get(kid));
+    assertNull(names.get(t));
+    assertEquals(1, names.size());
+    assertEquals("decl", names.remove(kid));
+    assertEquals(0, names.size());
+  }
+
+  @Test
+  void testVisitorsRecordEveryNode() throws Exception {
+    AST t = parse("sample_files/factorial.x");
+    CountVisitor counter = new CountVisitor();
+    OffsetVisitor offsets = new OffsetVisitor();
+
+    t.accept(counter);
+    t.accept(offsets);
+
+    IdentityHashMap<AST, Integer> depths = new IdentityHashMap<>();
+    collect(t, 0, depths);
+
+    int[] count = counter.getCount();
+    for (AST node : depths.keySet()) {
+      count[depths.get(node)]--;
+    }
+    assertArrayEquals(new int[count.length], count);
+    assertEquals(depths.size(), offsets.getOffset().size());
+  }
+
+  @SuppressWarnings("try")
+  @Test
+  void testVisitorsGrowPastHundredLevels() {
+    try (CompilationContext.Current c = new CompilationContext().makeCurrent()) {
+      AST t = new ast.BlockTree();
+      for (int i = 0; i < 250; i++) {
+        t = new ast.BlockTree().addKid(t);
+      }
+      CountVisitor counter = new CountVisitor();
+      OffsetVisitor offsets = new OffsetVisitor();
+
+      t.accept(counter);
+      t.accept(offsets);
+
+      assertEquals(251, counter.getCount().length);
+      assertEquals(251, offsets.getOffset().size());
+    }
+  }
+
+  @SuppressWarnings("try")
+  @Test
+  void testGrowsPastExpectedSize() {
+    try (CompilationContext.Current c = new CompilationContext().makeCurrent()) {
+      NodeMap<AST> map = new NodeMap<>(0);
+      AST last = null;
+
+      for (int i = 0; i < 1000; i++) {
+        last = new ast.BlockTree();
+        map.put(last, last);
+      }
+      assertSame(last, map.get(last));
+      assertEquals(1000, map.size());
+    }
+  }
+
+  private static void collect(AST t, int depth, IdentityHashMap<AST, Integer> depths) {
+    depths.put(t, depth);
+    for (int i = 1; i <= t.kidCount(); i++) {
+      collect(t.getKid(i), depth + 1, depths);
+    }
+  }
+
+  private static AST parse(String file) throws Exception {
+    AST.NodeCount = 0;
+    return new Parser(file).execute();
+  }
+}
@@ -0,0 +1,77 @@
+package tests.regression;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import lexer.Lexer;
+import lexer.ParallelLexer;
+import lexer.SliceLexer;
+import lexer.TokenBuffer;
+import lexer.readers.MappedSourceReader;
+import tests.helpers.TokenAssertions;
+
+public class ParallelLexerTest {
+
+  @ParameterizedTest
+  @MethodSource("sampleFiles")
+  void testParallelLexerMatchesLexer(Path file) throws Exception {
+    MappedSourceReader reader = new MappedSourceReader(file.toString());
+
+    for (int chunks = 1; chunks <= 16; chunks *= 2) {
+      TokenBuffer tokens = new ParallelLexer(reader).lex(chunks);
+
+      TokenAssertions.assertSameTokens(new Lexer(file.toString()), tokens.cursor());
+    }
+  }
+
+  @Test
+  void testChunksSplitInsideStringsAndComments() {
+    StringBuilder source = new StringBuilder("program {\n");
+
+    for (int i = 0; i < 500; i++) {
+      source.append("  string s").append(i).append(" = @first\nsecond // not a comment\nthird@\n");
+      source.append("  // a comment with an @ in it\n");
+      source.append("  int x").append(i).append(" = 0x00ff0").append(i % 10).append(" // trailing\n");
+    }
+    source.append("}\n");
+
+    char[] buffer = source.toString().toCharArray();
+    TokenBuffer expected = TokenBuffer.lex(new SliceLexer(buffer, buffer.length));
+    ForkJoinPool pool = new ForkJoinPool(4);
+
+    try {
+      for (int chunks : new int[] { 2, 3, 7, 64, 1000 }) {
+        TokenBuffer actual = new ParallelLexer(buffer, buffer.length, pool).lex(chunks);
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+          assertEquals(expected.start(i), actual.start(i), "start of token " + i);
+        }
+        TokenAssertions.assertSameTokens(expected.cursor(), actual.cursor());
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  void testErrorEndsStream() {
+    String source = "program {\n int x\n}\n#\nint y\nint z\n";
+    char[] buffer = source.toCharArray();
+    TokenBuffer expected = TokenBuffer.lex(new SliceLexer(buffer, buffer.length));
+
+    TokenAssertions.assertSameTokens(expected.cursor(),
+        new ParallelLexer(buffer, buffer.length, ForkJoinPool.commonPool()).lex(6).cursor());
+  }
+
+  static Stream<Path> sampleFiles() throws Exception {
+    return TokenAssertions.sampleFiles();
+  }
+}
@@ -0,0 +1,119 @@
+package tests.regression;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import ast.AST;
+import compiler.CompilationContext;
+import lexer.DfaLexer;
+import lexer.TokenBuffer;
+import lexer.readers.MappedSourceReader;
+import parser.ParallelParser;
+import parser.Parser;
+import tests.helpers.TokenAssertions;
+import tests.helpers.TreeAssertions;
+
+public class ParallelParserTest {
+
+  private static ForkJoinPool pool;
+
+  @BeforeAll
+  static void startPool() {
+    pool = new ForkJoinPool(4);
+  }
+
+  @AfterAll
+  static void stopPool() {
+    pool.shutdown();
+  }
+
+  @ParameterizedTest
+  @MethodSource("sampleFiles")
+  void testSampleFilesMatchSequentialParser(Path file) throws Exception {
+    assertSameParse(new MappedSourceReader(file.toString()));
+  }
+
+  @SuppressWarnings("try")
+  @Test
+  void testManyFunctions() throws Exception {
+    StringBuilder program = new StringBuilder("program { int x\n");
+
+    for (int i = 0; i < 300; i++) {
+      program.append("int f").append(i).append("(int a, boolean b) { int y ")
+          .append("if (a < ").append(i).append(") then { y = f").append(i)
+          .append("(a + 1, b) } else { y = a * (a - ").append(i).append(") } ")
+          .append("while (y > 0) { y = y - 1 } return y }\n");
+    }
+    program.append("x = f7(1, x == 2) }");
+    MappedSourceReader reader = MappedSourceReader.fromText(program.toString());
+
+    assertEquals(300, ParallelParser.functionBodies(TokenBuffer.lex(new DfaLexer(reader))).size());
+    assertSameParse(reader);
+
+    // numbering carries on after the program, as it does sequentially
+    CompilationContext sequential = new CompilationContext(), parallel = new CompilationContext();
+    try (CompilationContext.Current c = sequential.makeCurrent()) {
+      new Parser(TokenBuffer.lex(new DfaLexer(reader))).execute();
+    }
+    try (CompilationContext.Current c = parallel.makeCurrent()) {
+      new ParallelParser(TokenBuffer.lex(new DfaLexer(reader)), pool).execute();
+    }
+    assertEquals(sequential.nodeCount(), parallel.nodeCount());
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {
+      "program { int f(int a) { return a + } int g() { return 1 } }",
+      "program { int f(int a) { return a } int g() { return 1 + } }",
+      "program { int f(int a) { { return a } int g() { return 1 } }",
+      "program { int f(int a) { return a } } }",
+      "program { int f(int a) { int g(int b) { return b } return g(a) } x = f(1) }",
+      "program { x = 1 { int f(int a) { return a } } }",
+      "program { int f() { select x { [1] -> { y = 2 } } } }" })
+  void testErrorsAndOddShapesMatchSequentialParser(String program) throws Exception {
+    assertSameParse(MappedSourceReader.fromText(program));
+  }
+
+  /**
+   * parse the program both ways; the trees (node numbers included) or the
+   * syntax errors must be the same
+   */
+  private static void assertSameParse(MappedSourceReader reader) throws Exception {
+    Object expected, actual;
+
+    AST.NodeCount = 0;
+    try {
+      expected = new Parser(TokenBuffer.lex(new DfaLexer(reader))).execute();
+    } catch (Exception e) {
+      expected = e;
+    }
+
+    AST.NodeCount = 0;
+    try {
+      actual = new ParallelParser(TokenBuffer.lex(new DfaLexer(reader)), pool).execute();
+    } catch (Exception e) {
+      actual = e;
+    }
+
+    if (expected instanceof AST && actual instanceof AST) {
+      TreeAssertions.assertSameTree((AST) expected, (AST) actual);
+    } else {
+      assertEquals(String.valueOf(expected), String.valueOf(actual));
+    }
+  }
+
+  static Stream<Path> sampleFiles() throws Exception {
+    return TokenAssertions.sampleFiles();
+  }
+}
@@ -0,0 +1,106 @@
+package tests.regression;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import ast.AST;
+import lexer.DfaLexer;
+import lexer.Lexer;
+import lexer.PipelinedLexer;
+import lexer.Tokens;
+import lexer.readers.MappedSourceReader;
+import parser.Parser;
+import parser.SyntaxError;
+import tests.helpers.TokenAssertions;
+import tests.helpers.TreeAssertions;
+
+public class PipelinedLexerTest {
+
+  @ParameterizedTest
+  @MethodSource("sampleFiles")
+  void testPipelineMatchesLexer(Path file) throws Exception {
+    // a tiny ring makes producer and consumer wait on each other
+    PipelinedLexer pipeline = new PipelinedLexer(() -> new Lexer(file.toString()), 2);
+
+    TokenAssertions.assertSameTokens(new Lexer(file.toString()), pipeline);
+    assertEquals(Tokens.EOF, pipeline.nextToken().getKind());
+  }
+
+  @ParameterizedTest
+  @MethodSource("sampleFiles")
+  void testPipelinedParserMatchesParser(Path file) throws Exception {
+    AST expected = parse(new Parser(file.toString()));
+    AST actual = parse(new Parser(new PipelinedLexer(file.toString())));
+
+    if (expected == null || actual == null) {
+      assertEquals(expected, actual);
+    } else {
+      TreeAssertions.assertSameTree(expected, actual);
+    }
+  }
+
+  @Test
+  void testIllegalCharacterEndsStream() {
+    PipelinedLexer pipeline = new PipelinedLexer(new DfaLexer(MappedSourceReader.fromText("program { # }")));
+
+    assertEquals(Tokens.Program, pipeline.nextToken().getKind());
+    assertEquals(Tokens.LeftBrace, pipeline.nextToken().getKind());
+    assertEquals(Tokens.EOF, pipeline.nextToken().getKind());
+    assertTrue(pipeline.hadError());
+  }
+
+  @Test
+  void testLexerFailureIsRethrown() {
+    PipelinedLexer pipeline = new PipelinedLexer(() -> {
+      throw new IOException("no such file");
+    }, 16);
+
+    RuntimeException e = assertThrows(RuntimeException.class, pipeline::nextToken);
+    assertTrue(e.getCause() instanceof IOException);
+    assertFalse(pipeline.hadError());
+
+    // a caller that tries again does not get a normal looking EOF
+    e = assertThrows(RuntimeException.class, pipeline::nextToken);
+    assertTrue(e.getCause() instanceof IOException);
+  }
+
+  @Test
+  void testParserStopsLexerOnSyntaxError() throws Exception {
+    StringBuilder source = new StringBuilder("program { int x x = }\n");
+    for (int i = 0; i < 10_000; i++) {
+      source.append("x = x + ").append(i).append('\n');
+    }
+    // a tiny ring, so the lexer is still far from EOF when the parser stops
+    PipelinedLexer pipeline = new PipelinedLexer(
+        () -> new DfaLexer(MappedSourceReader.fromText(source.toString())), 2);
+
+    assertThrows(SyntaxError.class, () -> new Parser(pipeline).execute());
+    for (int waited = 0; pipeline.isRunning() && waited < 5_000; waited += 10) {
+      Thread.sleep(10);
+    }
+    assertFalse(pipeline.isRunning());
+  }
+
+  private static AST parse(Parser parser) {
+    AST.NodeCount = 0;
+    try {
+      return parser.execute();
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  static Stream<Path> sampleFiles() throws Exception {
+    return TokenAssertions.sampleFiles();
+  }
+}
@@ -0,0 +1,164 @@
+package tests.regression;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import ast.AST;
+import ast.NodeMap;
+import compiler.CompilationContext;
+import constrain.Constrainer;
+import constrain.ScopeMap;
+import lexer.Interner;
+import lexer.Symbol;
+import lexer.Tokens;
+import parser.Parser;
+
+public class ScopeMapTest {
+
+  private final Interner interner = new Interner();
+
+  @Test
+  void testMatchesHashMapAndKeepsOldVersions() {
+    Random random = new Random(11);
+    Symbol[] symbols = new Symbol[5000];
+    for (int i = 0; i < symbols.length; i++) {
+      symbols[i] = interner.symbol("s" + i, Tokens.Identifier);
+    }
+
+    List<ScopeMap> versions = new ArrayList<>();
+    List<Map<Symbol, Object>> expected = new ArrayList<>();
+    ScopeMap map = ScopeMap.empty();
+    Map<Symbol, Object> model = new HashMap<>();
+
+    for (int step = 0; step < 20_000; step++) {
+      Symbol s = symbols[random.nextInt(symbols.length)];
+      map = map.put(s, step);
+      model.put(s, step);
+
+      if (step % 1000 == 0) {
+        versions.add(map);
+        expected.add(new HashMap<>(model));
+      }
+    }
+
+    versions.add(map);
+    expected.add(model);
+    for (int v = 0; v < versions.size(); v++) {
+      assertSameMap(expected.get(v), versions.get(v), symbols);
+    }
+  }
+
+  @Test
+  void testEmptyAndNulls() {
+    Symbol a = interner.symbol("a", Tokens.Identifier);
+    ScopeMap empty = ScopeMap.empty();
+
+    assertNull(empty.get(a));
+    assertFalse(empty.contains(a));
+    assertEquals(0, empty.size());
+    assertThrows(IllegalArgumentException.class, () -> empty.put(a, null));
+
+    ScopeMap one = empty.put(a, "a"), again = one.put(a, "b");
+    assertEquals(1, again.size());
+    assertEquals("a", one.get(a));
+    assertEquals("b", again.get(a));
+    assertNull(empty.get(a));
+  }
+
+  @SuppressWarnings("try")
+  @Test
+  void testConstrainerRecordsBlockScopes() throws Exception {
+    try (CompilationContext context = new CompilationContext();
+        CompilationContext.Current c = context.makeCurrent()) {
+      Parser parser = new Parser("sample_files/scopes.x");
+      AST t = parser.execute();
+      Constrainer constrainer = new Constrainer(t, parser);
+      constrainer.recordScopes();
+      constrainer.execute();
+
+      NodeMap<ScopeMap> scopes = constrainer.getBlockScopes();
+      AST block = t.getKid(1), f = block.getKid(3), body = f.getKid(4);
+      ScopeMap outer = scopes.get(block), inner = scopes.get(body);
+
+      assertSame(block.getKid(1), outer.get(symbol("i")));
+      assertSame(f, outer.get(symbol("f")));
+      assertSame(block.getKid(4), outer.get(symbol("m")));
+      assertTrue(outer.contains(symbol("write")));
+      assertFalse(outer.contains(symbol("k")));
+
+      // the formal i and the local j hide the outer ones; m comes later
+      assertSame(f.getKid(3).getKid(1), inner.get(symbol("i")));
+      assertSame(body.getKid(1), inner.get(symbol("j")));
+      assertSame(body.getKid(2), inner.get(symbol("k")));
+      assertSame(f, inner.get(symbol("f")));
+      assertFalse(inner.contains(symbol("m")));
+      // k is added and m is missing
+      assertEquals(outer.size(), inner.size());
+    }
+  }
+
+  @Test
+  void testSnapshotsReadConcurrently() throws Exception {
+    Symbol[] symbols = new Symbol[1000];
+    List<ScopeMap> snapshots = new ArrayList<>();
+    ScopeMap map = ScopeMap.empty();
+
+    for (int i = 0; i < symbols.length; i++) {
+      symbols[i] = interner.symbol("v" + i, Tokens.Identifier);
+      map = map.put(symbols[i], i);
+      snapshots.add(map);
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Boolean>> results = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        results.add(pool.submit(() -> {
+          for (int n = 0; n < snapshots.size(); n++) {
+            ScopeMap snapshot = snapshots.get(n);
+
+            if (snapshot.size() != n + 1 || !Integer.valueOf(n).equals(snapshot.get(symbols[n]))
+                || (n + 1 < symbols.length && snapshot.contains(symbols[n + 1]))) {
+              return false;
+            }
+          }
+          return true;
+        }));
+      }
+      for (Future<Boolean> result : results) {
+        assertTrue(result.get());
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  private static Symbol symbol(String name) {
+    return Symbol.symbol(name, Tokens.Identifier);
+  }
+
+  private static void assertSameMap(Map<Symbol, Object> expected, ScopeMap actual, Symbol[] symbols) {
+    assertEquals(expected.size(), actual.size());
+    assertEquals(expected.keySet(), new HashSet<>(actual.keys()));
+
+    for (Symbol s : symbols) {
+      assertEquals(expected.get(s), actual.get(s));
+    }
+  }
+}
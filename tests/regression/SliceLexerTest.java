@@ -0,0 +1,41 @@
+package tests.regression;
+
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import lexer.Lexer;
+import lexer.SliceLexer;
+import lexer.readers.MappedSourceReader;
+import tests.helpers.TokenAssertions;
+
+public class SliceLexerTest {
+
+  @ParameterizedTest
+  @MethodSource("sampleFiles")
+  void testSampleFiles(Path file) throws Exception {
+    TokenAssertions.assertSameTokens(new Lexer(file.toString()), new SliceLexer(file.toString()));
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {
+      "program { int i i = 012 + 0 + 0x1a2B3c }",
+      "x = @multi\nline@ y != z // comment\n w <= 0x12",
+      "a -> b >= c == d % e\r\n// trailing",
+      "0x",
+      "@unterminated",
+      "abc # def",
+      "" })
+  void testEdgeCases(String source) throws Exception {
+    TokenAssertions.assertSameTokens(
+        new Lexer(MappedSourceReader.fromText(source)),
+        new SliceLexer(MappedSourceReader.fromText(source)));
+  }
+
+  static Stream<Path> sampleFiles() throws Exception {
+    return TokenAssertions.sampleFiles();
+  }
+}
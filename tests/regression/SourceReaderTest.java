@@ -0,0 +1,83 @@
+package tests.regression;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import lexer.readers.IReader;
+import lexer.readers.LineIndex;
+import lexer.readers.MappedSourceReader;
+import lexer.readers.SourceReader;
+
+public class SourceReaderTest {
+
+  @ParameterizedTest
+  @MethodSource("sampleFiles")
+  void testMappedReaderMatchesSourceReader(Path file) throws Exception {
+    assertSameReads(new SourceReader(file.toString()), new MappedSourceReader(file.toString()));
+    assertEquals(
+        new SourceReader(file.toString()).toString(),
+        new MappedSourceReader(file.toString()).toString());
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = { "ab\r\ncd\n", "\n\n\r\nx\ry\n", "program { }", "" })
+  void testLineEndings(String source) throws Exception {
+    assertSameReads(
+        new SourceReader(new BufferedReader(new StringReader(source))),
+        MappedSourceReader.fromText(source));
+  }
+
+  @ParameterizedTest
+  @MethodSource("sampleFiles")
+  void testLineIndex(Path file) throws Exception {
+    MappedSourceReader reader = new MappedSourceReader(file.toString());
+    LineIndex lines = reader.lines();
+    char[] buffer = reader.buffer();
+    int line = 1, lineStart = 0;
+
+    for (int offset = 0; offset <= reader.length(); offset++) {
+      assertEquals(line, lines.lineOf(offset));
+      assertEquals(offset - lineStart, lines.columnOf(offset));
+
+      if (offset < reader.length() && buffer[offset] == '\n') {
+        line++;
+        lineStart = offset + 1;
+      }
+    }
+
+    BufferedReader expected = Files.newBufferedReader(file);
+    String text;
+    int k = 1;
+
+    while ((text = expected.readLine()) != null) {
+      assertEquals(text, lines.line(k++));
+    }
+    expected.close();
+  }
+
+  private void assertSameReads(IReader expected, IReader actual) {
+    char ch;
+
+    do {
+      ch = expected.read();
+
+      assertEquals(ch, actual.read());
+      assertEquals(expected.getColumn(), actual.getColumn());
+      assertEquals(expected.getLineNumber(), actual.getLineNumber());
+    } while (ch != '\0');
+  }
+
+  static Stream<Path> sampleFiles() throws Exception {
+    return Files.walk(Paths.get("sample_files")).filter(p -> p.toString().endsWith(".x"));
+  }
+}
@@ -0,0 +1,134 @@
+package tests.regression;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import constrain.Table;
+import lexer.Interner;
+import lexer.Symbol;
+import lexer.Tokens;
+
+public class TableTest {
+
+  private final Interner interner = new Interner();
+  private final Symbol a = interner.symbol("a", Tokens.Identifier), b = interner.symbol("b", Tokens.Identifier),
+      c = interner.symbol("c", Tokens.Identifier);
+
+  @Test
+  void testScopes() {
+    Table t = new Table();
+
+    t.beginScope();
+    t.put(a, "top-level a");
+    t.put(b, "top-level b");
+    t.beginScope();
+    t.put(c, "second-level c");
+    t.put(a, "second-level a");
+
+    assertEquals("second-level a", t.get(a));
+    assertEquals("top-level b", t.get(b));
+    assertEquals("second-level c", t.get(c));
+    assertEquals(Set.of(a, b, c), t.keys());
+
+    t.endScope();
+    assertEquals("top-level a", t.get(a));
+    assertNull(t.get(c));
+    assertEquals(Set.of(a, b), t.keys());
+
+    t.put(c, "top-level c");
+    assertEquals("top-level c", t.get(c));
+
+    t.endScope();
+    assertNull(t.get(a));
+    assertNull(t.get(b));
+    assertNull(t.get(c));
+  }
+
+  @Test
+  void testUndeclared() {
+    Table t = new Table(16);
+    Symbol far = null;
+
+    for (int i = 0; i < 100; i++) {
+      far = interner.symbol("far" + i, Tokens.Identifier);
+    }
+
+    // ids beyond the table are not declared either
+    assertNull(t.get(far));
+    assertFalse(t.isDeclared(a));
+
+    t.beginScope();
+    t.put(far, "far");
+    assertTrue(t.isDeclared(far));
+    assertEquals("far", t.get(far));
+    t.endScope();
+    assertFalse(t.isDeclared(far));
+  }
+
+  @Test
+  void testRedefinedInSameScope() {
+    Table t = new Table();
+
+    t.beginScope();
+    t.put(a, 1);
+    t.beginScope();
+    t.put(a, 2);
+    t.put(a, 3);
+    assertEquals(3, t.get(a));
+    t.endScope();
+    assertEquals(1, t.get(a));
+  }
+
+  @Test
+  void testMatchesStackOfMaps() {
+    Random random = new Random(7);
+    Symbol[] symbols = new Symbol[50];
+    for (int i = 0; i < symbols.length; i++) {
+      symbols[i] = interner.symbol("s" + i, Tokens.Identifier);
+    }
+
+    Table t = new Table(4);
+    Deque<Map<Symbol, Object>> scopes = new ArrayDeque<>();
+    t.beginScope();
+    scopes.push(new HashMap<>());
+
+    for (int step = 0; step < 20_000; step++) {
+      int action = random.nextInt(10);
+
+      if (action == 0 && scopes.size() < 40) {
+        t.beginScope();
+        scopes.push(new HashMap<>());
+      } else if (action == 1 && scopes.size() > 1) {
+        t.endScope();
+        scopes.pop();
+      } else {
+        Symbol s = symbols[random.nextInt(symbols.length)];
+        t.put(s, step);
+        scopes.peek().put(s, step);
+      }
+
+      Symbol s = symbols[random.nextInt(symbols.length)];
+      assertEquals(lookup(scopes, s), t.get(s));
+    }
+  }
+
+  private static Object lookup(Deque<Map<Symbol, Object>> scopes, Symbol s) {
+    for (Map<Symbol, Object> scope : scopes) {
+      if (scope.containsKey(s)) {
+        return scope.get(s);
+      }
+    }
+    return null;
+  }
+}
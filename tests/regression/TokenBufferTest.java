@@ -0,0 +1,70 @@
+package tests.regression;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import ast.AST;
+import lexer.DfaLexer;
+import lexer.Lexer;
+import lexer.TokenBuffer;
+import lexer.Tokens;
+import lexer.readers.MappedSourceReader;
+import parser.Parser;
+import tests.helpers.TokenAssertions;
+import tests.helpers.TreeAssertions;
+
+public class TokenBufferTest {
+
+  @ParameterizedTest
+  @MethodSource("sampleFiles")
+  void testCursorMatchesLexer(Path file) throws Exception {
+    TokenBuffer tokens = TokenBuffer.lex(new DfaLexer(file.toString()));
+
+    TokenAssertions.assertSameTokens(new Lexer(file.toString()), tokens.cursor());
+  }
+
+  @ParameterizedTest
+  @MethodSource("sampleFiles")
+  void testParserMatchesTokenParser(Path file) throws Exception {
+    AST expected = parse(new Parser(file.toString()));
+    AST actual = parse(new Parser(TokenBuffer.lex(new DfaLexer(file.toString()))));
+
+    if (expected == null || actual == null) {
+      assertEquals(expected, actual);
+    } else {
+      TreeAssertions.assertSameTree(expected, actual);
+    }
+  }
+
+  @Test
+  void testLookahead() {
+    TokenBuffer tokens = TokenBuffer.lex(new DfaLexer(MappedSourceReader.fromText("program { x = 1 }")));
+    TokenBuffer.Cursor cursor = tokens.cursor();
+
+    cursor.advance();
+    assertEquals(Tokens.Program, cursor.kind());
+    assertEquals(Tokens.Assign, cursor.peek(3));
+    assertEquals(Tokens.EOF, cursor.peek(6));
+    assertEquals(Tokens.EOF, cursor.peek(100));
+    assertEquals(7, tokens.size());
+  }
+
+  private static AST parse(Parser parser) {
+    AST.NodeCount = 0;
+    try {
+      return parser.execute();
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  static Stream<Path> sampleFiles() throws Exception {
+    return TokenAssertions.sampleFiles();
+  }
+}
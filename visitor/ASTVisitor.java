@@ -15,8 +15,8 @@ import ast.*;
 public abstract class ASTVisitor {
 
   public void visitKids(AST t) {
-    for (AST kid : t.getKids()) {
-      kid.accept(this);
+    for (int i = 1; i <= t.kidCount(); i++) {
+      t.getKid(i).accept(this);
     }
 
     return;
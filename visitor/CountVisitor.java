@@ -1,6 +1,7 @@
 package visitor;
 
 import ast.AST;
+import java.util.Arrays;
 
 /**
  *
@@ -13,6 +14,9 @@ public class CountVisitor extends ASTVisitor {
   private int maxDepth = 0;
 
   private void count(AST t) {
+    if (depth == nCount.length) {
+      nCount = Arrays.copyOf(nCount, depth * 2);
+    }
     nCount[depth]++;
 
     if (depth > maxDepth) {
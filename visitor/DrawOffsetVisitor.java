@@ -4,7 +4,6 @@ import ast.*;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.util.HashMap;
 
 /**
 *
@@ -26,12 +25,18 @@ public class DrawOffsetVisitor extends ASTVisitor {
   private int depth = 0;
   private BufferedImage bimg;
   private Graphics2D g2;
-  private HashMap<AST, Integer> intOffsets;
-  
-  public DrawOffsetVisitor(int [] nCount, HashMap<AST, Integer> intOffsets, int maxOffset) {
+  // by preorder index, as OffsetVisitor lays them out; a node shared by
+  // two parents is drawn at each place
+  private IntNodeMap intOffsets;
+  private int index = 0;
+  // the x of the node being drawn at each depth
+  private int [] xs;
+  
+  public DrawOffsetVisitor(int [] nCount, IntNodeMap intOffsets, int maxOffset) {
     this.nCount = nCount;
     this.intOffsets = intOffsets;
     progress = new int[ nCount.length ];
+    xs = new int[ nCount.length ];
     
     
     height = nCount.length * ( nodeh + vertSep);
@@ -47,7 +52,8 @@ public class DrawOffsetVisitor extends ASTVisitor {
     int vstep = Math.max((int) ((double) (height - nodeh) / (double) (nCount.length - 1)), 50);
     
     int y = depth * vstep;
-    int x = intOffsets.get(t)* hstep;
+    int x = intOffsets.get(index++)* hstep;
+    xs[ depth ] = x;
     
     g2.setColor( Color.black );
     g2.drawOval( x, y, nodew, nodeh );
@@ -56,16 +62,13 @@ public class DrawOffsetVisitor extends ASTVisitor {
     g2.setColor( Color.BLACK );
     g2.drawString(s, x + nodew/2 - g2.getFontMetrics().stringWidth(s)/2, y + nodeh/2 + g2.getFontMetrics().getAscent()/2 );
     
-    int startx = x + nodew / 2;
-    int starty = y + nodeh;
-    int endx;
-    int endy;
-    g2.setColor( Color.black );
-    
-    for( int i = 0; i < t.kidCount(); i++ ) {
-      endx = (intOffsets.get( t.getKid( i+1 )) * hstep) + nodew / 2;
-      endy = ( depth + 1 ) * vstep;
-      g2.drawLine( startx, starty, endx, endy );
+    // a kid's offset is only known once the walk reaches its place, so
+    // each node draws the line from its parent
+    if( depth > 0 ) {
+      int startx = xs[ depth - 1 ] + nodew / 2;
+      int starty = ( depth - 1 ) * vstep + nodeh;
+      g2.setColor( Color.black );
+      g2.drawLine( startx, starty, x + nodew / 2, y );
     }
     
     progress[ depth ]++;
@@ -1,66 +1,85 @@
 package visitor;
 
 import ast.AST;
-
-import java.util.HashMap;
+import ast.IntNodeMap;
+import java.util.Arrays;
 
 
 /**
 *
 * @author Lowell Milliken
 *  Updated by Ryan Shu
+*
+* Offsets are kept by the place a node has in a preorder walk of the tree
+* (the root is 0), not by node number, so a node shared by several parents
+* (see ast.LeafPool) gets an offset for every place it appears.
 */
 @SuppressWarnings("ALL")
 public class OffsetVisitor extends ASTVisitor {
   private int [] currOffset = new int[ 100 ];
   
-  private HashMap<AST, Integer> intOffset = new HashMap<>();
+  // offsets and subtree sizes, by preorder index
+  private IntNodeMap intOffset = new IntNodeMap();
+  private IntNodeMap sizes = new IntNodeMap();
+  private int next = 0;
   private int depth = 0;
   private int maxDepth = 0;
 
 
   
-  private void offset( AST t ) {
+  /**
+   * @return the preorder index given to this place of t
+   */
+  private int offset( AST t ) {
+    int index = next++;
+    if (depth == currOffset.length) {
+      currOffset = Arrays.copyOf(currOffset, depth * 2);
+    }
     if (depth > maxDepth) {
       maxDepth = depth;
     }
-    intOffset.put(t, currOffset[depth]);
+    intOffset.put(index, currOffset[depth]);
     currOffset[depth] += 2;
     
-    for (AST kid : t.getKids()) {
+    int leftMostChild = -1, rightMostChild = -1;
+    for (int i = 1; i <= t.kidCount(); i++) {
       depth++;
-      offset(kid);
+      rightMostChild = offset(t.getKid(i));
       depth--;
+      if (i == 1) {
+        leftMostChild = rightMostChild;
+      }
     }
+    sizes.put(index, next - index);
     
-    if (t.kidCount() != 0 && intOffset.get(t) != null) {
-      AST leftMostChild = t.getKid(1);
-      AST rightMostChild = t.getKid(t.kidCount());
+    if (t.kidCount() != 0) {
       int calculatedOffset = (intOffset.get(leftMostChild) + intOffset.get(rightMostChild)) / 2;
          
-      if (calculatedOffset > intOffset.get(t)) {
-        intOffset.put(t, calculatedOffset);
-        currOffset[depth] = intOffset.get(t) + 2;
-      } else if (calculatedOffset < intOffset.get(t)) {
-        int offsetDifference = intOffset.get(t) - calculatedOffset;
-        adjustKids(t, offsetDifference);
+      if (calculatedOffset > intOffset.get(index)) {
+        intOffset.put(index, calculatedOffset);
+        currOffset[depth] = intOffset.get(index) + 2;
+      } else if (calculatedOffset < intOffset.get(index)) {
+        int offsetDifference = intOffset.get(index) - calculatedOffset;
+        adjustKids(index, offsetDifference);
       }
     }
+    return index;
   }
   
-  private void adjustKids(AST t, int offsetCount) {
-    if (t.kidCount() == 0) return;
+  private void adjustKids(int index, int offsetCount) {
+    int end = index + sizes.get(index);
+    if (index + 1 == end) return;
     
-    if (intOffset.get(t) != null) {   
-      for (int i = 1; i <= t.kidCount(); i++) {
-        intOffset.put(t.getKid(i), intOffset.get(t.getKid(i)) + offsetCount);
-      }
-      currOffset[depth + 1] = intOffset.get(t.getKid(t.kidCount())) + 2;
-      for (AST kid : t.getKids()) {
-        depth++;
-        adjustKids(kid, offsetCount);
-        depth--;
-      }
+    int lastKid = -1;
+    for (int kid = index + 1; kid < end; kid += sizes.get(kid)) {
+      intOffset.put(kid, intOffset.get(kid) + offsetCount);
+      lastKid = kid;
+    }
+    currOffset[depth + 1] = intOffset.get(lastKid) + 2;
+    for (int kid = index + 1; kid < end; kid += sizes.get(kid)) {
+      depth++;
+      adjustKids(kid, offsetCount);
+      depth--;
     }
   }
 
@@ -75,9 +94,12 @@ public class OffsetVisitor extends ASTVisitor {
   }
   
   
-  public HashMap<AST, Integer> getOffset() {
-    HashMap<AST, Integer> offset = intOffset;
-    return offset;
+  /**
+   * @return the offsets, by the preorder index of each place in the tree;
+   *         see DrawOffsetVisitor
+   */
+  public IntNodeMap getOffset() {
+    return intOffset;
   }
   
   public void printCount() {